@@ -0,0 +1,112 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.thrift.async.TAsyncClientManager;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TNonblockingSocket;
+import org.apache.thrift.transport.TNonblockingTransport;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous Thrift clients of a connection.
+ * Network I/O of all clients is done by one selector thread, results are decoded and delivered
+ * by a small pool of worker threads so the selector thread never waits for consumers.
+ */
+class AsyncClients {
+
+    /**
+     * Client which can be closed by its owner
+     */
+    static class Client extends Cassandra.AsyncClient {
+
+        private Client(TProtocolFactory protocolFactory, TAsyncClientManager manager, TNonblockingTransport transport)
+        {
+            super(protocolFactory, manager, transport);
+        }
+
+        void close()
+        {
+            ___transport.close();
+        }
+    }
+
+    private final CassandraConnection connection;
+    private final TAsyncClientManager manager;
+    private final ExecutorService executor;
+    private final TBinaryProtocol.Factory protocolFactory = new TBinaryProtocol.Factory();
+
+    AsyncClients(CassandraConnection connection) throws SQLException
+    {
+        this.connection = connection;
+        try {
+            this.manager = new TAsyncClientManager();
+        } catch (IOException e) {
+            throw new SQLNonTransientConnectionException(e);
+        }
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "Cassandra async worker #" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Worker threads for decoding of results
+     */
+    ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Creates client of the specified host. Socket is connected by the first call.
+     */
+    Client open(String host) throws SQLException
+    {
+        try {
+            return new Client(protocolFactory, manager, new TNonblockingSocket(host, connection.getPort()));
+        } catch (IOException e) {
+            throw new SQLNonTransientConnectionException(e);
+        }
+    }
+
+    void close()
+    {
+        manager.stop();
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,629 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+import org.jkiss.jdbc.cassandra.types.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk loader. Converts rows into Thrift mutations and sends them with batch_mutate
+ * from a number of writer threads.
+ * <p/>
+ * Obtain it with <code>connection.unwrap(CassandraConnection.class).createBulkLoader("cf")</code>.
+ * The number of batches queued for writers is bounded so producers block when writers fall behind.
+ * Each batch is retried on timeouts and transport errors according to the connection retry policy.
+ * Loader is not thread safe.
+ */
+public class CassandraBulkLoader {
+
+    public static final int DEFAULT_WRITER_THREADS = 4;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    /**
+     * @deprecated retry delays come from the connection retry policy
+     */
+    @Deprecated
+    public static final long DEFAULT_RETRY_DELAY = 100;
+
+    private static final Batch STOP = new Batch();
+
+    private static class Batch {
+        final Map<ByteBuffer, Map<String, List<Mutation>>> mutations = new HashMap<ByteBuffer, Map<String, List<Mutation>>>();
+        int rows;
+    }
+
+    private final CassandraConnection connection;
+    private final String keyspace;
+    private final String columnFamily;
+
+    private final AbstractJdbcType<?> keyType;
+    private final AbstractJdbcType<?> nameType;
+    private final AbstractJdbcType<?> defaultValueType;
+    private final Map<ByteBuffer, AbstractJdbcType<?>> valueTypes = new HashMap<ByteBuffer, AbstractJdbcType<?>>();
+
+    private int writerThreads = DEFAULT_WRITER_THREADS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxInFlightBatches = -1;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile RetryPolicy retryPolicy;
+    private ConsistencyLevel consistencyLevel;
+
+    private BlockingQueue<Batch> queue;
+    private List<Thread> writers;
+    private Batch currentBatch = new Batch();
+    private final Object pendingLock = new Object();
+    private int pendingBatches;
+    private volatile Exception error;
+    private boolean closed;
+
+    private final AtomicLong rowsLoaded = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private long startTime;
+
+    CassandraBulkLoader(CassandraConnection connection, String keyspace, String columnFamily) throws SQLException
+    {
+        this.connection = connection;
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+
+        CfDef cfDef = connection.describeColumnFamily(keyspace, columnFamily);
+        consistencyLevel = connection.getThriftWriteConsistencyLevel();
+        keyType = TypesMap.getTypeForComparator(cfDef.getKey_validation_class());
+        nameType = TypesMap.getTypeForComparator(cfDef.getComparator_type());
+        defaultValueType = TypesMap.getTypeForComparator(cfDef.getDefault_validation_class());
+        for (ColumnDef colDef : cfDef.getColumn_metadata()) {
+            valueTypes.put(colDef.bufferForName(), TypesMap.getTypeForComparator(colDef.getValidation_class()));
+        }
+    }
+
+    public String getKeyspace()
+    {
+        return keyspace;
+    }
+
+    public String getColumnFamily()
+    {
+        return columnFamily;
+    }
+
+    public void setWriterThreads(int writerThreads)
+    {
+        checkNotStarted();
+        if (writerThreads < 1) throw new IllegalArgumentException("Writer threads count must be positive: " + writerThreads);
+        this.writerThreads = writerThreads;
+    }
+
+    /**
+     * Number of rows sent in one batch_mutate call
+     */
+    public void setBatchSize(int batchSize)
+    {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Maximum number of batches waiting for a writer. By default twice the number of writer threads.
+     */
+    public void setMaxInFlightBatches(int maxInFlightBatches)
+    {
+        checkNotStarted();
+        if (maxInFlightBatches < 1) throw new IllegalArgumentException("In-flight batches count must be positive: " + maxInFlightBatches);
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    /**
+     * Maximum number of retries of a failed batch. Retry delays and the retry budget
+     * are those of the connection retry policy.
+     */
+    public void setMaxRetries(int maxRetries)
+    {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Delay before the first retry of a failed batch, in milliseconds. Grows linearly with each attempt.
+     * Replaces the connection retry policy for this loader, retries still count against the connection retry budget.
+     *
+     * @deprecated retry delays come from the connection retry policy
+     */
+    @Deprecated
+    public void setRetryDelay(final long retryDelay)
+    {
+        this.retryPolicy = new RetryPolicy() {
+            public long getRetryDelay(Exception error, int attempt, boolean idempotent)
+            {
+                return retryDelay * attempt;
+            }
+
+            public boolean isRetryOnOtherHost(Exception error, int attempt)
+            {
+                return false;
+            }
+        };
+    }
+
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel)
+    {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    public long getRowsLoaded()
+    {
+        return rowsLoaded.get();
+    }
+
+    public long getBatchesSent()
+    {
+        return batchesSent.get();
+    }
+
+    public long getRetries()
+    {
+        return retries.get();
+    }
+
+    public long getFailedBatches()
+    {
+        return failedBatches.get();
+    }
+
+    /**
+     * Load throughput since the first row was added
+     */
+    public double getRowsPerSecond()
+    {
+        long elapsed = System.currentTimeMillis() - startTime;
+        if (startTime == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return rowsLoaded.get() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Adds a row. Null values are skipped.
+     *
+     * @param key    row key
+     * @param values column values by column name
+     */
+    public void addRow(Object key, Map<String, ?> values) throws SQLException
+    {
+        checkState();
+        List<Mutation> mutations = new ArrayList<Mutation>(values.size());
+        long timestamp = System.currentTimeMillis() * 1000;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                mutations.add(makeMutation(entry.getKey(), entry.getValue(), timestamp));
+            }
+        }
+        addMutations(key, mutations);
+    }
+
+    /**
+     * Adds a row. Null values are skipped.
+     *
+     * @param key    row key
+     * @param names  column names
+     * @param values column values
+     */
+    public void addRow(Object key, String[] names, Object[] values) throws SQLException
+    {
+        checkState();
+        if (names.length != values.length) {
+            throw new SQLSyntaxErrorException("Column names count (" + names.length + ") doesn't match values count (" + values.length + ")");
+        }
+        List<Mutation> mutations = new ArrayList<Mutation>(names.length);
+        long timestamp = System.currentTimeMillis() * 1000;
+        for (int i = 0; i < names.length; i++) {
+            if (values[i] != null) {
+                mutations.add(makeMutation(names[i], values[i], timestamp));
+            }
+        }
+        addMutations(key, mutations);
+    }
+
+    /**
+     * Loads all rows of the result set. First column is used as row key,
+     * other columns are stored under their labels.
+     *
+     * @return number of rows read from the result set
+     */
+    public long load(ResultSet resultSet) throws SQLException
+    {
+        ResultSetMetaData meta = resultSet.getMetaData();
+        int columnCount = meta.getColumnCount();
+        String[] names = new String[columnCount - 1];
+        for (int i = 2; i <= columnCount; i++) {
+            names[i - 2] = meta.getColumnLabel(i);
+        }
+        long count = 0;
+        while (resultSet.next()) {
+            Object[] values = new Object[columnCount - 1];
+            for (int i = 2; i <= columnCount; i++) {
+                values[i - 2] = resultSet.getObject(i);
+            }
+            addRow(resultSet.getObject(1), names, values);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Loads comma separated values. First line is a header with column names,
+     * first column is used as row key. Empty fields are skipped.
+     * BLOB values are expected in hex form.
+     *
+     * @return number of rows read
+     */
+    public long load(Reader reader) throws SQLException
+    {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        try {
+            List<String> header = readCsvLine(in);
+            if (header == null || header.isEmpty()) {
+                return 0;
+            }
+            String[] names = header.subList(1, header.size()).toArray(new String[header.size() - 1]);
+            long count = 0;
+            for (List<String> line = readCsvLine(in); line != null; line = readCsvLine(in)) {
+                if (line.size() == 1 && line.get(0).isEmpty()) {
+                    // Blank line
+                    continue;
+                }
+                Object[] values = new Object[names.length];
+                for (int i = 0; i < names.length && i + 1 < line.size(); i++) {
+                    String value = line.get(i + 1);
+                    values[i] = value.isEmpty() ? null : value;
+                }
+                addRow(line.get(0), names, values);
+                count++;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new SQLNonTransientException("Error reading CSV data", e);
+        }
+    }
+
+    /**
+     * Sends all buffered rows and waits until all batches are written
+     */
+    public void flush() throws SQLException
+    {
+        checkState();
+        if (currentBatch.rows > 0) {
+            submit(currentBatch);
+            currentBatch = new Batch();
+        }
+        synchronized (pendingLock) {
+            while (pendingBatches > 0) {
+                try {
+                    pendingLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLNonTransientException("Bulk load interrupted", e);
+                }
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Flushes pending rows and stops writer threads
+     */
+    public void close() throws SQLException
+    {
+        if (closed) {
+            return;
+        }
+        try {
+            if (error == null) {
+                flush();
+            }
+        } finally {
+            closed = true;
+            if (writers != null) {
+                for (int i = 0; i < writers.size(); i++) {
+                    try {
+                        queue.put(STOP);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                for (Thread writer : writers) {
+                    try {
+                        writer.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        checkError();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Bulk load into %s.%s: %d rows, %d batches, %d retries, %d failed batches, %.1f rows/s",
+            keyspace, columnFamily, getRowsLoaded(), getBatchesSent(), getRetries(), getFailedBatches(), getRowsPerSecond());
+    }
+
+    private void checkNotStarted()
+    {
+        if (writers != null) throw new IllegalStateException("Bulk load is already started");
+    }
+
+    private void checkState() throws SQLException
+    {
+        if (closed) throw new SQLNonTransientException("Bulk loader is closed");
+        checkError();
+    }
+
+    private void checkError() throws SQLException
+    {
+        Exception e = error;
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw new SQLNonTransientException("Bulk load failed", e);
+        }
+    }
+
+    private void addMutations(Object key, List<Mutation> mutations) throws SQLException
+    {
+        if (key == null) {
+            throw new SQLSyntaxErrorException("Row key can't be null");
+        }
+        if (mutations.isEmpty()) {
+            return;
+        }
+        ByteBuffer keyBytes = HandleObjects.encodeValue(key, keyType);
+        Map<String, List<Mutation>> cfMutations = currentBatch.mutations.get(keyBytes);
+        if (cfMutations == null) {
+            cfMutations = new HashMap<String, List<Mutation>>();
+            cfMutations.put(columnFamily, mutations);
+            currentBatch.mutations.put(keyBytes, cfMutations);
+        } else {
+            cfMutations.get(columnFamily).addAll(mutations);
+        }
+        currentBatch.rows++;
+        if (currentBatch.rows >= batchSize) {
+            submit(currentBatch);
+            currentBatch = new Batch();
+        }
+    }
+
+    private Mutation makeMutation(String name, Object value, long timestamp) throws SQLException
+    {
+        ByteBuffer nameBytes = nameType == null || nameType == JdbcBytes.instance ?
+            CassandraUtils.bytes(name) : HandleObjects.encodeValue(name, nameType);
+        AbstractJdbcType<?> valueType = valueTypes.get(nameBytes);
+        Column column = new Column(nameBytes);
+        column.setValue(HandleObjects.encodeValue(value, valueType == null ? defaultValueType : valueType));
+        column.setTimestamp(timestamp);
+        return new Mutation().setColumn_or_supercolumn(new ColumnOrSuperColumn().setColumn(column));
+    }
+
+    private void submit(Batch batch) throws SQLException
+    {
+        if (writers == null) {
+            startWriters();
+        }
+        CassandraResultCache resultCache = connection.getResultCache();
+        if (resultCache != null) {
+            resultCache.invalidateColumnFamily(keyspace, columnFamily);
+        }
+        synchronized (pendingLock) {
+            pendingBatches++;
+        }
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            batchDone();
+            Thread.currentThread().interrupt();
+            throw new SQLNonTransientException("Bulk load interrupted", e);
+        }
+    }
+
+    private void batchDone()
+    {
+        synchronized (pendingLock) {
+            pendingBatches--;
+            pendingLock.notifyAll();
+        }
+    }
+
+    private void startWriters()
+    {
+        startTime = System.currentTimeMillis();
+        queue = new ArrayBlockingQueue<Batch>(maxInFlightBatches > 0 ? maxInFlightBatches : writerThreads * 2);
+        writers = new ArrayList<Thread>(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(new Writer(), "Cassandra bulk loader " + keyspace + "." + columnFamily + " #" + (i + 1));
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    private class Writer implements Runnable {
+        private ClientPool.PooledClient pooled;
+
+        public void run()
+        {
+            ClientPool pool = connection.getClientPool();
+            try {
+                for (; ; ) {
+                    Batch batch = queue.take();
+                    if (batch == STOP) {
+                        break;
+                    }
+                    try {
+                        if (error == null) {
+                            send(pool, batch);
+                        }
+                    } catch (RuntimeException e) {
+                        // Keep draining the queue, otherwise producers and close() block on it forever
+                        failedBatches.incrementAndGet();
+                        if (error == null) {
+                            error = e;
+                        }
+                        if (pooled != null) {
+                            pool.invalidate(pooled);
+                            pooled = null;
+                        }
+                    } finally {
+                        batchDone();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (pooled != null) {
+                    pool.release(pooled);
+                }
+            }
+        }
+
+        private void send(ClientPool pool, Batch batch) throws InterruptedException
+        {
+            connection.startRetryableCall();
+            for (int attempt = 1; ; attempt++) {
+                Exception cause;
+                SQLException sqlError;
+                try {
+                    if (pooled == null) {
+                        pooled = pool.borrow(connection.getHost(), keyspace);
+                    }
+                    pooled.getClient().batch_mutate(batch.mutations, consistencyLevel);
+                    rowsLoaded.addAndGet(batch.rows);
+                    batchesSent.incrementAndGet();
+                    return;
+                } catch (InvalidRequestException e) {
+                    // Won't succeed on retry
+                    fail(new SQLSyntaxErrorException(e.getWhy(), e));
+                    return;
+                } catch (UnavailableException e) {
+                    cause = e;
+                    sqlError = new SQLNonTransientConnectionException(ErrorMessages.NO_SERVER, e);
+                } catch (TimedOutException e) {
+                    cause = e;
+                    sqlError = new SQLTransientConnectionException(e);
+                } catch (TException e) {
+                    pool.invalidate(pooled);
+                    pooled = null;
+                    cause = e;
+                    sqlError = new SQLNonTransientConnectionException(e);
+                } catch (SQLException e) {
+                    cause = e;
+                    sqlError = e;
+                }
+                // Mutations carry their timestamps so sending a batch again is idempotent
+                if (attempt > maxRetries || !prepareRetry(cause, attempt)) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    fail(sqlError);
+                    return;
+                }
+                retries.incrementAndGet();
+            }
+        }
+
+        private boolean prepareRetry(Exception cause, int attempt)
+        {
+            RetryPolicy policy = retryPolicy;
+            return policy == null ?
+                connection.prepareCallRetry(cause, attempt, true) :
+                connection.prepareCallRetry(policy, cause, attempt, true);
+        }
+
+        private void fail(SQLException sqlError)
+        {
+            failedBatches.incrementAndGet();
+            if (error == null) {
+                error = sqlError;
+            }
+        }
+    }
+
+    private static List<String> readCsvLine(BufferedReader in) throws IOException
+    {
+        String line = in.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (; ; ) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            // Quoted value spans several lines
+            line = in.readLine();
+            if (line == null) {
+                break;
+            }
+            field.append('\n');
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+import org.jkiss.jdbc.cassandra.types.AbstractJdbcType;
+import org.jkiss.jdbc.cassandra.types.TypesMap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Reads columns of one (wide) row page by page with get_slice.
+ * <p/>
+ * Every column becomes a result set row of three columns: row key, {@link #COLUMN_NAME} (decoded with the comparator)
+ * and {@link #VALUE_NAME}. Column timestamp and TTL are available via
+ * <code>((CassandraResultSet.CResultSetMetaData) rs.getMetaData()).getTimestamp(3)</code>.
+ * The next page is requested when the previous one is consumed and continues after the last column seen,
+ * so memory is bounded by the page size however wide the row is.
+ * <p/>
+ * "Latest N" reads are a single request: <code>setReversed(true); setLimit(n)</code>.
+ * <p/>
+ * Obtain it with <code>connection.unwrap(CassandraConnection.class).createColumnPager("cf", key)</code>.
+ */
+public class CassandraColumnPager {
+
+    public static final String COLUMN_NAME = "COLUMN";
+    public static final String VALUE_NAME = "VALUE";
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private static final ByteBuffer EMPTY = CassandraUtils.EMPTY_BYTE_BUFFER;
+    private static final ByteBuffer COLUMN_NAME_BYTES = CassandraUtils.bytes(COLUMN_NAME);
+    private static final ByteBuffer VALUE_NAME_BYTES = CassandraUtils.bytes(VALUE_NAME);
+
+    private final CassandraConnection connection;
+    private final String keyspace;
+    private final String columnFamily;
+    private final Object key;
+
+    private Object start;
+    private Object finish;
+    private boolean reversed;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int limit = Integer.MAX_VALUE;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private ConsistencyLevel consistencyLevel;
+
+    CassandraColumnPager(CassandraConnection connection, String keyspace, String columnFamily, Object key)
+    {
+        this.connection = connection;
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+        this.key = key;
+        this.consistencyLevel = connection.getThriftReadConsistencyLevel();
+    }
+
+    public String getKeyspace()
+    {
+        return keyspace;
+    }
+
+    public String getColumnFamily()
+    {
+        return columnFamily;
+    }
+
+    /**
+     * First column to read (inclusive), in the comparator type or as raw bytes. Null starts from the row edge.
+     */
+    public void setStart(Object start)
+    {
+        this.start = start;
+    }
+
+    /**
+     * Last column to read (inclusive), in the comparator type or as raw bytes. Null reads to the row edge.
+     */
+    public void setFinish(Object finish)
+    {
+        this.finish = finish;
+    }
+
+    /**
+     * Reads columns in the reverse comparator order (start should then be greater than finish)
+     */
+    public void setReversed(boolean reversed)
+    {
+        this.reversed = reversed;
+    }
+
+    /**
+     * Number of columns read by one get_slice call
+     */
+    public void setPageSize(int pageSize)
+    {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Maximum number of columns returned in total
+     */
+    public void setLimit(int limit)
+    {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive: " + limit);
+        this.limit = limit;
+    }
+
+    /**
+     * Maximum number of retries of a failed page read. Retry delays and the retry budget
+     * are those of the connection retry policy.
+     */
+    public void setMaxRetries(int maxRetries)
+    {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel)
+    {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    /**
+     * Starts reading.
+     *
+     * @return result set with one row per column. Closing it releases the server connection.
+     */
+    public CassandraResultSet executeQuery() throws SQLException
+    {
+        CfDef cfDef = connection.describeColumnFamily(keyspace, columnFamily);
+        AbstractJdbcType<?> keyType = TypesMap.getTypeForComparator(cfDef.getKey_validation_class());
+        AbstractJdbcType<?> nameType = TypesMap.getTypeForComparator(cfDef.getComparator_type());
+        ByteBuffer rawKey = HandleObjects.encodeValue(key, keyType);
+        ByteBuffer rawStart = start == null ? EMPTY : HandleObjects.encodeValue(start, nameType);
+        ByteBuffer rawFinish = finish == null ? EMPTY : HandleObjects.encodeValue(finish, nameType);
+
+        ByteBuffer keyAlias;
+        CqlMetadata metadata;
+        try {
+            keyAlias = ByteBuffer.wrap(CassandraUtils.getRawKeyAlias(cfDef));
+            metadata = makeMetadata(cfDef, keyAlias);
+        } catch (CharacterCodingException e) {
+            throw new SQLNonTransientException(e);
+        }
+        ColumnPageReader reader = new ColumnPageReader(rawKey, keyAlias, rawStart, rawFinish);
+        return new CassandraResultSet(
+            connection.createInternalStatement("SELECT " + COLUMN_NAME + ", " + VALUE_NAME + " FROM " + columnFamily),
+            reader,
+            metadata,
+            keyspace,
+            columnFamily);
+    }
+
+    private static CqlMetadata makeMetadata(CfDef cfDef, ByteBuffer keyAlias)
+    {
+        Map<ByteBuffer, String> nameTypes = new HashMap<ByteBuffer, String>();
+        Map<ByteBuffer, String> valueTypes = new HashMap<ByteBuffer, String>();
+        nameTypes.put(keyAlias, "UTF8Type");
+        nameTypes.put(COLUMN_NAME_BYTES, "UTF8Type");
+        nameTypes.put(VALUE_NAME_BYTES, "UTF8Type");
+        valueTypes.put(keyAlias, cfDef.getKey_validation_class());
+        valueTypes.put(COLUMN_NAME_BYTES, cfDef.getComparator_type());
+        // counters are converted to LongType columns
+        String validator = cfDef.getDefault_validation_class();
+        if (validator != null && validator.endsWith("CounterColumnType")) {
+            validator = "LongType";
+        }
+        valueTypes.put(VALUE_NAME_BYTES, validator);
+        return new CqlMetadata(nameTypes, valueTypes, "UTF8Type", validator);
+    }
+
+    /**
+     * Fetches pages of columns on a pooled client, each one starting at the last column of the previous page
+     */
+    private class ColumnPageReader implements RowSource {
+
+        private final ByteBuffer rawKey;
+        private final ByteBuffer keyAlias;
+        private final ByteBuffer finish;
+        private final ColumnParent columnParent = new ColumnParent(columnFamily);
+        private ByteBuffer nextStart;
+        // start column is inclusive, so it is skipped on all pages but the first
+        private ByteBuffer lastName;
+        private int remaining = limit;
+        private boolean finished;
+        private Iterator<Column> page;
+        private ClientPool.PooledClient pooled;
+
+        ColumnPageReader(ByteBuffer rawKey, ByteBuffer keyAlias, ByteBuffer start, ByteBuffer finish)
+        {
+            this.rawKey = rawKey;
+            this.keyAlias = keyAlias;
+            this.nextStart = start;
+            this.finish = finish;
+        }
+
+        public boolean hasNext() throws SQLException
+        {
+            while (page == null || !page.hasNext()) {
+                if (finished) {
+                    return false;
+                }
+                page = readPage().iterator();
+            }
+            return true;
+        }
+
+        public CqlRow next() throws SQLException
+        {
+            if (!hasNext()) {
+                throw new SQLNonTransientException("No more columns");
+            }
+            Column column = page.next();
+            List<Column> columns = new ArrayList<Column>(3);
+            columns.add(new Column(keyAlias).setValue(rawKey));
+            columns.add(new Column(COLUMN_NAME_BYTES).setValue(column.bufferForName()));
+            Column value = new Column(VALUE_NAME_BYTES).setValue(column.bufferForValue()).setTimestamp(column.getTimestamp());
+            if (column.isSetTtl()) {
+                value.setTtl(column.getTtl());
+            }
+            columns.add(value);
+            return new CqlRow(rawKey, columns);
+        }
+
+        private List<Column> readPage() throws SQLException
+        {
+            int count = Math.min(pageSize, remaining);
+            boolean skipFirst = lastName != null;
+            List<ColumnOrSuperColumn> slice = getSlice(skipFirst ? count + 1 : count);
+            if (slice.size() < (skipFirst ? count + 1 : count)) {
+                finished = true;
+            }
+            List<Column> columns = new ArrayList<Column>(slice.size());
+            for (ColumnOrSuperColumn cosc : slice) {
+                Column column = CassandraUtils.getColumn(cosc);
+                if (column == null || (skipFirst && columns.isEmpty() && column.bufferForName().equals(lastName))) {
+                    skipFirst = false;
+                    continue;
+                }
+                columns.add(column);
+            }
+            if (columns.size() > remaining) {
+                columns = columns.subList(0, remaining);
+            }
+            remaining -= columns.size();
+            if (remaining == 0) {
+                finished = true;
+            }
+            if (!slice.isEmpty()) {
+                ColumnOrSuperColumn last = slice.get(slice.size() - 1);
+                lastName = last.isSetCounter_column() ? last.getCounter_column().bufferForName() : last.getColumn().bufferForName();
+                nextStart = lastName;
+            }
+            if (finished) {
+                releaseClient();
+            }
+            return columns;
+        }
+
+        private List<ColumnOrSuperColumn> getSlice(int count) throws SQLException
+        {
+            SlicePredicate predicate = new SlicePredicate().setSlice_range(new SliceRange(nextStart, finish, reversed, count));
+            connection.startRetryableCall();
+            for (int attempt = 1; ; attempt++) {
+                Exception cause;
+                SQLException sqlError;
+                try {
+                    if (pooled == null) {
+                        pooled = connection.getClientPool().borrow(connection.getHost(), keyspace);
+                    }
+                    return pooled.getClient().get_slice(rawKey, columnParent, predicate, consistencyLevel);
+                } catch (InvalidRequestException e) {
+                    throw new SQLSyntaxErrorException(e.getWhy(), e);
+                } catch (UnavailableException e) {
+                    cause = e;
+                    sqlError = new SQLNonTransientConnectionException(ErrorMessages.NO_SERVER, e);
+                } catch (TimedOutException e) {
+                    cause = e;
+                    sqlError = new SQLTransientConnectionException(e);
+                } catch (TException e) {
+                    connection.getClientPool().invalidate(pooled);
+                    pooled = null;
+                    cause = e;
+                    sqlError = new SQLNonTransientConnectionException(e);
+                }
+                if (attempt > maxRetries || !connection.prepareCallRetry(cause, attempt, true)) {
+                    throw sqlError;
+                }
+            }
+        }
+
+        private void releaseClient()
+        {
+            if (pooled != null) {
+                connection.getClientPool().release(pooled);
+                pooled = null;
+            }
+        }
+
+        public void close()
+        {
+            page = null;
+            finished = true;
+            releaseClient();
+        }
+    }
+
+}
@@ -28,11 +28,12 @@ import org.apache.thrift.transport.TFramedTransport;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Properties;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
@@ -42,6 +43,8 @@ public class CassandraConnection extends AbstractConnection {
 
     public static Compression defaultCompression = Compression.GZIP;
 
+    private static final RetryPolicy DEFAULT_CALL_RETRY_POLICY = new ExponentialBackoffRetryPolicy();
+
     /**
      * Connection Properties
      */
@@ -60,6 +63,8 @@ public class CassandraConnection extends AbstractConnection {
     private Cassandra.Client client;
     private TTransport transport;
 
+    private String host;
+    private int port;
     private String username = null;
     private String url = null;
     private String currentKeyspace;
@@ -67,6 +72,24 @@ public class CassandraConnection extends AbstractConnection {
     private CassandraDatabaseMetaData meta;
     private boolean structResultSet;
     private boolean version11;
+    private ClientPool clientPool;
+    private AsyncClients asyncClients;
+    private CassandraResultCache resultCache;
+    private ReadCoalescer coalescer;
+    private SingleFlight singleFlight;
+    private ConsistencyLevel readConsistencyLevel;
+    private ConsistencyLevel writeConsistencyLevel;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+    private HedgedReader hedgedReader;
+    private List<String> hosts;
+    private volatile RetryPolicy retryPolicy;
+    private RetryBudget retryBudget;
+    private long resultHeapBudget;
+    private RowStore.Storage resultStorage;
+    private volatile int schemaVersion;
+    private boolean directRangeScan;
+    private boolean naturalObjectTypes;
+    private SchemaSnapshot schemaSnapshot;
 
 
     /**
@@ -77,27 +100,44 @@ public class CassandraConnection extends AbstractConnection {
         connectionProps = (Properties) props.clone();
         clientInfo = new Properties();
         url = CassandraConstants.PROTOCOL + CassandraUtils.getConnectionURI(props).toString();
+        boolean connected = false;
         try {
-            String host = props.getProperty(CassandraConstants.PROP_SERVER_NAME);
-            int port = Integer.parseInt(props.getProperty(CassandraConstants.PROP_PORT_NUMBER));
-
-            TSocket socket = new TSocket(host, port);
-            transport = new TFramedTransport(socket);
-            TProtocol protocol = new TBinaryProtocol(transport);
-            client = new Cassandra.Client(protocol);
-            socket.open();
-
+            host = props.getProperty(CassandraConstants.PROP_SERVER_NAME);
+            port = Integer.parseInt(props.getProperty(CassandraConstants.PROP_PORT_NUMBER));
             username = props.getProperty(CassandraConstants.PROP_USER);
-            if (username != null) {
-                String password = props.getProperty(CassandraConstants.PROP_PASSWORD);
-                Map<String, String> credentials = new HashMap<String, String>();
-                credentials.put("username", username);
-                if (password != null) credentials.put("password", password);
-                AuthenticationRequest authRequest = new AuthenticationRequest(credentials);
-                client.login(authRequest);
+
+            // Needed by the queries made while connecting
+            retryPolicy = createRetryPolicy(props);
+            retryBudget = new RetryBudget(
+                Double.parseDouble(props.getProperty(CassandraConstants.PROP_RETRY_BUDGET_RATIO, "0.1")),
+                RetryBudget.DEFAULT_MIN_TOKENS);
+
+            // Validate settings before the transport is opened
+            readConsistencyLevel = parseConsistencyLevel(props.getProperty(CassandraConstants.PROP_READ_CONSISTENCY));
+            writeConsistencyLevel = parseConsistencyLevel(props.getProperty(CassandraConstants.PROP_WRITE_CONSISTENCY));
+            long hedgeDelay = Long.parseLong(props.getProperty(CassandraConstants.PROP_HEDGE_DELAY, "0"));
+            double hedgePercentile = Double.parseDouble(props.getProperty(CassandraConstants.PROP_HEDGE_PERCENTILE, "0"));
+            if (hedgePercentile < 0 || hedgePercentile > 100) {
+                throw new SQLNonTransientConnectionException("Bad hedge percentile: " + hedgePercentile);
+            }
+            if (hedgePercentile > 0 && hedgeDelay <= 0) {
+                // Otherwise every read is hedged right away until enough latencies are recorded
+                throw new SQLNonTransientConnectionException(
+                    CassandraConstants.PROP_HEDGE_PERCENTILE + " requires " + CassandraConstants.PROP_HEDGE_DELAY + " to be set as well");
             }
+            resultHeapBudget = Long.parseLong(props.getProperty(CassandraConstants.PROP_RESULT_HEAP_BUDGET, String.valueOf(RowStore.DEFAULT_HEAP_BUDGET)));
+            try {
+                resultStorage = RowStore.Storage.valueOf(props.getProperty(CassandraConstants.PROP_RESULT_STORAGE, "heap").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new SQLNonTransientConnectionException("Bad result storage: " + props.getProperty(CassandraConstants.PROP_RESULT_STORAGE));
+            }
+
+            client = createClient(host);
+            transport = client.getInputProtocol().getTransport();
 
-            client.set_keyspace(CassandraConstants.DEFAULT_KEYSPACE);
+            String keyspace = props.getProperty(CassandraConstants.PROP_DATABASE_NAME, CassandraConstants.DEFAULT_KEYSPACE);
+            boolean fastConnect = Boolean.valueOf(props.getProperty(CassandraConstants.PROP_FAST_CONNECT));
+            client.set_keyspace(fastConnect ? keyspace : CassandraConstants.DEFAULT_KEYSPACE);
             String version = props.getProperty(CassandraConstants.PROP_CQL_VERSION);
             if (version != null) {
                 try {
@@ -107,24 +147,190 @@ public class CassandraConnection extends AbstractConnection {
                     // Ignore it
                 }
             }
-            {
+            String snapshotDir = props.getProperty(CassandraConstants.PROP_SCHEMA_SNAPSHOT_DIR);
+            if (snapshotDir != null && !snapshotDir.isEmpty()) {
+                schemaSnapshot = new SchemaSnapshot(this, new File(snapshotDir));
+                schemaSnapshot.validate(client.describe_schema_versions());
+            }
+            if (fastConnect) {
+                // One round trip for features, column metadata is read on first use
+                version11 = isThriftVersion11(client.describe_version());
+                List<KsDef> keyspaces = schemaSnapshot == null ? null : schemaSnapshot.getKeyspaces();
+                decoder = keyspaces == null ? new ColumnDecoder(this) : new ColumnDecoder(keyspaces);
+            } else {
                 // Check features
                 int majorVersion = getMetaData().getDatabaseMajorVersion();
                 int minorVersion = getMetaData().getDatabaseMinorVersion();
                 if (majorVersion == 1 && minorVersion >= 1 || majorVersion > 1) {
                     version11 = true;
                 }
+                decoder = new ColumnDecoder(describeKeyspaces());
             }
 
-            decoder = new ColumnDecoder(client.describe_keyspaces());
-
-            currentKeyspace = props.getProperty(CassandraConstants.PROP_DATABASE_NAME, CassandraConstants.DEFAULT_KEYSPACE);
+            currentKeyspace = keyspace;
             structResultSet = Boolean.valueOf(props.getProperty(CassandraConstants.PROP_STRUCT_RESULT_SET));
 
-            client.set_keyspace(currentKeyspace);
+            int resultCacheSize = Integer.parseInt(props.getProperty(CassandraConstants.PROP_RESULT_CACHE_SIZE, "0"));
+            if (resultCacheSize > 0) {
+                resultCache = new CassandraResultCache(
+                    resultCacheSize,
+                    Long.parseLong(props.getProperty(CassandraConstants.PROP_RESULT_CACHE_TTL, String.valueOf(CassandraResultCache.DEFAULT_TTL))));
+            }
+            directRangeScan = Boolean.valueOf(props.getProperty(CassandraConstants.PROP_DIRECT_RANGE_SCAN));
+            naturalObjectTypes = Boolean.valueOf(props.getProperty(CassandraConstants.PROP_NATURAL_OBJECT_TYPES));
+            if (Boolean.valueOf(props.getProperty(CassandraConstants.PROP_SINGLE_FLIGHT))) {
+                singleFlight = new SingleFlight();
+            }
+            if (hedgeDelay > 0) {
+                hedgedReader = new HedgedReader(this, hedgeDelay, hedgePercentile);
+            }
+            long coalesceWindow = Long.parseLong(props.getProperty(CassandraConstants.PROP_COALESCE_WINDOW, "0"));
+            if (coalesceWindow > 0) {
+                coalescer = new ReadCoalescer(
+                    this,
+                    coalesceWindow,
+                    Integer.parseInt(props.getProperty(CassandraConstants.PROP_COALESCE_BATCH_SIZE, "64")),
+                    Boolean.valueOf(props.getProperty(CassandraConstants.PROP_COALESCE_FALLBACK, "true")));
+            }
+
+            if (!fastConnect) {
+                client.set_keyspace(currentKeyspace);
+            }
+            connected = true;
+        } catch (InvalidRequestException e) {
+            throw new SQLSyntaxErrorException(e);
+        } catch (TException e) {
+            throw new SQLNonTransientConnectionException(e);
+        } catch (AuthenticationException e) {
+            throw new SQLInvalidAuthorizationSpecException(e);
+        } catch (AuthorizationException e) {
+            throw new SQLInvalidAuthorizationSpecException(e);
+        } finally {
+            if (!connected) {
+                // Don't leave the socket and worker threads of a failed connection behind
+                releaseResources();
+            }
+        }
+    }
+
+    /**
+     * Thrift API 19.30 and later is served by Cassandra 1.1+
+     */
+    static boolean isThriftVersion11(String apiVersion)
+    {
+        StringTokenizer st = new StringTokenizer(apiVersion == null ? "" : apiVersion, ".");
+        try {
+            int major = st.hasMoreTokens() ? Integer.parseInt(st.nextToken()) : 0;
+            int minor = st.hasMoreTokens() ? Integer.parseInt(st.nextToken()) : 0;
+            return major > 19 || major == 19 && minor >= 30;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static ConsistencyLevel parseConsistencyLevel(String name) throws SQLNonTransientConnectionException
+    {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        try {
+            return ConsistencyLevel.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new SQLNonTransientConnectionException("Bad consistency level: " + name);
+        }
+    }
+
+    private static RetryPolicy createRetryPolicy(Properties props) throws SQLNonTransientConnectionException
+    {
+        String name = props.getProperty(CassandraConstants.PROP_RETRY_POLICY);
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        if (name.equalsIgnoreCase("exponential")) {
+            return new ExponentialBackoffRetryPolicy(
+                Integer.parseInt(props.getProperty(CassandraConstants.PROP_RETRY_MAX_ATTEMPTS, String.valueOf(ExponentialBackoffRetryPolicy.DEFAULT_MAX_ATTEMPTS))),
+                Long.parseLong(props.getProperty(CassandraConstants.PROP_RETRY_BASE_DELAY, String.valueOf(ExponentialBackoffRetryPolicy.DEFAULT_BASE_DELAY))),
+                Long.parseLong(props.getProperty(CassandraConstants.PROP_RETRY_MAX_DELAY, String.valueOf(ExponentialBackoffRetryPolicy.DEFAULT_MAX_DELAY))),
+                Boolean.valueOf(props.getProperty(CassandraConstants.PROP_RETRY_ON_OTHER_HOST)));
+        }
+        try {
+            return Class.forName(name).asSubclass(RetryPolicy.class).getDeclaredConstructor().newInstance();
+        } catch (ClassCastException e) {
+            throw new SQLNonTransientConnectionException("Class " + name + " doesn't implement " + RetryPolicy.class.getName());
+        } catch (InvocationTargetException e) {
+            throw new SQLNonTransientConnectionException("Can't create retry policy " + name, e.getCause());
+        } catch (Exception e) {
+            // Class not found, no public no-arg constructor, abstract class
+            throw new SQLNonTransientConnectionException("Can't create retry policy " + name, e);
+        }
+    }
+
+    /**
+     * Opens transport to the specified host and authenticates with this connection's credentials.
+     */
+    private Cassandra.Client createClient(String host)
+        throws TException, AuthenticationException, AuthorizationException
+    {
+        TSocket socket = new TSocket(host, port);
+        TTransport transport = new TFramedTransport(socket);
+        TProtocol protocol = new TBinaryProtocol(transport);
+        Cassandra.Client client = new Cassandra.Client(protocol);
+        socket.open();
+
+        AuthenticationRequest authRequest = createAuthenticationRequest();
+        if (authRequest != null) {
+            try {
+                client.login(authRequest);
+            } catch (AuthenticationException e) {
+                transport.close();
+                throw e;
+            } catch (AuthorizationException e) {
+                transport.close();
+                throw e;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Login request with this connection's credentials
+     *
+     * @return request or null if the connection doesn't log in
+     */
+    AuthenticationRequest createAuthenticationRequest()
+    {
+        if (username == null) {
+            return null;
+        }
+        String password = connectionProps.getProperty(CassandraConstants.PROP_PASSWORD);
+        Map<String, String> credentials = new HashMap<String, String>();
+        credentials.put("username", username);
+        if (password != null) credentials.put("password", password);
+        return new AuthenticationRequest(credentials);
+    }
+
+    /**
+     * Opens a new client which isn't shared with this connection.
+     * Caller is responsible for closing it with {@link #closeClient(Cassandra.Client)}.
+     */
+    Cassandra.Client openClient(String host, String keyspace) throws SQLException
+    {
+        Cassandra.Client newClient = null;
+        try {
+            newClient = createClient(host);
+            String version = connectionProps.getProperty(CassandraConstants.PROP_ACTIVE_CQL_VERSION);
+            if (version != null) {
+                newClient.set_cql_version(version);
+            }
+            if (keyspace != null) {
+                newClient.set_keyspace(keyspace);
+            }
+            return newClient;
         } catch (InvalidRequestException e) {
+            closeClient(newClient);
             throw new SQLSyntaxErrorException(e);
         } catch (TException e) {
+            closeClient(newClient);
             throw new SQLNonTransientConnectionException(e);
         } catch (AuthenticationException e) {
             throw new SQLInvalidAuthorizationSpecException(e);
@@ -133,11 +339,52 @@ public class CassandraConnection extends AbstractConnection {
         }
     }
 
+    static void closeClient(Cassandra.Client client)
+    {
+        if (client != null) {
+            client.getInputProtocol().getTransport().close();
+        }
+    }
+
     Cassandra.Client getClient()
     {
         return client;
     }
 
+    synchronized ClientPool getClientPool()
+    {
+        if (clientPool == null) {
+            clientPool = new ClientPool(this);
+        }
+        return clientPool;
+    }
+
+    synchronized AsyncClients getAsyncClients() throws SQLException
+    {
+        if (asyncClients == null) {
+            asyncClients = new AsyncClients(this);
+        }
+        return asyncClients;
+    }
+
+    String getHost()
+    {
+        return host;
+    }
+
+    int getPort()
+    {
+        return port;
+    }
+
+    /**
+     * CQL version set for this connection or null for server default
+     */
+    String getActiveCqlVersion()
+    {
+        return connectionProps.getProperty(CassandraConstants.PROP_ACTIVE_CQL_VERSION);
+    }
+
     String getCurrentKeyspace()
     {
         return currentKeyspace;
@@ -163,6 +410,31 @@ public class CassandraConnection extends AbstractConnection {
         return structResultSet;
     }
 
+    /**
+     * Memory (in bytes) a scrollable result set may use for fetched rows before spilling them to a temporary file
+     */
+    long getResultHeapBudget()
+    {
+        return resultHeapBudget;
+    }
+
+    /**
+     * Where scrollable result sets keep fetched rows: heap, offheap (direct buffers) or mmap (temporary file only)
+     */
+    RowStore.Storage getResultStorage()
+    {
+        return resultStorage;
+    }
+
+    /**
+     * Number of schema changes made through this connection. Schema information cached by the driver is
+     * refreshed when it changes.
+     */
+    int getSchemaVersion()
+    {
+        return schemaVersion;
+    }
+
     boolean isVersion11()
     {
         return version11;
@@ -190,8 +462,26 @@ public class CassandraConnection extends AbstractConnection {
             statement.close();
         statements.clear();
 
-        if (isConnected()) {
-            // then disconnect from the transport                
+        releaseResources();
+    }
+
+    /**
+     * Stops worker threads, closes pooled clients and the transport
+     */
+    private void releaseResources()
+    {
+        if (hedgedReader != null) {
+            hedgedReader.close();
+        }
+        if (clientPool != null) {
+            clientPool.close();
+        }
+        if (asyncClients != null) {
+            asyncClients.close();
+        }
+
+        if (transport != null && isConnected()) {
+            // then disconnect from the transport
             disconnect();
         }
     }
@@ -210,6 +500,19 @@ public class CassandraConnection extends AbstractConnection {
         return statement;
     }
 
+    /**
+     * Creates statement of a result set produced by the driver itself (table scans, pagers).
+     * It is tracked like other statements and closed together with the result set.
+     */
+    CassandraStatement createInternalStatement(String cql) throws SQLException
+    {
+        checkNotClosed();
+        CassandraStatement statement = new CassandraStatement(this, cql);
+        statement.closeOnCompletion();
+        statements.add(statement);
+        return statement;
+    }
+
     public CassandraStatement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException
     {
         checkNotClosed();
@@ -309,9 +612,9 @@ public class CassandraConnection extends AbstractConnection {
         return !isClosed();
     }
 
-    public boolean isWrapperFor(Class<?> arg0) throws SQLException
+    public boolean isWrapperFor(Class<?> clazz) throws SQLException
     {
-        return false;
+        return clazz.isAssignableFrom(getClass());
     }
 
     public String nativeSQL(String sql) throws SQLException
@@ -338,13 +641,15 @@ public class CassandraConnection extends AbstractConnection {
     @Override
     public CassandraPreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException
     {
-        return prepareStatement(sql);
+        CassandraPreparedStatement statement = prepareStatement(sql);
+        statement.setResultSetType(resultSetType);
+        return statement;
     }
 
     @Override
     public CassandraPreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException
     {
-        return prepareStatement(sql);
+        return prepareStatement(sql, resultSetType, resultSetConcurrency);
     }
 
     @Override
@@ -419,9 +724,302 @@ public class CassandraConnection extends AbstractConnection {
 
     public <T> T unwrap(Class<T> clazz) throws SQLException
     {
+        if (clazz.isAssignableFrom(getClass())) {
+            return clazz.cast(this);
+        }
         throw new SQLFeatureNotSupportedException("Can't unwrap from " + clazz.getName());
     }
 
+    /**
+     * Creates bulk loader for the specified column family.
+     *
+     * @param columnFamily column family name, optionally qualified with keyspace name
+     * @return new loader. Loader must be closed to flush pending rows
+     */
+    public CassandraBulkLoader createBulkLoader(String columnFamily) throws SQLException
+    {
+        checkNotClosed();
+        String keyspace = CassandraUtils.determineCurrentSource(columnFamily, true);
+        return new CassandraBulkLoader(
+            this,
+            keyspace == null ? currentKeyspace : keyspace,
+            CassandraUtils.determineCurrentSource(columnFamily, false));
+    }
+
+    /**
+     * Returns result cache or null if caching is disabled.
+     * Cache is enabled by the resultCacheSize connection property.
+     */
+    public CassandraResultCache getResultCache()
+    {
+        return resultCache;
+    }
+
+    /**
+     * Creates parallel full scan of the specified column family.
+     * Column family name may be qualified with a keyspace name.
+     */
+    public CassandraTableScan createTableScan(String columnFamily) throws SQLException
+    {
+        checkNotClosed();
+        String keyspace = CassandraUtils.determineCurrentSource(columnFamily, true);
+        return new CassandraTableScan(
+            this,
+            keyspace == null ? currentKeyspace : keyspace,
+            CassandraUtils.determineCurrentSource(columnFamily, false));
+    }
+
+    /**
+     * Creates pager over columns of one row of the specified column family.
+     * Column family name may be qualified with a keyspace name.
+     *
+     * @param columnFamily column family
+     * @param key row key (in the key validator type or raw bytes)
+     */
+    public CassandraColumnPager createColumnPager(String columnFamily, Object key) throws SQLException
+    {
+        checkNotClosed();
+        String keyspace = CassandraUtils.determineCurrentSource(columnFamily, true);
+        return new CassandraColumnPager(
+            this,
+            keyspace == null ? currentKeyspace : keyspace,
+            CassandraUtils.determineCurrentSource(columnFamily, false),
+            key);
+    }
+
+    /**
+     * Creates publisher of the query rows for non-blocking consumers.
+     * Simple key range queries are read page by page according to the subscriber demand.
+     */
+    public CassandraRowPublisher createPublisher(String cql) throws SQLException
+    {
+        checkNotClosed();
+        return new CassandraRowPublisher(this, cql);
+    }
+
+    /**
+     * Creates splittable iterator over all rows of a column family.
+     * The query must be <code>SELECT * | name [, name ...] FROM [keyspace.]cf</code>.
+     */
+    public CassandraRowSpliterator stream(String query) throws SQLException
+    {
+        return stream(query, CassandraRowSpliterator.DEFAULT_KEYS_PER_SPLIT, CassandraRowSpliterator.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates splittable iterator over all rows of a column family.
+     * The query must be <code>SELECT * | name [, name ...] FROM [keyspace.]cf</code>.
+     *
+     * @param keysPerSplit approximate number of row keys in a range read by one iterator
+     * @param pageSize     number of rows read by one request
+     */
+    public CassandraRowSpliterator stream(String query, int keysPerSplit, int pageSize) throws SQLException
+    {
+        checkNotClosed();
+        if (isCql3()) {
+            throw new SQLFeatureNotSupportedException("Row iterators are not supported for CQL 3");
+        }
+        DirectRangeScan scan = DirectRangeScan.parse(query);
+        if (scan == null || !scan.isFullScan()) {
+            throw new SQLSyntaxErrorException("Row iterator query must be SELECT * | name [, name ...] FROM [keyspace.]cf: " + query);
+        }
+        DirectRangeScan.RangePager format = scan.createPager(this, 0, pageSize);
+        if (format == null) {
+            throw new SQLSyntaxErrorException("Can't read column family of query: " + query);
+        }
+        return new CassandraRowSpliterator(
+            this,
+            format,
+            describeRing(format.getKeyspace(), scan.getColumnFamily()),
+            false,
+            keysPerSplit,
+            pageSize,
+            getThriftReadConsistencyLevel());
+    }
+
+    /**
+     * Splits the column family into token ranges for parallel processing.
+     * Column family name may be qualified with a keyspace name.
+     *
+     * @param columnFamily column family
+     * @param keysPerSplit approximate number of row keys in one split
+     */
+    public List<CassandraSplit> getSplits(String columnFamily, int keysPerSplit) throws SQLException
+    {
+        checkNotClosed();
+        String keyspace = CassandraUtils.determineCurrentSource(columnFamily, true);
+        return describeSplits(
+            keyspace == null ? currentKeyspace : keyspace,
+            CassandraUtils.determineCurrentSource(columnFamily, false),
+            keysPerSplit);
+    }
+
+    /**
+     * Opens result set with all rows of the split. Rows are read from split replicas page by page.
+     */
+    public CassandraResultSet openSplit(CassandraSplit split) throws SQLException
+    {
+        return openSplit(split, CassandraTableScan.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Opens result set with all rows of the split. Rows are read from split replicas page by page.
+     *
+     * @param split    split
+     * @param pageSize number of rows read by one request
+     */
+    public CassandraResultSet openSplit(CassandraSplit split, int pageSize) throws SQLException
+    {
+        checkNotClosed();
+        CfDef cfDef = describeColumnFamily(split.getKeyspace(), split.getColumnFamily());
+        RangeReader reader = new RangeReader(
+            this, split, cfDef, pageSize, CassandraTableScan.DEFAULT_COLUMN_LIMIT, CassandraTableScan.DEFAULT_MAX_RETRIES, getThriftReadConsistencyLevel());
+        try {
+            return new CassandraResultSet(
+                createInternalStatement("SELECT * FROM " + split.getColumnFamily()),
+                reader,
+                CassandraUtils.makeCqlMetadata(cfDef),
+                split.getKeyspace(),
+                split.getColumnFamily());
+        } catch (CharacterCodingException e) {
+            reader.close();
+            throw new SQLNonTransientException(e);
+        }
+    }
+
+    /**
+     * Reads definitions of all keyspaces, from the schema snapshot if it is valid
+     */
+    List<KsDef> describeKeyspaces() throws InvalidRequestException, TException
+    {
+        List<KsDef> keyspaces = schemaSnapshot == null ? null : schemaSnapshot.getKeyspaces();
+        return keyspaces != null ? keyspaces : client.describe_keyspaces();
+    }
+
+    String describeClusterName() throws TException
+    {
+        String clusterName = schemaSnapshot == null ? null : schemaSnapshot.getClusterName();
+        return clusterName != null ? clusterName : client.describe_cluster_name();
+    }
+
+    /**
+     * Reads keyspace definition
+     */
+    KsDef describeKeyspace(String keyspace) throws SQLException
+    {
+        try {
+            return client.describe_keyspace(keyspace);
+        } catch (NotFoundException e) {
+            throw new SQLSyntaxErrorException("Keyspace '" + keyspace + "' not found");
+        } catch (InvalidRequestException e) {
+            throw new SQLSyntaxErrorException(e.getWhy(), e);
+        } catch (TException e) {
+            throw new SQLNonTransientConnectionException(e);
+        }
+    }
+
+    /**
+     * Reads column family definition
+     */
+    CfDef describeColumnFamily(String keyspace, String columnFamily) throws SQLException
+    {
+        for (CfDef cf : describeKeyspace(keyspace).getCf_defs()) {
+            if (cf.getName().equals(columnFamily)) {
+                return cf;
+            }
+        }
+        throw new SQLSyntaxErrorException("Column family '" + keyspace + "." + columnFamily + "' not found");
+    }
+
+    /**
+     * Splits the ring into token ranges holding approximately keysPerSplit keys each.
+     * Splits are computed by describe_splits on a replica of every ring range.
+     */
+    List<CassandraSplit> describeSplits(String keyspace, String columnFamily, int keysPerSplit) throws SQLException
+    {
+        List<CassandraSplit> splits = new ArrayList<CassandraSplit>();
+        for (CassandraSplit range : describeRing(keyspace, columnFamily)) {
+            splits.addAll(divideSplit(range, keysPerSplit));
+        }
+        return splits;
+    }
+
+    /**
+     * Returns ring ranges as splits (their estimated rows count is unknown and set to 0)
+     */
+    List<CassandraSplit> describeRing(String keyspace, String columnFamily) throws SQLException
+    {
+        List<TokenRange> ring;
+        try {
+            ring = client.describe_ring(keyspace);
+        } catch (InvalidRequestException e) {
+            throw new SQLSyntaxErrorException(e.getWhy(), e);
+        } catch (TException e) {
+            throw new SQLNonTransientConnectionException(e);
+        }
+        List<CassandraSplit> ranges = new ArrayList<CassandraSplit>(ring.size());
+        for (TokenRange range : ring) {
+            ranges.add(new CassandraSplit(keyspace, columnFamily, range.getStart_token(), range.getEnd_token(), getRangeEndpoints(range), 0));
+        }
+        return ranges;
+    }
+
+    /**
+     * Divides token range into splits holding approximately keysPerSplit keys each with describe_splits.
+     * Uses pooled clients, so it may be called from any thread.
+     */
+    List<CassandraSplit> divideSplit(CassandraSplit range, int keysPerSplit) throws SQLException
+    {
+        List<String> tokens = describeRangeSplits(range, keysPerSplit);
+        List<CassandraSplit> splits = new ArrayList<CassandraSplit>(tokens.size());
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            splits.add(new CassandraSplit(
+                range.getKeyspace(), range.getColumnFamily(), tokens.get(i), tokens.get(i + 1), range.getEndpoints(), keysPerSplit));
+        }
+        return splits;
+    }
+
+    private static List<String> getRangeEndpoints(TokenRange range)
+    {
+        List<String> endpoints = new ArrayList<String>(range.getEndpoints());
+        List<String> rpcEndpoints = range.getRpc_endpoints();
+        if (rpcEndpoints != null) {
+            // Nodes listening on all interfaces report 0.0.0.0 as rpc address
+            for (int i = 0; i < rpcEndpoints.size() && i < endpoints.size(); i++) {
+                if (!"0.0.0.0".equals(rpcEndpoints.get(i))) {
+                    endpoints.set(i, rpcEndpoints.get(i));
+                }
+            }
+        }
+        return endpoints;
+    }
+
+    private List<String> describeRangeSplits(CassandraSplit range, int keysPerSplit) throws SQLException
+    {
+        // Split estimation is based on node local data so ask replicas first
+        ClientPool pool = getClientPool();
+        for (String endpoint : range.getEndpoints()) {
+            ClientPool.PooledClient pooled;
+            try {
+                pooled = pool.borrow(endpoint, range.getKeyspace());
+            } catch (SQLNonTransientConnectionException e) {
+                continue;
+            }
+            try {
+                List<String> tokens = pooled.getClient().describe_splits(range.getColumnFamily(), range.getStartToken(), range.getEndToken(), keysPerSplit);
+                pool.release(pooled);
+                return tokens;
+            } catch (InvalidRequestException e) {
+                pool.release(pooled);
+                throw new SQLSyntaxErrorException(e.getWhy(), e);
+            } catch (TException e) {
+                pool.invalidate(pooled);
+            }
+        }
+        // No replica is reachable - scan the whole range as one split
+        return Arrays.asList(range.getStartToken(), range.getEndToken());
+    }
+
     /**
      * Execute a CQL query.
      *
@@ -437,10 +1035,474 @@ public class CassandraConnection extends AbstractConnection {
      */
     protected CqlResult executeCQL(String queryStr, int maxRows, Compression compression)
         throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        return executeCQL(queryStr, maxRows, compression, null);
+    }
+
+    /**
+     * Execute a CQL query with the specified consistency level.
+     *
+     * @param queryStr         a CQL query string
+     * @param maxRows          maximum rows. 0 or negative means unlimited
+     * @param compression      query compression to use
+     * @param consistencyLevel consistency level. If null then connection default read or write level is used.
+     * @return the query results encoded as a CqlResult structure
+     */
+    CqlResult executeCQL(String queryStr, int maxRows, Compression compression, ConsistencyLevel consistencyLevel)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        return executeCQL(queryStr, maxRows, compression, consistencyLevel, new RetryState(CassandraUtils.isReadQuery(queryStr)));
+    }
+
+    /**
+     * Execute a CQL query with the specified consistency level and retry state.
+     *
+     * @param retryState retry information of the statement execution. It is updated with performed retries.
+     */
+    CqlResult executeCQL(String queryStr, int maxRows, final Compression compression, ConsistencyLevel consistencyLevel,
+                         final RetryState retryState)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
     {
         currentKeyspace = CassandraUtils.determineCurrentKeyspace(queryStr, currentKeyspace);
-        queryStr = CassandraUtils.modifyQueryLimits(queryStr, maxRows);
-        return client.execute_cql_query(CassandraUtils.compressQuery(queryStr, compression), compression);
+        final String cql = applyConsistency(CassandraUtils.modifyQueryLimits(queryStr, maxRows), consistencyLevel);
+        if (!CassandraUtils.isReadQuery(queryStr)) {
+            CqlResult result = runQuery(cql, compression, retryState);
+            if (resultCache != null) {
+                resultCache.invalidate(currentKeyspace, queryStr);
+            }
+            if (CassandraUtils.isSchemaQuery(queryStr)) {
+                schemaVersion++;
+            }
+            return result;
+        }
+        if (resultCache == null && singleFlight == null) {
+            return runQuery(cql, compression, retryState);
+        }
+        return executeRead(
+            new QueryKey(currentKeyspace, cql, maxRows, null),
+            CassandraUtils.determineCurrentColumnFamily(queryStr),
+            true,
+            new SingleFlight.Query() {
+                public CqlResult execute()
+                    throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+                {
+                    return runQuery(cql, compression, retryState);
+                }
+            });
+    }
+
+    /**
+     * Executes read query through the result cache and single-flight layer.
+     * The returned result may be shared with other callers and must be treated as read-only.
+     *
+     * @param key          query identity
+     * @param columnFamily column family read by the query
+     * @param deduplicate  whether the query may go through the single-flight layer. Queries which run
+     *                     on the connection client (prepared statements) must not.
+     * @param query        actual query execution
+     */
+    CqlResult executeRead(final QueryKey key, final String columnFamily, boolean deduplicate, final SingleFlight.Query query)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        SingleFlight.Query execution = query;
+        if (resultCache != null) {
+            CqlResult result = resultCache.get(key);
+            if (result != null) {
+                return result;
+            }
+            // The caller which actually runs the query caches the result, single-flight waiters don't copy it again
+            execution = new SingleFlight.Query() {
+                public CqlResult execute()
+                    throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+                {
+                    CqlResult result = query.execute();
+                    if (result.getType() == CqlResultType.ROWS) {
+                        resultCache.put(key, columnFamily, result);
+                    }
+                    return result;
+                }
+            };
+        }
+        return singleFlight == null || !deduplicate ? execution.execute() : singleFlight.execute(key, execution);
+    }
+
+    /**
+     * Checks whether reads go through the result cache or single-flight layer
+     */
+    boolean isSharedReads()
+    {
+        return resultCache != null || singleFlight != null;
+    }
+
+    private CqlResult runQuery(String cql, Compression compression, RetryState retryState)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        if (coalescer != null) {
+            CqlResult result = coalescer.read(currentKeyspace, cql, null);
+            if (result != null) {
+                return result;
+            }
+        }
+        retryBudget.deposit();
+        // Compress once, retries reuse the same buffer
+        ByteBuffer query = CassandraUtils.compressQuery(cql, compression);
+        boolean read = CassandraUtils.isReadQuery(cql);
+        for (int attempt = 1; ; attempt++) {
+            long startTime = System.nanoTime();
+            try {
+                CqlResult result;
+                if (retryState.getHost() != null) {
+                    result = runQueryOnHost(retryState.getHost(), query.duplicate(), compression);
+                } else if (hedgedReader != null && read) {
+                    result = hedgedReader.execute(currentKeyspace, query, compression);
+                } else if ((coalescer != null || singleFlight != null) && read) {
+                    // Reads may come from several threads when coalescing or single-flight is on
+                    result = runQueryOnHost(host, query.duplicate(), compression);
+                } else {
+                    result = client.execute_cql_query(query.duplicate(), compression);
+                }
+                latencyTracker.record((System.nanoTime() - startTime) / 1000);
+                return result;
+            } catch (TimedOutException e) {
+                if (!prepareRetry(e, attempt, retryState, true)) throw e;
+            } catch (UnavailableException e) {
+                if (!prepareRetry(e, attempt, retryState, true)) throw e;
+            }
+        }
+    }
+
+    private CqlResult runQueryOnHost(String host, ByteBuffer query, Compression compression)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        ClientPool pool = getClientPool();
+        ClientPool.PooledClient pooled;
+        try {
+            pooled = pool.borrow(host, currentKeyspace);
+        } catch (SQLException e) {
+            throw new TException(e);
+        }
+        try {
+            CqlResult result = pooled.getClient().execute_cql_query(query, compression);
+            pool.release(pooled);
+            return result;
+        } catch (TException e) {
+            // Transport state is unknown
+            pool.invalidate(pooled);
+            throw e;
+        } catch (InvalidRequestException e) {
+            pool.release(pooled);
+            throw e;
+        } catch (UnavailableException e) {
+            pool.release(pooled);
+            throw e;
+        } catch (TimedOutException e) {
+            pool.release(pooled);
+            throw e;
+        } catch (SchemaDisagreementException e) {
+            pool.release(pooled);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes prepared query on the connection host, retrying it according to the retry policy.
+     * Prepared statements are registered on one host only so they are never retried on another one.
+     */
+    CqlResult executePreparedCQL(int itemId, List<ByteBuffer> values, RetryState retryState)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return client.execute_prepared_cql_query(itemId, values);
+            } catch (TimedOutException e) {
+                if (!prepareRetry(e, attempt, retryState, false)) throw e;
+            } catch (UnavailableException e) {
+                if (!prepareRetry(e, attempt, retryState, false)) throw e;
+            }
+        }
+    }
+
+    /**
+     * Asks the retry policy and the retry budget whether the failed query may be executed again
+     * and waits for the retry delay.
+     *
+     * @return false if the error should be reported to the caller
+     */
+    private boolean prepareRetry(Exception error, int attempt, RetryState retryState, boolean canSwitchHost)
+    {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null || !waitForRetry(policy, error, attempt, retryState.isIdempotent())) {
+            return false;
+        }
+        if (canSwitchHost && policy.isRetryOnOtherHost(error, attempt)) {
+            List<String> hostList = getHosts();
+            if (hostList.size() > 1) {
+                String lastHost = retryState.getHost() == null ? host : retryState.getHost();
+                retryState.setHost(hostList.get((hostList.indexOf(lastHost) + 1) % hostList.size()));
+            }
+        }
+        retryState.addRetry();
+        return true;
+    }
+
+    /**
+     * Registers a Thrift call made by the driver itself (range page, column slice, mutation batch).
+     * Every call adds to the retry budget like a query does.
+     */
+    void startRetryableCall()
+    {
+        retryBudget.deposit();
+    }
+
+    /**
+     * Asks the retry policy and the retry budget whether a failed Thrift call made by the driver itself
+     * may be made again and waits for the retry delay. Such calls retried transport errors before retry
+     * policies were added, so without a configured policy they back off exponentially.
+     * The caller chooses the host of the next attempt.
+     *
+     * @param attempt number of failed attempts (1 after the first failure)
+     * @return false if the error should be reported to the caller
+     */
+    boolean prepareCallRetry(Exception error, int attempt, boolean idempotent)
+    {
+        RetryPolicy policy = retryPolicy;
+        return waitForRetry(policy == null ? DEFAULT_CALL_RETRY_POLICY : policy, error, attempt, idempotent);
+    }
+
+    /**
+     * Same as {@link #prepareCallRetry(Exception, int, boolean)} with the caller's own retry policy.
+     * Retries still count against the connection retry budget.
+     */
+    boolean prepareCallRetry(RetryPolicy policy, Exception error, int attempt, boolean idempotent)
+    {
+        return waitForRetry(policy, error, attempt, idempotent);
+    }
+
+    private boolean waitForRetry(RetryPolicy policy, Exception error, int attempt, boolean idempotent)
+    {
+        long delay = policy.getRetryDelay(error, attempt, idempotent);
+        if (delay < 0 || !retryBudget.withdraw()) {
+            return false;
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retry policy for queries failed with TimedOutException or UnavailableException.
+     * Null means errors are reported without retries.
+     * Default policy is set by the retryPolicy connection property.
+     */
+    public RetryPolicy getRetryPolicy()
+    {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy)
+    {
+        this.retryPolicy = retryPolicy;
+    }
+
+    LatencyTracker getLatencyTracker()
+    {
+        return latencyTracker;
+    }
+
+    /**
+     * Number of reads which were sent to a second host because the first one was slow.
+     * Hedged reads are enabled by the hedgeDelay or hedgePercentile connection properties.
+     */
+    public long getHedgeCount()
+    {
+        return hedgedReader == null ? 0 : hedgedReader.getHedgeCount();
+    }
+
+    /**
+     * Number of hedged reads answered by the second host first
+     */
+    public long getHedgeWinCount()
+    {
+        return hedgedReader == null ? 0 : hedgedReader.getHedgeWinCount();
+    }
+
+    /**
+     * Returns cluster hosts available for queries. The connection host goes first.
+     * Hosts are taken from the hosts connection property or discovered from the current keyspace ring.
+     */
+    synchronized List<String> getHosts()
+    {
+        if (hosts != null) {
+            return hosts;
+        }
+        List<String> result = new ArrayList<String>();
+        result.add(host);
+        String hostsProperty = connectionProps.getProperty(CassandraConstants.PROP_HOSTS);
+        if (hostsProperty != null) {
+            for (String item : hostsProperty.split(",")) {
+                item = item.trim();
+                if (!item.isEmpty() && !result.contains(item)) {
+                    result.add(item);
+                }
+            }
+        } else if (CassandraConstants.DEFAULT_KEYSPACE.equals(currentKeyspace)) {
+            // System keyspace has no ring - try again later
+            return result;
+        } else {
+            try {
+                for (TokenRange range : client.describe_ring(currentKeyspace)) {
+                    for (String endpoint : getRangeEndpoints(range)) {
+                        if (!result.contains(endpoint)) {
+                            result.add(endpoint);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // Use connection host only
+            }
+        }
+        hosts = result;
+        return hosts;
+    }
+
+    /**
+     * Adds consistency level clause to the query.
+     * CQL 3 queries are left as is because CQL 3 sets consistency level by protocol only
+     * (see {@link #makeConsistencyWarning}).
+     *
+     * @param cql              a CQL query string
+     * @param consistencyLevel consistency level. If null then connection default read or write level is used.
+     */
+    String applyConsistency(String cql, ConsistencyLevel consistencyLevel)
+    {
+        consistencyLevel = getQueryConsistencyLevel(cql, consistencyLevel);
+        if (consistencyLevel == null || isCql3()) {
+            return cql;
+        }
+        return CassandraUtils.addConsistency(cql, consistencyLevel);
+    }
+
+    /**
+     * Warning about the consistency level which the query doesn't get.
+     * CQL 3 sets consistency level by protocol only and execute_cql_query has no consistency argument,
+     * so CQL 3 queries run with the server default level.
+     *
+     * @param cql              a CQL query string
+     * @param consistencyLevel consistency level. If null then connection default read or write level is used.
+     * @return null if the level is applied or no level is set
+     */
+    SQLWarning makeConsistencyWarning(String cql, ConsistencyLevel consistencyLevel)
+    {
+        consistencyLevel = getQueryConsistencyLevel(cql, consistencyLevel);
+        if (consistencyLevel == null || !isCql3()) {
+            return null;
+        }
+        return new SQLWarning("Consistency level " + consistencyLevel + " is not supported by CQL 3 queries, server default level was used");
+    }
+
+    private ConsistencyLevel getQueryConsistencyLevel(String cql, ConsistencyLevel consistencyLevel)
+    {
+        if (consistencyLevel != null) {
+            return consistencyLevel;
+        }
+        return CassandraUtils.isReadQuery(cql) ? readConsistencyLevel : writeConsistencyLevel;
+    }
+
+    boolean isCql3()
+    {
+        String version = connectionProps.getProperty(CassandraConstants.PROP_ACTIVE_CQL_VERSION);
+        return version != null && version.startsWith("3");
+    }
+
+    /**
+     * Whether simple key range queries (<code>SELECT ... FROM cf WHERE KEY >= x LIMIT n</code>) are executed
+     * by get_range_slices instead of CQL
+     */
+    public boolean isDirectRangeScan()
+    {
+        return directRangeScan;
+    }
+
+    public void setDirectRangeScan(boolean directRangeScan)
+    {
+        this.directRangeScan = directRangeScan;
+    }
+
+    /**
+     * Whether prepared statement setObject() without target type binds values in the natural type of their class
+     * (4-byte int for Integer, etc.) instead of their string form. Natural types are only safe when the column types
+     * match the value classes: text columns and keys accept any bytes.
+     */
+    public boolean isNaturalObjectTypes()
+    {
+        return naturalObjectTypes;
+    }
+
+    public void setNaturalObjectTypes(boolean naturalObjectTypes)
+    {
+        this.naturalObjectTypes = naturalObjectTypes;
+    }
+
+    /**
+     * Default consistency level of CQL reads. Null means server default.
+     * Set by the <code>readConsistency</code> property. CQL 3 queries can't carry it: they run with the server
+     * default level and the statement gets an SQLWarning.
+     */
+    public ConsistencyLevel getReadConsistencyLevel()
+    {
+        return readConsistencyLevel;
+    }
+
+    public void setReadConsistencyLevel(ConsistencyLevel readConsistencyLevel)
+    {
+        this.readConsistencyLevel = readConsistencyLevel;
+    }
+
+    /**
+     * Default consistency level of CQL writes. Null means server default.
+     * Set by the <code>writeConsistency</code> property. CQL 3 queries can't carry it: they run with the server
+     * default level and the statement gets an SQLWarning.
+     */
+    public ConsistencyLevel getWriteConsistencyLevel()
+    {
+        return writeConsistencyLevel;
+    }
+
+    public void setWriteConsistencyLevel(ConsistencyLevel writeConsistencyLevel)
+    {
+        this.writeConsistencyLevel = writeConsistencyLevel;
+    }
+
+    /**
+     * Consistency level of driver reads made by Thrift calls (scans, coalesced reads)
+     */
+    ConsistencyLevel getThriftReadConsistencyLevel()
+    {
+        return readConsistencyLevel == null ? ConsistencyLevel.ONE : readConsistencyLevel;
+    }
+
+    /**
+     * Consistency level of driver writes made by Thrift calls (bulk loads)
+     */
+    ConsistencyLevel getThriftWriteConsistencyLevel()
+    {
+        return writeConsistencyLevel == null ? ConsistencyLevel.ONE : writeConsistencyLevel;
+    }
+
+    /**
+     * Returns single key reads coalescer or null if coalescing is disabled.
+     * Coalescing is enabled by the coalesceWindow connection property.
+     */
+    ReadCoalescer getCoalescer()
+    {
+        return coalescer;
     }
 
     /**
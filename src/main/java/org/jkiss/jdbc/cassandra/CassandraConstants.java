@@ -15,6 +15,29 @@ public class CassandraConstants {
     public static final String PROP_ACTIVE_CQL_VERSION = "activeCqlVersion";
     public static final String PROP_CQL_VERSION = "cqlVersion";
     public static final String PROP_STRUCT_RESULT_SET = "structResultSet";
+    public static final String PROP_RESULT_CACHE_SIZE = "resultCacheSize";
+    public static final String PROP_RESULT_CACHE_TTL = "resultCacheTtl";
+    public static final String PROP_COALESCE_WINDOW = "coalesceWindow";
+    public static final String PROP_COALESCE_BATCH_SIZE = "coalesceBatchSize";
+    public static final String PROP_COALESCE_FALLBACK = "coalesceFallback";
+    public static final String PROP_SINGLE_FLIGHT = "singleFlight";
+    public static final String PROP_READ_CONSISTENCY = "readConsistency";
+    public static final String PROP_WRITE_CONSISTENCY = "writeConsistency";
+    public static final String PROP_HOSTS = "hosts";
+    public static final String PROP_HEDGE_DELAY = "hedgeDelay";
+    public static final String PROP_HEDGE_PERCENTILE = "hedgePercentile";
+    public static final String PROP_RESULT_HEAP_BUDGET = "resultHeapBudget";
+    public static final String PROP_RESULT_STORAGE = "resultStorage";
+    public static final String PROP_RETRY_POLICY = "retryPolicy";
+    public static final String PROP_RETRY_MAX_ATTEMPTS = "retryMaxAttempts";
+    public static final String PROP_RETRY_BASE_DELAY = "retryBaseDelay";
+    public static final String PROP_RETRY_MAX_DELAY = "retryMaxDelay";
+    public static final String PROP_RETRY_ON_OTHER_HOST = "retryOnOtherHost";
+    public static final String PROP_RETRY_BUDGET_RATIO = "retryBudgetRatio";
+    public static final String PROP_DIRECT_RANGE_SCAN = "directRangeScan";
+    public static final String PROP_FAST_CONNECT = "fastConnect";
+    public static final String PROP_SCHEMA_SNAPSHOT_DIR = "schemaSnapshotDir";
+    public static final String PROP_NATURAL_OBJECT_TYPES = "naturalObjectTypes";
 
     public static final String DB_PRODUCT_NAME = "Cassandra";
 
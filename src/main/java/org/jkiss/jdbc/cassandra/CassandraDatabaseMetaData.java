@@ -34,8 +34,20 @@ import java.util.*;
 
 class CassandraDatabaseMetaData implements DatabaseMetaData {
 
+    private static final int MAX_CACHED_RESULTS = 1000;
+
     private CassandraConnection connection;
-    private List<KsDef> keyspaces;
+    private SchemaIndex schema;
+    private int schemaVersion;
+    private String clusterName;
+    // Rows of schema result sets by method name and arguments. Cleared when schema changes.
+    private final Map<String, LocalResultSet.RowGenerator> cachedRows = new LinkedHashMap<String, LocalResultSet.RowGenerator>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LocalResultSet.RowGenerator> eldest)
+        {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
     private Map<String, String> versions;
     private int majorVersion, minorVersion;
     private boolean showCluster = false;
@@ -59,6 +71,91 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
         }
     }
 
+    /**
+     * Keyspaces and column families indexed by lower case name
+     */
+    private static class SchemaIndex {
+        final List<KsDef> keyspaces;
+        final Map<String, List<KsDef>> keyspacesByName = new HashMap<String, List<KsDef>>();
+        final Map<KsDef, Map<String, List<CfDef>>> columnFamiliesByName = new IdentityHashMap<KsDef, Map<String, List<CfDef>>>();
+
+        SchemaIndex(List<KsDef> keyspaces)
+        {
+            this.keyspaces = keyspaces;
+            for (KsDef ks : keyspaces) {
+                addToIndex(keyspacesByName, ks.getName(), ks);
+                Map<String, List<CfDef>> columnFamilies = new HashMap<String, List<CfDef>>();
+                for (CfDef cf : ks.getCf_defs()) {
+                    addToIndex(columnFamilies, cf.getName(), cf);
+                }
+                columnFamiliesByName.put(ks, columnFamilies);
+            }
+        }
+
+        List<KsDef> findKeyspaces(NamePattern pattern)
+        {
+            if (pattern.isAny()) {
+                return keyspaces;
+            }
+            return filter(pattern.getName() == null ? keyspaces : keyspacesByName.get(pattern.getName().toLowerCase()), pattern);
+        }
+
+        List<CfDef> findColumnFamilies(KsDef ks, NamePattern pattern)
+        {
+            if (pattern.isAny()) {
+                return ks.getCf_defs();
+            }
+            return filter(pattern.getName() == null ? ks.getCf_defs() : columnFamiliesByName.get(ks).get(pattern.getName().toLowerCase()), pattern);
+        }
+
+        CfDef findColumnFamily(String keyspace, String columnFamily)
+        {
+            List<KsDef> candidates = keyspacesByName.get(keyspace.toLowerCase());
+            if (candidates != null) {
+                for (KsDef ks : candidates) {
+                    if (!ks.getName().equals(keyspace)) {
+                        continue;
+                    }
+                    List<CfDef> columnFamilies = columnFamiliesByName.get(ks).get(columnFamily.toLowerCase());
+                    if (columnFamilies != null) {
+                        for (CfDef cf : columnFamilies) {
+                            if (cf.getName().equals(columnFamily)) {
+                                return cf;
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static <T> void addToIndex(Map<String, List<T>> index, String name, T item)
+        {
+            String key = name.toLowerCase();
+            List<T> items = index.get(key);
+            if (items == null) {
+                items = new ArrayList<T>(1);
+                index.put(key, items);
+            }
+            items.add(item);
+        }
+
+        private static <T> List<T> filter(List<T> items, NamePattern pattern)
+        {
+            if (items == null) {
+                return Collections.emptyList();
+            }
+            List<T> result = new ArrayList<T>();
+            for (T item : items) {
+                String name = item instanceof KsDef ? ((KsDef) item).getName() : ((CfDef) item).getName();
+                if (pattern.matches(name)) {
+                    result.add(item);
+                }
+            }
+            return result;
+        }
+    }
+
     public CassandraDatabaseMetaData(CassandraConnection connection)
     {
         this.connection = connection;
@@ -173,7 +270,7 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
             return new LocalResultSet();
         }
         try {
-            String cluster = connection.getClient().describe_cluster_name();
+            String cluster = readClusterName();
             LocalColumn[] columns = new LocalColumn[]{
                 new LocalColumn("TABLE_CAT", Types.VARCHAR),
                 new LocalColumn("VERSION", Types.VARCHAR),
@@ -193,12 +290,65 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
         }
     }
 
-    private List<KsDef> readKeyspaces() throws TException, InvalidRequestException
+    private synchronized SchemaIndex readSchema() throws TException, InvalidRequestException
+    {
+        int version = connection.getSchemaVersion();
+        if (schema == null || schemaVersion != version) {
+            schema = new SchemaIndex(connection.describeKeyspaces());
+            schemaVersion = version;
+            cachedRows.clear();
+        }
+        return schema;
+    }
+
+    /**
+     * Finds column family definition in the cached schema
+     *
+     * @return definition or null if there is no such column family
+     */
+    CfDef findColumnFamily(String keyspace, String columnFamily) throws SQLException
+    {
+        try {
+            return readSchema().findColumnFamily(keyspace, columnFamily);
+        } catch (InvalidRequestException e) {
+            throw new SQLSyntaxErrorException(e.getWhy(), e);
+        } catch (TException e) {
+            throw new SQLNonTransientConnectionException(e);
+        }
+    }
+
+    private synchronized String readClusterName() throws TException
+    {
+        if (!showCluster) {
+            return null;
+        }
+        if (clusterName == null) {
+            clusterName = connection.describeClusterName();
+        }
+        return clusterName;
+    }
+
+    private static String makeCacheKey(String method, Object... args)
     {
-        if (keyspaces == null) {
-            keyspaces = connection.getClient().describe_keyspaces();
+        StringBuilder key = new StringBuilder(method);
+        for (Object arg : args) {
+            key.append('\0').append(arg);
         }
-        return keyspaces;
+        return key.toString();
+    }
+
+    /**
+     * Returns cached rows if schema didn't change since they were built
+     */
+    private synchronized LocalResultSet.RowGenerator getCachedRows(String key) throws TException, InvalidRequestException
+    {
+        readSchema();
+        return cachedRows.get(key);
+    }
+
+    private synchronized void putCachedRows(String key, LocalResultSet.RowGenerator rows)
+    {
+        cachedRows.put(key, rows);
     }
 
     public ResultSet getClientInfoProperties() throws SQLException
@@ -210,7 +360,6 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
     public ResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern) throws SQLException
     {
         try {
-            List<TableColumnDef> cfColumns = getColumnDefs(catalog, schemaPattern, tableNamePattern);
             LocalColumn[] columns = new LocalColumn[]{
                 new LocalColumn("TABLE_CATALOG", Types.VARCHAR),
                 new LocalColumn("TABLE_SCHEM", Types.VARCHAR),
@@ -237,36 +386,26 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
                 new LocalColumn("INDEX_TYPE", Types.VARCHAR),
                 new LocalColumn("INDEX_OPTIONS", Types.OTHER),
             };
-            Object[][] rows = new Object[cfColumns.size()][columns.length];
-            for (int i = 0; i < cfColumns.size(); i++) {
-                TableColumnDef col = cfColumns.get(i);
-                String columnType = col.validationClass;
-                AbstractJdbcType<?> type = TypesMap.getTypeForComparator(columnType);
-                rows[i][0] = catalog;
-                rows[i][1] = col.keyspace.getName();
-                rows[i][2] = col.columnFamily.getName();
-                rows[i][3] = col.columnName;
-                rows[i][4] = type == null ? Types.BINARY : type.getJdbcType();
-                rows[i][5] = columnType;
-                rows[i][6] = Integer.MAX_VALUE;
-                rows[i][7] = null;
-                rows[i][8] = null;
-                rows[i][9] = null;
-                rows[i][10] = col.column == null ? DatabaseMetaData.columnNoNulls : DatabaseMetaData.columnNullable;
-                rows[i][11] = null;
-                rows[i][12] = null;
-                rows[i][13] = null;
-                rows[i][14] = col.position;
-                rows[i][15] = col.column == null ? "YES" : "NO";
-                rows[i][16] = null;
-                rows[i][17] = null;
-                rows[i][18] = null;
-                rows[i][19] = null;
-                rows[i][20] = "NO";
-                rows[i][21] = col.column == null ? null : col.column.getIndex_name();
-                rows[i][22] = col.column == null ? null : col.column.getIndex_type();
-                rows[i][23] = col.column == null ? null : col.column.getIndex_options();
+            String cacheKey = makeCacheKey("getColumns", catalog, schemaPattern, tableNamePattern);
+            LocalResultSet.RowGenerator rows = getCachedRows(cacheKey);
+            if (rows != null) {
+                return new LocalResultSet(null, columns, rows);
             }
+            final List<TableColumnDef> cfColumns = getColumnDefs(catalog, schemaPattern, tableNamePattern);
+            final String catalogName = catalog;
+            final int columnCount = columns.length;
+            rows = new LocalResultSet.RowGenerator() {
+                public int getRowCount()
+                {
+                    return cfColumns.size();
+                }
+
+                public Object[] getRow(int index)
+                {
+                    return makeColumnRow(catalogName, cfColumns.get(index), columnCount);
+                }
+            };
+            putCachedRows(cacheKey, rows);
             return new LocalResultSet(null, columns, rows);
         } catch (Exception e) {
             throw new SQLException(e);
@@ -373,13 +512,6 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
     public ResultSet getIndexInfo(String catalog, String schemaPattern, String tableNamePattern, boolean unique, boolean approximate) throws SQLException
     {
         try {
-            List<TableColumnDef> cfColumns = getColumnDefs(catalog, schemaPattern, tableNamePattern);
-            for (Iterator<TableColumnDef> iter = cfColumns.iterator(); iter.hasNext(); ) {
-                TableColumnDef col = iter.next();
-                if (col.column == null || col.column.getIndex_name() == null || col.column.getIndex_name().isEmpty()) {
-                    iter.remove();
-                }
-            }
             LocalColumn[] columns = new LocalColumn[]{
                 new LocalColumn("TABLE_CATALOG", Types.VARCHAR),
                 new LocalColumn("TABLE_SCHEM", Types.VARCHAR),
@@ -395,23 +527,37 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
                 new LocalColumn("PAGES", Types.VARCHAR),
                 new LocalColumn("FILTER_CONDITION", Types.VARCHAR),
             };
-            Object[][] rows = new Object[cfColumns.size()][columns.length];
+            String cacheKey = makeCacheKey("getIndexInfo", catalog, schemaPattern, tableNamePattern);
+            LocalResultSet.RowGenerator rows = getCachedRows(cacheKey);
+            if (rows != null) {
+                return new LocalResultSet(null, columns, rows);
+            }
+            List<TableColumnDef> cfColumns = new ArrayList<TableColumnDef>();
+            for (TableColumnDef col : getColumnDefs(catalog, schemaPattern, tableNamePattern)) {
+                if (col.column != null && col.column.getIndex_name() != null && !col.column.getIndex_name().isEmpty()) {
+                    cfColumns.add(col);
+                }
+            }
+            Object[][] indexRows = new Object[cfColumns.size()][columns.length];
             for (int i = 0; i < cfColumns.size(); i++) {
                 TableColumnDef col = cfColumns.get(i);
-                rows[i][0] = catalog;
-                rows[i][1] = col.keyspace.getName();
-                rows[i][2] = col.columnFamily.getName();
-                rows[i][3] = true;
-                rows[i][4] = null;
-                rows[i][5] = col.column.getIndex_name();
-                rows[i][6] = col.column.getIndex_type().getValue();
-                rows[i][7] = 1;
-                rows[i][8] = col.columnName;
-                rows[i][9] = "A";
-                rows[i][10] = 0;
-                rows[i][11] = 0;
-                rows[i][12] = 0;
+                Object[] row = indexRows[i];
+                row[0] = catalog;
+                row[1] = col.keyspace.getName();
+                row[2] = col.columnFamily.getName();
+                row[3] = true;
+                row[4] = null;
+                row[5] = col.column.getIndex_name();
+                row[6] = col.column.getIndex_type().getValue();
+                row[7] = 1;
+                row[8] = col.columnName;
+                row[9] = "A";
+                row[10] = 0;
+                row[11] = 0;
+                row[12] = 0;
             }
+            rows = new LocalResultSet.ArrayRows(indexRows);
+            putCachedRows(cacheKey, rows);
             return new LocalResultSet(null, columns, rows);
         } catch (Exception e) {
             throw new SQLException(e);
@@ -537,20 +683,15 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
     public ResultSet getPrimaryKeys(String catalog, String schema, String table) throws SQLException
     {
         try {
-            String cluster = showCluster ? connection.getClient().describe_cluster_name() : null;
+            String cluster = readClusterName();
             if (catalog != null && !catalog.isEmpty() && !catalog.equals(cluster)) {
                 return new LocalResultSet();
             }
-            List<KsDef> keyspaces = readKeyspaces();
+            SchemaIndex schemaIndex = readSchema();
+            NamePattern tableName = NamePattern.name(table);
             List<TableColumnDef> cfColumns = new ArrayList<TableColumnDef>();
-            for (KsDef ks : keyspaces) {
-                if (schema != null && !schema.isEmpty() && !schema.equals(ks.getName())) {
-                    continue;
-                }
-                for (CfDef cf : ks.getCf_defs()) {
-                    if (table != null && !table.isEmpty() && !table.equals(cf.getName())) {
-                        continue;
-                    }
+            for (KsDef ks : schemaIndex.findKeyspaces(NamePattern.name(schema))) {
+                for (CfDef cf : schemaIndex.findColumnFamilies(ks, tableName)) {
                     cfColumns.add(new TableColumnDef(
                         ks,
                         cf,
@@ -632,7 +773,7 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
     public ResultSet getSchemas(String catalog, String schemaPattern) throws SQLException
     {
         try {
-            String cluster = showCluster ? connection.getClient().describe_cluster_name() : null;
+            String cluster = readClusterName();
             if (catalog != null && !catalog.isEmpty() && !catalog.equals(cluster)) {
                 return new LocalResultSet(null, new LocalColumn[0], new Object[0][0]);
             }
@@ -643,13 +784,7 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
                 new LocalColumn("STRATEGY_OPTIONS", Types.OTHER),
                 new LocalColumn("REPLICATION_FACTOR", Types.INTEGER),
             };
-            List<KsDef> ksList = new ArrayList<KsDef>();
-            for (KsDef ks : readKeyspaces()) {
-                if (schemaPattern != null && !schemaPattern.isEmpty() && !CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                    continue;
-                }
-                ksList.add(ks);
-            }
+            List<KsDef> ksList = readSchema().findKeyspaces(NamePattern.like(schemaPattern));
             Object[][] rows = new Object[ksList.size()][columns.length];
             for (int i = 0; i < ksList.size(); i++) {
                 KsDef ksDef = ksList.get(i);
@@ -707,23 +842,10 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
     public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String types[]) throws SQLException
     {
         try {
-            String cluster = showCluster ? connection.getClient().describe_cluster_name() : null;
+            final String cluster = readClusterName();
             if (catalog != null && !catalog.isEmpty() && !catalog.equals(cluster)) {
                 return new LocalResultSet(null, new LocalColumn[0], new Object[0][0]);
             }
-            List<KsDef> keyspaces = readKeyspaces();
-            List<CfDef> columnFamilies = new ArrayList<CfDef>();
-            for (KsDef ks : keyspaces) {
-                if (schemaPattern != null && !schemaPattern.isEmpty() && !CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                    continue;
-                }
-                for (CfDef cf : ks.getCf_defs()) {
-                    if (tableNamePattern != null && !tableNamePattern.isEmpty() && !CassandraUtils.matchesPattern(cf.getName(), tableNamePattern)) {
-                        continue;
-                    }
-                    columnFamilies.add(cf);
-                }
-            }
             LocalColumn[] columns = new LocalColumn[]{
                 new LocalColumn("TABLE_CATALOG", Types.VARCHAR),
                 new LocalColumn("TABLE_SCHEM", Types.VARCHAR),
@@ -752,76 +874,30 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
                 new LocalColumn("CF_DCLOCAL_READ_REPAIR_CHANCE", Types.DOUBLE),
                 new LocalColumn("CF_READ_REPAIR_CHANCE", Types.DOUBLE),
             };
-            Object[][] rows = new Object[columnFamilies.size()][columns.length];
-            for (int i = 0; i < columnFamilies.size(); i++) {
-                CfDef cf = columnFamilies.get(i);
-
-                String keyAlias;
-                if (cf.getKey_alias() != null) {
-                    keyAlias = CassandraUtils.string(cf.getKey_alias());
-                } else {
-                    keyAlias = CassandraConstants.DEFAULT_KEY_ALIAS;
+            String cacheKey = makeCacheKey("getTables", catalog, schemaPattern, tableNamePattern);
+            LocalResultSet.RowGenerator rows = getCachedRows(cacheKey);
+            if (rows != null) {
+                return new LocalResultSet(null, columns, rows);
+            }
+            SchemaIndex schemaIndex = readSchema();
+            NamePattern tableName = NamePattern.like(tableNamePattern);
+            final List<CfDef> columnFamilies = new ArrayList<CfDef>();
+            for (KsDef ks : schemaIndex.findKeyspaces(NamePattern.like(schemaPattern))) {
+                columnFamilies.addAll(schemaIndex.findColumnFamilies(ks, tableName));
+            }
+            final int columnCount = columns.length;
+            rows = new LocalResultSet.RowGenerator() {
+                public int getRowCount()
+                {
+                    return columnFamilies.size();
                 }
 
-                rows[i][0] = cluster;
-                rows[i][1] = cf.getKeyspace();
-                rows[i][2] = cf.getName();
-                rows[i][3] = cf.getColumn_type();
-                rows[i][4] = cf.getComment();
-                rows[i][5] = null;
-                rows[i][6] = null;
-                rows[i][7] = null;
-                rows[i][8] = null;
-                rows[i][9] = null;
-                try {
-                    rows[i][10] = cf.getCaching();
-                } catch (Throwable e) {
-                    // May be unsupported by 0.x
-                }
-                rows[i][11] = keyAlias;
-                try {
-                    rows[i][12] = cf.getKey_validation_class();
-                } catch (Throwable e) {
-                    // May be unsupported
+                public Object[] getRow(int index)
+                {
+                    return makeTableRow(cluster, columnFamilies.get(index), columnCount);
                 }
-                try {
-                    rows[i][13] = cf.getDefault_validation_class();
-                } catch (Throwable e) {
-                    // May be unsupported
-                }
-                try {
-                    rows[i][14] = cf.getCompaction_strategy();
-                    rows[i][15] = cf.getCompaction_strategy_options();
-                    rows[i][16] = cf.getMax_compaction_threshold();
-                    rows[i][17] = cf.getMin_compaction_threshold();
-                } catch (Throwable e) {
-                    // May be unsupported
-                }
-                try {
-                    rows[i][18] = cf.getComparator_type();
-                    rows[i][19] = cf.getSubcomparator_type();
-                } catch (Throwable e) {
-                    // May be unsupported
-                }
-                try {
-                    rows[i][20] = cf.getId();
-                } catch (Throwable e) {
-                    // May be unsupported
-                }
-                try {
-                    rows[i][21] = cf.getCompression_options();
-                } catch (Throwable e) {
-                    // May be unsupported
-                }
-                try {
-                    rows[i][22] = cf.getGc_grace_seconds();
-                    rows[i][23] = cf.getBloom_filter_fp_chance();
-                    rows[i][24] = cf.getDclocal_read_repair_chance();
-                    rows[i][25] = cf.getRead_repair_chance();
-                } catch (Throwable e) {
-                    // May be unsupported
-                }
-            }
+            };
+            putCachedRows(cacheKey, rows);
             return new LocalResultSet(null, columns, rows);
         } catch (Exception e) {
             throw new SQLException(e);
@@ -1203,8 +1279,7 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
 
     public boolean supportsResultSetType(int type) throws SQLException
     {
-
-        return ResultSet.TYPE_FORWARD_ONLY == type;
+        return ResultSet.TYPE_FORWARD_ONLY == type || ResultSet.TYPE_SCROLL_INSENSITIVE == type;
     }
 
     public boolean supportsSavepoints() throws SQLException
@@ -1328,22 +1403,120 @@ class CassandraDatabaseMetaData implements DatabaseMetaData {
         throw new SQLFeatureNotSupportedException();
     }
 
+    private static Object[] makeColumnRow(String catalog, TableColumnDef col, int columnCount)
+    {
+        Object[] row = new Object[columnCount];
+        String columnType = col.validationClass;
+        AbstractJdbcType<?> type = TypesMap.getTypeForComparator(columnType);
+        row[0] = catalog;
+        row[1] = col.keyspace.getName();
+        row[2] = col.columnFamily.getName();
+        row[3] = col.columnName;
+        row[4] = type == null ? Types.BINARY : type.getJdbcType();
+        row[5] = columnType;
+        row[6] = Integer.MAX_VALUE;
+        row[7] = null;
+        row[8] = null;
+        row[9] = null;
+        row[10] = col.column == null ? DatabaseMetaData.columnNoNulls : DatabaseMetaData.columnNullable;
+        row[11] = null;
+        row[12] = null;
+        row[13] = null;
+        row[14] = col.position;
+        row[15] = col.column == null ? "YES" : "NO";
+        row[16] = null;
+        row[17] = null;
+        row[18] = null;
+        row[19] = null;
+        row[20] = "NO";
+        row[21] = col.column == null ? null : col.column.getIndex_name();
+        row[22] = col.column == null ? null : col.column.getIndex_type();
+        row[23] = col.column == null ? null : col.column.getIndex_options();
+        return row;
+    }
+
+    private static Object[] makeTableRow(String cluster, CfDef cf, int columnCount)
+    {
+        Object[] row = new Object[columnCount];
+        String keyAlias;
+        if (cf.getKey_alias() != null) {
+            keyAlias = CassandraUtils.string(cf.getKey_alias());
+        } else {
+            keyAlias = CassandraConstants.DEFAULT_KEY_ALIAS;
+        }
+
+        row[0] = cluster;
+        row[1] = cf.getKeyspace();
+        row[2] = cf.getName();
+        row[3] = cf.getColumn_type();
+        row[4] = cf.getComment();
+        row[5] = null;
+        row[6] = null;
+        row[7] = null;
+        row[8] = null;
+        row[9] = null;
+        try {
+            row[10] = cf.getCaching();
+        } catch (Throwable e) {
+            // May be unsupported by 0.x
+        }
+        row[11] = keyAlias;
+        try {
+            row[12] = cf.getKey_validation_class();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        try {
+            row[13] = cf.getDefault_validation_class();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        try {
+            row[14] = cf.getCompaction_strategy();
+            row[15] = cf.getCompaction_strategy_options();
+            row[16] = cf.getMax_compaction_threshold();
+            row[17] = cf.getMin_compaction_threshold();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        try {
+            row[18] = cf.getComparator_type();
+            row[19] = cf.getSubcomparator_type();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        try {
+            row[20] = cf.getId();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        try {
+            row[21] = cf.getCompression_options();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        try {
+            row[22] = cf.getGc_grace_seconds();
+            row[23] = cf.getBloom_filter_fp_chance();
+            row[24] = cf.getDclocal_read_repair_chance();
+            row[25] = cf.getRead_repair_chance();
+        } catch (Throwable e) {
+            // May be unsupported
+        }
+        return row;
+    }
+
     private List<TableColumnDef> getColumnDefs(String catalog, String schemaPattern, String tableNamePattern) throws TException, InvalidRequestException, SQLException, CharacterCodingException
     {
-        String cluster = showCluster ? connection.getClient().describe_cluster_name() : null;
+        String cluster = readClusterName();
         if (catalog != null && !catalog.isEmpty() && !catalog.equals(cluster)) {
             return Collections.emptyList();
         }
-        List<KsDef> keyspaces = readKeyspaces();
+        SchemaIndex schemaIndex = readSchema();
+        NamePattern tableName = NamePattern.like(tableNamePattern);
         List<TableColumnDef> cfColumns = new ArrayList<TableColumnDef>();
-        for (KsDef ks : keyspaces) {
-            if (schemaPattern != null && !schemaPattern.isEmpty() && !CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                continue;
-            }
-            for (CfDef cf : ks.getCf_defs()) {
-                if (tableNamePattern != null && !tableNamePattern.isEmpty() && !CassandraUtils.matchesPattern(cf.getName(), tableNamePattern)) {
-                    continue;
-                }
+        for (KsDef ks : schemaIndex.findKeyspaces(NamePattern.like(schemaPattern))) {
+            for (CfDef cf : schemaIndex.findColumnFamilies(ks, tableName)) {
                 int position = 1;
                 cfColumns.add(new TableColumnDef(
                     ks,
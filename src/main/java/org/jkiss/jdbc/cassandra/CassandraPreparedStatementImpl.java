@@ -25,7 +25,6 @@ import org.apache.thrift.TException;
 import org.jkiss.jdbc.cassandra.types.*;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.sql.Date;
@@ -35,12 +34,21 @@ import java.util.*;
 public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
 
     private int itemId = -1;
+    /**
+     * Query text actually prepared (with limits and consistency level)
+     */
+    private String preparedCql;
 
     /**
      * a Map of the current bound values encountered in setXXX methods
      */
     private Map<Integer, ByteBuffer> bindValues = new LinkedHashMap<Integer, ByteBuffer>();
 
+    /**
+     * encode buffer for fixed-width values
+     */
+    private final ParameterSlab slab = new ParameterSlab();
+
 
     CassandraPreparedStatementImpl(CassandraConnection con, String cql) throws SQLException
     {
@@ -88,7 +96,36 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
         }
         try {
             resetResults();
-            CqlResult result = execute(itemId, getBindValues());
+            final List<ByteBuffer> values = getBindValues();
+            final RetryState retryState = createRetryState(cql);
+            CqlResult result;
+            try {
+                if (!CassandraUtils.isReadQuery(cql)) {
+                    result = execute(itemId, values, retryState);
+                    CassandraResultCache resultCache = connection.getResultCache();
+                    if (resultCache != null) {
+                        resultCache.invalidate(keyspace, cql);
+                    }
+                } else if (connection.getResultCache() != null) {
+                    // Not deduplicated: the query is prepared on the connection client only
+                    result = connection.executeRead(
+                        new QueryKey(keyspace, preparedCql, maxRows, values),
+                        columnFamily,
+                        false,
+                        new SingleFlight.Query() {
+                            public CqlResult execute()
+                                throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+                            {
+                                return CassandraPreparedStatementImpl.this.execute(itemId, values, retryState);
+                            }
+                        });
+                } else {
+                    result = execute(itemId, values, retryState);
+                }
+            } finally {
+                addRetryWarning(retryState);
+            }
+            addWarning(connection.makeConsistencyWarning(cql, consistencyLevel));
 
             switch (result.getType()) {
                 case ROWS:
@@ -132,7 +169,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcBoolean.instance.decompose(truth));
+        bindValues.put(parameterIndex, slab.putBoolean(truth));
     }
 
 
@@ -140,7 +177,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcInteger.instance.decompose(BigInteger.valueOf(b)));
+        bindValues.put(parameterIndex, slab.putVarint(b));
     }
 
 
@@ -157,7 +194,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
         checkNotClosed();
         checkIndex(parameterIndex);
         // date type data is handled as an 8 byte Long value of milliseconds since the epoch (handled in decompose() )
-        bindValues.put(parameterIndex, JdbcDate.instance.decompose(value));
+        bindValues.put(parameterIndex, value == null ? CassandraUtils.EMPTY_BYTE_BUFFER : slab.putLong(value.getTime()));
     }
 
 
@@ -172,7 +209,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcDouble.instance.decompose(decimal));
+        bindValues.put(parameterIndex, slab.putDouble(decimal));
     }
 
 
@@ -180,7 +217,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcFloat.instance.decompose(decimal));
+        bindValues.put(parameterIndex, slab.putFloat(decimal));
     }
 
 
@@ -188,7 +225,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcInt32.instance.decompose(integer));
+        bindValues.put(parameterIndex, slab.putInt(integer));
     }
 
 
@@ -196,7 +233,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcLong.instance.decompose(bigint));
+        bindValues.put(parameterIndex, slab.putLong(bigint));
     }
 
 
@@ -225,8 +262,11 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
 
     public void setObject(int parameterIndex, Object object) throws SQLException
     {
-        // For now all objects are forced to String type
-        setObject(parameterIndex, object, Types.VARCHAR, 0);
+        checkNotClosed();
+        checkIndex(parameterIndex);
+        // string form unless the application registered an encoder or asked for natural types
+        bindValues.put(parameterIndex, connection.isNaturalObjectTypes() ?
+            HandleObjects.makeBytes(object) : HandleObjects.makeUntypedBytes(object));
     }
 
     public void setObject(int parameterIndex, Object object, int targetSqlType) throws SQLException
@@ -258,7 +298,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
     {
         checkNotClosed();
         checkIndex(parameterIndex);
-        bindValues.put(parameterIndex, JdbcInteger.instance.decompose(BigInteger.valueOf(smallint)));
+        bindValues.put(parameterIndex, slab.putVarint(smallint));
     }
 
 
@@ -275,7 +315,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
         checkNotClosed();
         checkIndex(parameterIndex);
         // time type data is handled as an 8 byte Long value of milliseconds since the epoch
-        bindValues.put(parameterIndex, JdbcLong.instance.decompose(value.getTime()));
+        bindValues.put(parameterIndex, slab.putLong(value.getTime()));
     }
 
 
@@ -291,7 +331,7 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
         checkNotClosed();
         checkIndex(parameterIndex);
         // timestamp type data is handled as an 8 byte Long value of milliseconds since the epoch. Nanos are not supported and are ignored
-        bindValues.put(parameterIndex, JdbcLong.instance.decompose(value.getTime()));
+        bindValues.put(parameterIndex, slab.putLong(value.getTime()));
     }
 
 
@@ -311,15 +351,35 @@ public class CassandraPreparedStatementImpl extends CassandraPreparedStatement {
         bindValues.put(parameterIndex, CassandraUtils.bytes(url));
     }
 
-    protected CqlResult execute(int itemId, List<ByteBuffer> values)
+    /**
+     * Consistency level is a part of the prepared query, so it is prepared again
+     */
+    @Override
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel)
+    {
+        if (consistencyLevel != this.consistencyLevel) {
+            itemId = -1;
+        }
+        super.setConsistencyLevel(consistencyLevel);
+    }
+
+    protected CqlResult execute(int itemId, List<ByteBuffer> values, RetryState retryState)
         throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
     {
-        return connection.getClient().execute_prepared_cql_query(itemId, values);
+        ReadCoalescer coalescer = connection.getCoalescer();
+        if (coalescer != null && values.size() == 1) {
+            CqlResult result = coalescer.read(keyspace, preparedCql, values.get(0));
+            if (result != null) {
+                return result;
+            }
+        }
+        return connection.executePreparedCQL(itemId, values, retryState);
     }
 
     protected CqlPreparedResult prepare(String queryStr, Compression compression) throws InvalidRequestException, TException
     {
-        queryStr = CassandraUtils.modifyQueryLimits(queryStr, maxRows);
+        queryStr = connection.applyConsistency(CassandraUtils.modifyQueryLimits(queryStr, maxRows), consistencyLevel);
+        preparedCql = queryStr;
         return connection.getClient().prepare_cql_query(CassandraUtils.compressQuery(queryStr, compression), compression);
     }
 
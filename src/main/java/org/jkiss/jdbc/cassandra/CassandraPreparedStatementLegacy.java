@@ -39,7 +39,14 @@ public class CassandraPreparedStatementLegacy extends CassandraPreparedStatement
     {
         try {
             resetResults();
-            CqlResult result = connection.executeCQL(cql, maxRows);
+            RetryState retryState = createRetryState(cql);
+            CqlResult result;
+            try {
+                result = connection.executeCQL(cql, maxRows, CassandraConnection.defaultCompression, consistencyLevel, retryState);
+            } finally {
+                addRetryWarning(retryState);
+            }
+            addWarning(connection.makeConsistencyWarning(cql, consistencyLevel));
             switch (result.getType()) {
                 case ROWS:
                     currentResultSet = new CassandraResultSet(this, result, keyspace, columnFamily);
@@ -0,0 +1,186 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.CqlResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection level cache of SELECT results.
+ * <p/>
+ * Entries are evicted in LRU order when the cache is full and expire after the configured TTL.
+ * A copy of the result is cached, and every hit returns that same instance to any number of result sets.
+ * Readers must never modify it: result sets decode column values in place (absolute reads or duplicates)
+ * and don't change rows, columns or buffer positions.
+ * Writes made through the same connection invalidate cached results of the written column family.
+ */
+public class CassandraResultCache {
+
+    public static final long DEFAULT_TTL = 60000;
+
+    private static class CacheEntry {
+        final String columnFamily;
+        final CqlResult result;
+        final long expiresAt;
+
+        CacheEntry(String columnFamily, CqlResult result, long expiresAt)
+        {
+            this.columnFamily = columnFamily;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttl;
+    private final LinkedHashMap<QueryKey, CacheEntry> entries;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    CassandraResultCache(final int maxSize, long ttl)
+    {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<QueryKey, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryKey, CacheEntry> eldest)
+            {
+                if (size() > CassandraResultCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Entry time to live in milliseconds
+     */
+    public long getTtl()
+    {
+        return ttl;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Number of entries removed because of size limit or TTL
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Returns the cached result. It is shared by all hits and must not be modified.
+     */
+    synchronized CqlResult get(QueryKey key)
+    {
+        CacheEntry entry = entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            evictionCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.result;
+    }
+
+    /**
+     * Caches a copy of the result
+     */
+    synchronized void put(QueryKey key, String columnFamily, CqlResult result)
+    {
+        entries.put(key, new CacheEntry(columnFamily, new CqlResult(result), System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Invalidates results which may be changed by the query.
+     * Queries which modify unknown column family (batches, schema changes) invalidate the whole cache.
+     */
+    void invalidate(String keyspace, String cql)
+    {
+        if (CassandraUtils.isReadQuery(cql) || CassandraUtils.isUseQuery(cql)) {
+            return;
+        }
+        String source = CassandraUtils.determineModifiedSource(cql);
+        if (source == null) {
+            clear();
+        } else {
+            String sourceKeyspace = CassandraUtils.determineCurrentSource(source, true);
+            invalidateColumnFamily(
+                sourceKeyspace == null ? keyspace : sourceKeyspace,
+                CassandraUtils.determineCurrentSource(source, false));
+        }
+    }
+
+    synchronized void invalidateColumnFamily(String keyspace, String columnFamily)
+    {
+        for (Iterator<Map.Entry<QueryKey, CacheEntry>> iter = entries.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<QueryKey, CacheEntry> entry = iter.next();
+            if (columnFamily.equalsIgnoreCase(entry.getValue().columnFamily) &&
+                (keyspace == null || keyspace.equalsIgnoreCase(entry.getKey().getKeyspace()))) {
+                iter.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "Result cache: " + entries.size() + "/" + maxSize + " entries, " +
+            hitCount + " hits, " + missCount + " misses, " + evictionCount + " evictions";
+    }
+
+}
@@ -71,9 +71,21 @@ public class CassandraResultSet extends AbstractResultSet {
 
     private CqlResult resultSet;
     /**
-     * The rows iterator.
+     * Whether the result set may be read by other result sets (result cache, single-flight).
      */
-    private Iterator<CqlRow> rowsIterator;
+    private boolean sharedResult;
+    /**
+     * The rows source.
+     */
+    private RowSource rows;
+    /**
+     * Row read ahead by getMetaData() and not consumed by next() yet.
+     */
+    private CqlRow pushedBackRow;
+    /**
+     * Fetched rows of a scrollable result set. Null for forward only result sets.
+     */
+    private RowStore rowStore;
 
     int rowNumber = 0;
     // the current row key when iterating through results.
@@ -85,9 +97,9 @@ public class CassandraResultSet extends AbstractResultSet {
     private List<TypedColumn> values = new ArrayList<TypedColumn>();
 
     /**
-     * The index map.
+     * Column indexes of the current row. Shared with the meta data while rows have the same columns.
      */
-    private Map<String, Integer> indexMap = new HashMap<String, Integer>();
+    private Map<String, Integer> indexMap = Collections.emptyMap();
 
     private CResultSetMetaData meta;
 
@@ -111,11 +123,105 @@ public class CassandraResultSet extends AbstractResultSet {
         String keyspace,
         String columnFamily) throws SQLException
     {
-        this.statement = statement;
+        this(statement, createRowSource(statement, resultSet), resultSet.schema, keyspace, columnFamily);
         this.resultSet = resultSet;
+        this.sharedResult = isSharedResult(statement);
+    }
+
+    /**
+     * Scrollable result sets copy rows to the row store. Unless the result is shared (result cache, single-flight)
+     * its rows are released as they are copied, so the received result and the store don't hold them twice.
+     * Forward-only result sets read the received rows in place.
+     */
+    private static RowSource createRowSource(CassandraStatement statement, CqlResult result) throws SQLException
+    {
+        if (statement.getResultSetType() != TYPE_FORWARD_ONLY && !isSharedResult(statement)) {
+            RowSource source = new ConsumingRowSource(result.getRows());
+            result.setRows(null);
+            return source;
+        }
+        return new IteratorRowSource(result.getRowsIterator());
+    }
+
+    /**
+     * Whether result of the statement query may come from the result cache or the single-flight layer
+     */
+    private static RowStore createRowStore(CassandraStatement statement) throws SQLException
+    {
+        if (statement.getResultSetType() == TYPE_FORWARD_ONLY) {
+            return null;
+        }
+        CassandraConnection connection = statement.getConnection();
+        return new RowStore(connection.getResultStorage(), connection.getResultHeapBudget());
+    }
+
+    private static boolean isSharedResult(CassandraStatement statement)
+    {
+        CassandraConnection connection = statement.getConnection();
+        if (!CassandraUtils.isReadQuery(statement.getCql())) {
+            return false;
+        }
+        if (statement instanceof CassandraPreparedStatementImpl) {
+            // Prepared reads are cached but not deduplicated
+            return connection.getResultCache() != null;
+        }
+        return connection.isSharedReads();
+    }
+
+    /**
+     * Result for unwrap(CqlResult). Rows of scrollable result sets are rebuilt from the row store,
+     * shared results are copied so the caller can't change what other result sets read.
+     */
+    private CqlResult getCqlResult() throws SQLException
+    {
+        if (rowStore == null) {
+            return sharedResult ? new CqlResult(resultSet) : resultSet;
+        }
+        fetchAll();
+        List<CqlRow> resultRows = new ArrayList<CqlRow>(rowStore.getRowCount());
+        for (int i = 0; i < rowStore.getRowCount(); i++) {
+            resultRows.add(rowStore.get(i));
+        }
+        CqlResult result = new CqlResult(resultSet.getType());
+        result.setSchema(resultSet.getSchema());
+        result.setRows(resultRows);
+        return result;
+    }
+
+    /**
+     * Instantiates a new cassandra result set which reads rows from the specified source.
+     */
+    CassandraResultSet(
+        CassandraStatement statement,
+        RowSource rows,
+        CqlMetadata schema,
+        String keyspace,
+        String columnFamily) throws SQLException
+    {
+        this(statement, rows, createRowStore(statement), schema, keyspace, columnFamily);
+    }
+
+    /**
+     * Instantiates a new cassandra result set which reads rows from the specified source.
+     *
+     * @param rowStore storage of fetched rows. Result set is scrollable if it is set.
+     */
+    CassandraResultSet(
+        CassandraStatement statement,
+        RowSource rows,
+        RowStore rowStore,
+        CqlMetadata schema,
+        String keyspace,
+        String columnFamily) throws SQLException
+    {
+        this.statement = statement;
+        this.rows = rows;
+        this.schema = schema;
         this.keyspace = keyspace;
         this.columnFamily = columnFamily;
-        this.resultSetType = statement.getResultSetType();
+        // Result set never sees changes made after the query so it is always insensitive
+        this.resultSetType = rowStore == null ? TYPE_FORWARD_ONLY : TYPE_SCROLL_INSENSITIVE;
+        this.rowStore = rowStore;
         this.fetchDirection = statement.getFetchDirection();
         this.fetchSize = statement.getFetchSize();
 
@@ -134,10 +240,6 @@ public class CassandraResultSet extends AbstractResultSet {
                 log.warn("Can't read column familty meta information", e);
             }
         }
-
-        // reset the iterator back to the beginning.
-        rowsIterator = resultSet.getRowsIterator();
-        this.schema = resultSet.schema;
     }
 
     public String getKeyspace()
@@ -155,22 +257,30 @@ public class CassandraResultSet extends AbstractResultSet {
         return statement.getConnection();
     }
 
-    private boolean hasMoreRows()
+    private boolean hasMoreRows() throws SQLException
     {
-        return (rowsIterator != null && rowsIterator.hasNext());
+        return pushedBackRow != null || (rows != null && rows.hasNext());
     }
 
-    private void populateColumns()
+    private CqlRow nextRow() throws SQLException
+    {
+        CqlRow row = pushedBackRow;
+        if (row != null) {
+            pushedBackRow = null;
+            return row;
+        }
+        return rows.next();
+    }
+
+    private void populateColumns(CqlRow row)
     {
         // clear column value tables
         values.clear();
-        indexMap.clear();
 
-        CqlRow row = rowsIterator.next();
         curRowKey = row.getKey();
         List<Column> cols = row.getColumns();
         List<Column> populatedCols = new ArrayList<Column>(cols.size());
-        if (statement.getConnection().isStructResultSet() && columnsMeta != null) {
+        if (columnsMeta != null && statement.getConnection().isStructResultSet()) {
             if (cols.size() == 1 && Arrays.equals(countAlias, cols.get(0).getName())) {
                 // Just count
                 populateColumn(createColumn(cols.get(0)));
@@ -228,31 +338,138 @@ public class CassandraResultSet extends AbstractResultSet {
             // No columns at all - populate key at least
             populateColumn(new TypedColumn(keyAlias, curRowKey, JdbcUTF8.instance, TypesMap.getTypeForComparator(keyType)));
         }
+        if (meta == null) {
+            meta = new CResultSetMetaData(values);
+        }
+        if (meta.hasColumns(values)) {
+            indexMap = meta.columnIndexes;
+        } else {
+            // Dynamic columns - this row differs from the first one
+            indexMap = new HashMap<String, Integer>();
+            for (int i = 0; i < values.size(); i++) {
+                indexMap.put(values.get(i).getNameString(), i + 1);
+            }
+        }
     }
 
     private void populateColumn(TypedColumn rsColumn)
     {
         values.add(rsColumn);
-        indexMap.put(rsColumn.getNameString(), values.size());
     }
 
-    public boolean absolute(int arg0) throws SQLException
+    /**
+     * Columns of a result set without rows. Taken from column family meta data for SELECT * queries
+     * and from the result schema otherwise.
+     */
+    private List<TypedColumn> getSchemaColumns()
     {
-        throw new SQLFeatureNotSupportedException();
+        List<TypedColumn> columns = new ArrayList<TypedColumn>();
+        if (columnsMeta != null && statement.getConnection().isStructResultSet() && CassandraUtils.isSelectAllQuery(statement.getCql())) {
+            columns.add(new TypedColumn(new Column(ByteBuffer.wrap(keyAlias)), JdbcUTF8.instance, TypesMap.getTypeForComparator(keyType)));
+            for (ColumnDef columnMeta : columnsMeta) {
+                columns.add(new TypedColumn(columnMeta));
+            }
+            columns.add(new TypedColumn(new CassandraStruct(this)));
+        } else if (schema != null) {
+            Set<ByteBuffer> names = new LinkedHashSet<ByteBuffer>();
+            if (schema.getName_types() != null) {
+                names.addAll(schema.getName_types().keySet());
+            }
+            if (schema.getValue_types() != null) {
+                names.addAll(schema.getValue_types().keySet());
+            }
+            for (ByteBuffer name : names) {
+                columns.add(CassandraRow.createColumn(new Column(name), schema));
+            }
+        }
+        return columns;
     }
 
-    public void afterLast() throws SQLException
+    /**
+     * Reads next row from the source into the row store
+     */
+    private boolean fetchRow() throws SQLException
     {
-        throw new SQLFeatureNotSupportedException();
+        if (!hasMoreRows()) {
+            return false;
+        }
+        rowStore.add(nextRow());
+        return true;
     }
 
-    public void beforeFirst() throws SQLException
+    private void fetchAll() throws SQLException
     {
-        throw new SQLFeatureNotSupportedException();
+        while (fetchRow()) {
+            // continue
+        }
+        if (rows != null) {
+            // All rows are in the store
+            rows.close();
+            rows = null;
+        }
+    }
+
+    private void checkScrollable() throws SQLException
+    {
+        checkNotClosed();
+        if (rowStore == null) {
+            throw new SQLException("Operation is not supported by forward only result set");
+        }
+    }
+
+    /**
+     * Moves cursor of a scrollable result set to the specified row.
+     * Rows before first and after last position the cursor before first row or after last row.
+     */
+    private boolean moveTo(int row) throws SQLException
+    {
+        if (row < 1) {
+            rowNumber = 0;
+            values.clear();
+            return false;
+        }
+        while (rowStore.getRowCount() < row && fetchRow()) {
+            // continue
+        }
+        if (row > rowStore.getRowCount()) {
+            rowNumber = rowStore.getRowCount() + 1;
+            values.clear();
+            return false;
+        }
+        populateColumns(rowStore.get(row - 1));
+        rowNumber = row;
+        return true;
+    }
+
+    public synchronized boolean absolute(int row) throws SQLException
+    {
+        checkScrollable();
+        if (row < 0) {
+            fetchAll();
+            return moveTo(Math.max(rowStore.getRowCount() + 1 + row, 0));
+        }
+        return moveTo(row);
+    }
+
+    public synchronized void afterLast() throws SQLException
+    {
+        checkScrollable();
+        fetchAll();
+        moveTo(rowStore.getRowCount() + 1);
+    }
+
+    public synchronized void beforeFirst() throws SQLException
+    {
+        checkScrollable();
+        moveTo(0);
     }
 
     private void checkIndex(int index) throws SQLException
     {
+        checkNotClosed();
+        if (!isOnRow()) {
+            throw new SQLSyntaxErrorException(ErrorMessages.NO_CURRENT_ROW);
+        }
         // 1 <= index <= size()
         if (index < 1 || index > values.size())
             throw new SQLSyntaxErrorException(
@@ -260,6 +477,17 @@ public class CassandraResultSet extends AbstractResultSet {
                     index + " " + values.size());
     }
 
+    /**
+     * Checks that the cursor is positioned on a row, not before the first or after the last one
+     */
+    private boolean isOnRow()
+    {
+        if (rowStore != null) {
+            return rowNumber >= 1 && rowNumber <= rowStore.getRowCount();
+        }
+        return rowNumber >= 1 && rowNumber != Integer.MAX_VALUE;
+    }
+
     private void checkName(String name) throws SQLException
     {
         if (indexMap.get(name) == null)
@@ -288,13 +516,26 @@ public class CassandraResultSet extends AbstractResultSet {
 
     public void close() throws SQLException
     {
+        if (rows != null) {
+            rows.close();
+            rows = null;
+        }
+        if (rowStore != null) {
+            rowStore.close();
+            rowStore = null;
+        }
+        pushedBackRow = null;
         indexMap = null;
         values = null;
+        if (statement.closeOnCompletion) {
+            statement.close();
+        }
     }
 
-    public boolean first() throws SQLException
+    public synchronized boolean first() throws SQLException
     {
-        throw new SQLFeatureNotSupportedException();
+        checkScrollable();
+        return moveTo(1);
     }
 
 
@@ -495,7 +736,7 @@ public class CassandraResultSet extends AbstractResultSet {
     {
         checkName(name);
         checkNotClosed();
-        return values.get(indexMap.get(name));
+        return getColumn(indexMap.get(name));
     }
 
     public int getConcurrency() throws SQLException
@@ -728,11 +969,12 @@ public class CassandraResultSet extends AbstractResultSet {
     {
         checkNotClosed();
         if (meta == null) {
-            meta = new CResultSetMetaData();
-            if (indexMap.isEmpty() && hasMoreRows()) {
-                // We need first row to get meta
-                populateColumns();
-                rowsIterator = resultSet.getRowsIterator();
+            if (hasMoreRows()) {
+                // We need first row to get meta. Keep it for the following next()
+                pushedBackRow = nextRow();
+                populateColumns(pushedBackRow);
+            } else {
+                meta = new CResultSetMetaData(getSchemaColumns());
             }
         }
         return meta;
@@ -762,6 +1004,9 @@ public class CassandraResultSet extends AbstractResultSet {
     public int getRow() throws SQLException
     {
         checkNotClosed();
+        if (rowStore != null && rowNumber > rowStore.getRowCount()) {
+            return 0;
+        }
         return rowNumber;
     }
 
@@ -976,12 +1221,18 @@ public class CassandraResultSet extends AbstractResultSet {
     public boolean isAfterLast() throws SQLException
     {
         checkNotClosed();
+        if (rowStore != null) {
+            return rowNumber > 0 && rowNumber > rowStore.getRowCount();
+        }
         return rowNumber == Integer.MAX_VALUE;
     }
 
     public boolean isBeforeFirst() throws SQLException
     {
         checkNotClosed();
+        if (rowStore != null) {
+            return rowNumber == 0 && (rowStore.getRowCount() > 0 || hasMoreRows());
+        }
         return rowNumber == 0;
     }
 
@@ -999,7 +1250,10 @@ public class CassandraResultSet extends AbstractResultSet {
     public boolean isLast() throws SQLException
     {
         checkNotClosed();
-        return !rowsIterator.hasNext();
+        if (rowStore != null) {
+            return rowNumber > 0 && rowNumber == rowStore.getRowCount() && !hasMoreRows();
+        }
+        return !hasMoreRows();
     }
 
     public boolean isWrapperFor(Class<?> clazz) throws SQLException
@@ -1007,22 +1261,26 @@ public class CassandraResultSet extends AbstractResultSet {
         return false;
     }
 
-    // Navigation between rows within the returned set of rows
-    // Need to use a list iterator so next() needs completely re-thought
-
-    public boolean last() throws SQLException
+    public synchronized boolean last() throws SQLException
     {
-        throw new SQLFeatureNotSupportedException();
+        checkScrollable();
+        fetchAll();
+        return moveTo(rowStore.getRowCount());
     }
 
     public synchronized boolean next() throws SQLException
     {
+        if (rowStore != null) {
+            checkNotClosed();
+            return moveTo(rowNumber + 1);
+        }
         if (hasMoreRows()) {
-            populateColumns();
+            populateColumns(nextRow());
             rowNumber++;
             return true;
         } else {
             rowNumber = Integer.MAX_VALUE;
+            values.clear();
             return false;
         }
     }
@@ -1030,25 +1288,23 @@ public class CassandraResultSet extends AbstractResultSet {
     protected TypedColumn createColumn(Column column)
     {
         if (schema != null) {
-            String nameType = schema.getName_types() == null ? null : schema.getName_types().get(column.name);
-            AbstractJdbcType<?> comparator = TypesMap.getTypeForComparator(nameType == null ? schema.default_name_type : nameType);
-            String valueType = schema.getValue_types() == null ? null : schema.getValue_types().get(column.name);
-            AbstractJdbcType<?> validator = TypesMap.getTypeForComparator(valueType == null ? schema.default_value_type : valueType);
-            return new TypedColumn(column, comparator, validator);
+            return CassandraRow.createColumn(column, schema);
         } else {
             // Legacy version
             return new TypedColumn(column, JdbcUTF8.instance, JdbcBytes.instance);
         }
     }
 
-    public boolean previous() throws SQLException
+    public synchronized boolean previous() throws SQLException
     {
-        throw new SQLFeatureNotSupportedException();
+        checkScrollable();
+        return moveTo(rowNumber - 1);
     }
 
-    public boolean relative(int arg0) throws SQLException
+    public synchronized boolean relative(int rows) throws SQLException
     {
-        throw new SQLFeatureNotSupportedException();
+        checkScrollable();
+        return moveTo((int) Math.max(Math.min((long) rowNumber + rows, Integer.MAX_VALUE), 0));
     }
 
     public void setFetchDirection(int direction) throws SQLException
@@ -1081,76 +1337,203 @@ public class CassandraResultSet extends AbstractResultSet {
     }
 
     /**
-     * RSMD implementation.  The metadata returned refers to the column
-     * values, not the column names.
+     * Result set columns. Built once from the columns of the first row, typed by CqlMetadata and column family
+     * meta data, or from the schema alone when there are no rows. All properties are precomputed except
+     * TTL, timestamp and the precision and scale of decimals, which are taken from the current row.
+     * <p/>
+     * The column list isn't taken from the schema when there are rows: CQL 2 rows of wide or sparse column
+     * families may have different columns and the schema name and value type maps have no column order.
+     * So for such results the meta data describes the first row only while column indexes of getters refer
+     * to the columns of the current row.
      */
     public class CResultSetMetaData implements ResultSetMetaData {
+        private final int columnCount;
+        private final String[] names;
+        private final String[] classNames;
+        private final String[] typeNames;
+        private final int[] types;
+        private final int[] precisions;
+        private final int[] displaySizes;
+        private final boolean[] counters;
+        private final boolean[] caseSensitive;
+        private final boolean[] currency;
+        private final boolean[] signed;
+        private final Map<String, Integer> columnIndexes;
+
+        private CResultSetMetaData(List<TypedColumn> columns)
+        {
+            columnCount = columns.size();
+            names = new String[columnCount];
+            classNames = new String[columnCount];
+            typeNames = new String[columnCount];
+            types = new int[columnCount];
+            precisions = new int[columnCount];
+            displaySizes = new int[columnCount];
+            counters = new boolean[columnCount];
+            caseSensitive = new boolean[columnCount];
+            currency = new boolean[columnCount];
+            signed = new boolean[columnCount];
+            Map<String, Integer> indexes = new HashMap<String, Integer>();
+            for (int i = 0; i < columnCount; i++) {
+                TypedColumn column = columns.get(i);
+                AbstractJdbcType<?> valueType = column.getValueType();
+                names[i] = column.getNameString();
+                classNames[i] = valueType.getType().getName();
+                typeNames[i] = valueType.getClass().getSimpleName();
+                types[i] = valueType.getJdbcType();
+                counters[i] = valueType instanceof JdbcCounterColumn;
+                caseSensitive[i] = valueType.isCaseSensitive();
+                currency[i] = valueType.isCurrency();
+                signed[i] = valueType.isSigned();
+                switch (types[i]) {
+                    case Types.INTEGER:
+                        precisions[i] = 10;
+                        displaySizes[i] = 11;
+                        break;
+                    case Types.BIGINT:
+                        precisions[i] = 19;
+                        displaySizes[i] = 20;
+                        break;
+                    case Types.DOUBLE:
+                        precisions[i] = 15;
+                        displaySizes[i] = 24;
+                        break;
+                    case Types.FLOAT:
+                        precisions[i] = 7;
+                        displaySizes[i] = 15;
+                        break;
+                    case Types.BOOLEAN:
+                        precisions[i] = 1;
+                        displaySizes[i] = 5;
+                        break;
+                    case Types.DATE:
+                        // yyyy-MM-dd HH:mm:ss.SSS
+                        precisions[i] = 23;
+                        displaySizes[i] = 23;
+                        break;
+                    case Types.OTHER:
+                        // UUID
+                        precisions[i] = 36;
+                        displaySizes[i] = 36;
+                        break;
+                    default:
+                        // Text, blobs, decimals and structs have no length limit - size is unknown
+                        precisions[i] = 0;
+                        displaySizes[i] = 0;
+                        break;
+                }
+                indexes.put(names[i], i + 1);
+            }
+            columnIndexes = Collections.unmodifiableMap(indexes);
+        }
+
+        /**
+         * Checks whether row has the same columns as the meta data
+         */
+        private boolean hasColumns(List<TypedColumn> row)
+        {
+            if (row.size() != columnCount) {
+                return false;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                if (!names[i].equals(row.get(i).getNameString())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void checkColumn(int column) throws SQLException
+        {
+            if (column < 1 || column > columnCount)
+                throw new SQLSyntaxErrorException(
+                    "Column index must be a positive number less or equal the count of returned columns: " +
+                        column + " " + columnCount);
+        }
+
         public String getCatalogName(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return "";
         }
 
         public String getColumnClassName(int column) throws SQLException
         {
-            checkIndex(column);
-            return values.get(column - 1).getValueType().getType().getName();
+            checkColumn(column);
+            return classNames[column - 1];
         }
 
         public int getColumnCount() throws SQLException
         {
-            return values.size();
+            return columnCount;
         }
 
         public int getColumnDisplaySize(int column) throws SQLException
         {
-            checkIndex(column);
-            String valueString = values.get(column - 1).getValueString();
-            return valueString == null ? 0 : valueString.length();
+            checkColumn(column);
+            return displaySizes[column - 1];
         }
 
         public String getColumnLabel(int column) throws SQLException
         {
-            checkIndex(column);
-            return getColumnName(column);
+            checkColumn(column);
+            return names[column - 1];
         }
 
         public String getColumnName(int column) throws SQLException
         {
-            checkIndex(column);
-            return values.get(column - 1).getNameString();
+            checkColumn(column);
+            return names[column - 1];
         }
 
         public int getColumnType(int column) throws SQLException
         {
-            checkIndex(column);
-            return values.get(column - 1).getValueType().getJdbcType();
+            checkColumn(column);
+            return types[column - 1];
         }
 
         // Spec says "database specific type name". For Cassandra this means the abstract type.
         public String getColumnTypeName(int column) throws SQLException
         {
-            checkIndex(column);
-            return values.get(column - 1).getValueType().getClass().getSimpleName();
+            checkColumn(column);
+            return typeNames[column - 1];
         }
 
         public int getPrecision(int column) throws SQLException
         {
-            checkIndex(column);
-            TypedColumn col = values.get(column - 1);
-            return col.getValueType().getPrecision(col.getValue());
+            checkColumn(column);
+            if (types[column - 1] == Types.DECIMAL) {
+                BigDecimal value = getDecimal(column);
+                return value == null ? 0 : value.precision();
+            }
+            return precisions[column - 1];
         }
 
         public int getScale(int column) throws SQLException
         {
-            checkIndex(column);
-            TypedColumn tc = values.get(column - 1);
-            return tc.getValueType().getScale(tc.getValue());
+            checkColumn(column);
+            if (types[column - 1] == Types.DECIMAL) {
+                BigDecimal value = getDecimal(column);
+                return value == null ? 0 : value.scale();
+            }
+            return 0;
+        }
+
+        /**
+         * Decimal value of the current row, null if there is no current row or it has other columns
+         */
+        private BigDecimal getDecimal(int column)
+        {
+            if (values == null || !isOnRow() || indexMap != columnIndexes) {
+                return null;
+            }
+            Object value = values.get(column - 1).getValue();
+            return value instanceof BigDecimal ? (BigDecimal) value : null;
         }
 
         public String getSchemaName(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return keyspace;
         }
 
@@ -1161,27 +1544,25 @@ public class CassandraResultSet extends AbstractResultSet {
 
         public boolean isAutoIncrement(int column) throws SQLException
         {
-            checkIndex(column);
-            return values.get(column - 1).getValueType() instanceof JdbcCounterColumn; // todo: check Value is correct.
+            checkColumn(column);
+            return counters[column - 1];
         }
 
         public boolean isCaseSensitive(int column) throws SQLException
         {
-            checkIndex(column);
-            TypedColumn tc = values.get(column - 1);
-            return tc.getValueType().isCaseSensitive();
+            checkColumn(column);
+            return caseSensitive[column - 1];
         }
 
         public boolean isCurrency(int column) throws SQLException
         {
-            checkIndex(column);
-            TypedColumn tc = values.get(column - 1);
-            return tc.getValueType().isCurrency();
+            checkColumn(column);
+            return currency[column - 1];
         }
 
         public boolean isDefinitelyWritable(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return isWritable(column);
         }
 
@@ -1190,35 +1571,37 @@ public class CassandraResultSet extends AbstractResultSet {
          */
         public int isNullable(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return ResultSetMetaData.columnNullable;
         }
 
         public boolean isReadOnly(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return column == 0;
         }
 
         public boolean isSearchable(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return false;
         }
 
         public boolean isSigned(int column) throws SQLException
         {
-            checkIndex(column);
-            TypedColumn tc = values.get(column - 1);
-            return tc.getValueType().isSigned();
+            checkColumn(column);
+            return signed[column - 1];
         }
 
         public boolean isWritable(int column) throws SQLException
         {
-            checkIndex(column);
+            checkColumn(column);
             return column > 0;
         }
 
+        /**
+         * TTL of the column in the current row
+         */
         public int getTtl(int column) throws SQLException
         {
             checkIndex(column);
@@ -1226,6 +1609,9 @@ public class CassandraResultSet extends AbstractResultSet {
             return tc.getTtl();
         }
 
+        /**
+         * Timestamp of the column in the current row
+         */
         public long getTimestamp(int column) throws SQLException
         {
             checkIndex(column);
@@ -1235,15 +1621,73 @@ public class CassandraResultSet extends AbstractResultSet {
 
         public boolean isWrapperFor(Class<?> clazz) throws SQLException
         {
-            return clazz == CqlResult.class;
+            return clazz == CqlResult.class && resultSet != null;
         }
 
         public <T> T unwrap(Class<T> clazz) throws SQLException
         {
-            if (clazz == CqlResult.class) {
-                return clazz.cast(resultSet);
+            if (clazz == CqlResult.class && resultSet != null) {
+                checkNotClosed();
+                return clazz.cast(getCqlResult());
             }
             throw new SQLFeatureNotSupportedException("Can't unwrap " + clazz.getName());
         }
     }
+
+    /**
+     * Source of rows already fetched from the server which releases every row it returns
+     */
+    static class ConsumingRowSource implements RowSource {
+        private List<CqlRow> rows;
+        private int position;
+
+        ConsumingRowSource(List<CqlRow> rows)
+        {
+            this.rows = rows;
+        }
+
+        public boolean hasNext()
+        {
+            return rows != null && position < rows.size();
+        }
+
+        public CqlRow next()
+        {
+            CqlRow row = rows.get(position);
+            rows.set(position++, null);
+            return row;
+        }
+
+        public void close()
+        {
+            rows = null;
+        }
+    }
+
+    /**
+     * Source of rows already fetched from the server
+     */
+    static class IteratorRowSource implements RowSource {
+        private final Iterator<CqlRow> iterator;
+
+        IteratorRowSource(Iterator<CqlRow> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext()
+        {
+            return iterator != null && iterator.hasNext();
+        }
+
+        public CqlRow next()
+        {
+            return iterator.next();
+        }
+
+        public void close()
+        {
+        }
+    }
+
 }
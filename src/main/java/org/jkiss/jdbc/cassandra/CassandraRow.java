@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.CqlMetadata;
+import org.apache.cassandra.thrift.CqlRow;
+import org.jkiss.jdbc.cassandra.types.AbstractJdbcType;
+import org.jkiss.jdbc.cassandra.types.TypesMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoded row published by {@link CassandraRowPublisher}. Column indexes start with 1 like in JDBC.
+ */
+public class CassandraRow {
+
+    private final ByteBuffer key;
+    private final List<TypedColumn> columns;
+
+    CassandraRow(ByteBuffer key, List<TypedColumn> columns)
+    {
+        this.key = key;
+        this.columns = Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * Decodes CQL row with the column types of the result schema
+     */
+    static CassandraRow decode(CqlRow row, CqlMetadata schema)
+    {
+        List<Column> rowColumns = row.getColumns();
+        List<TypedColumn> columns = new ArrayList<TypedColumn>(rowColumns.size());
+        for (Column column : rowColumns) {
+            columns.add(createColumn(column, schema));
+        }
+        return new CassandraRow(row.bufferForKey(), columns);
+    }
+
+    static TypedColumn createColumn(Column column, CqlMetadata schema)
+    {
+        String nameType = schema.getName_types() == null ? null : schema.getName_types().get(column.name);
+        AbstractJdbcType<?> comparator = TypesMap.getTypeForComparator(nameType == null ? schema.default_name_type : nameType);
+        String valueType = schema.getValue_types() == null ? null : schema.getValue_types().get(column.name);
+        AbstractJdbcType<?> validator = TypesMap.getTypeForComparator(valueType == null ? schema.default_value_type : valueType);
+        return new TypedColumn(column, comparator, validator);
+    }
+
+    /**
+     * Raw row key
+     */
+    public ByteBuffer getKey()
+    {
+        return key;
+    }
+
+    public int getColumnCount()
+    {
+        return columns.size();
+    }
+
+    public List<TypedColumn> getColumns()
+    {
+        return columns;
+    }
+
+    public TypedColumn getColumn(int index)
+    {
+        if (index < 1 || index > columns.size()) {
+            throw new IndexOutOfBoundsException("Column index " + index + " is out of range 1.." + columns.size());
+        }
+        return columns.get(index - 1);
+    }
+
+    /**
+     * @return column or null if there is no column with such name
+     */
+    public TypedColumn getColumn(String name)
+    {
+        for (TypedColumn column : columns) {
+            if (column.getNameString().equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    public Object getObject(int index)
+    {
+        return getColumn(index).getValue();
+    }
+
+    /**
+     * @return value or null if there is no column with such name
+     */
+    public Object getObject(String name)
+    {
+        TypedColumn column = getColumn(name);
+        return column == null ? null : column.getValue();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder(100);
+        for (TypedColumn column : columns) {
+            if (str.length() > 0) str.append(',');
+            str.append(column.getNameString()).append(':').append(column.getValueString());
+        }
+        return str.toString();
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes rows of a query to non-blocking consumers.
+ * <p/>
+ * Every subscriber runs the query on its own asynchronous client. Simple key range queries
+ * (see {@link CassandraStatement#setDirectRangeScan(Boolean)}) are read page by page with get_range_slices
+ * and the next page is requested only when the subscriber demand exceeds rows already received.
+ * Other CQL queries are executed as one request. Network I/O is done by the connection's selector thread,
+ * pages are decoded and rows delivered by executor threads. Cancellation stops paging and closes the client.
+ * <p/>
+ * Obtain it with <code>connection.unwrap(CassandraConnection.class).createPublisher(cql)</code>.
+ */
+public class CassandraRowPublisher implements Publisher<CassandraRow> {
+
+    public static final int DEFAULT_PAGE_SIZE = DirectRangeScan.DEFAULT_PAGE_SIZE;
+
+    private final CassandraConnection connection;
+    private final String cql;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private ConsistencyLevel consistencyLevel;
+    private Executor executor;
+
+    CassandraRowPublisher(CassandraConnection connection, String cql)
+    {
+        this.connection = connection;
+        this.cql = cql;
+    }
+
+    public String getCql()
+    {
+        return cql;
+    }
+
+    /**
+     * Number of rows requested by one get_range_slices call
+     */
+    public void setPageSize(int pageSize)
+    {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Consistency level of reads. Null means connection default.
+     */
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel)
+    {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    /**
+     * Executor which decodes pages and calls subscribers. Null means connection's async worker threads.
+     */
+    public void setExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to the query rows. Query is parsed and the schema resolved in the caller thread,
+     * nothing is sent to the server until rows are requested.
+     */
+    public void subscribe(Subscriber<? super CassandraRow> subscriber)
+    {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber is null");
+        }
+        RowSubscription subscription;
+        SQLException error = null;
+        try {
+            AsyncClients clients = connection.getAsyncClients();
+            QueryPages pages = new QueryPages(clients);
+            pages.prepare();
+            subscription = new RowSubscription(subscriber, pages, executor != null ? executor : clients.getExecutor());
+        } catch (SQLException e) {
+            subscription = null;
+            error = e;
+        }
+        if (subscription == null) {
+            subscriber.onSubscribe(new Subscription() {
+                public void request(long n)
+                {
+                }
+
+                public void cancel()
+                {
+                }
+            });
+            subscriber.onError(error);
+            return;
+        }
+        try {
+            subscriber.onSubscribe(subscription);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts Thrift errors into SQL exceptions. Runtime exceptions (including subscriber failures) are kept as is.
+     */
+    private static Exception translateError(Exception e)
+    {
+        if (e instanceof SQLException || e instanceof RuntimeException) {
+            return e;
+        } else if (e instanceof InvalidRequestException) {
+            return new SQLSyntaxErrorException(((InvalidRequestException) e).getWhy(), e);
+        } else if (e instanceof UnavailableException) {
+            return new SQLNonTransientConnectionException(ErrorMessages.NO_SERVER, e);
+        } else if (e instanceof TimedOutException) {
+            return new SQLTransientConnectionException(e);
+        } else if (e instanceof SchemaDisagreementException) {
+            return new SQLRecoverableException(ErrorMessages.SCHEMA_MISMATCH);
+        } else if (e instanceof AuthenticationException || e instanceof AuthorizationException) {
+            return new SQLInvalidAuthorizationSpecException(e);
+        }
+        return new SQLNonTransientConnectionException(e);
+    }
+
+    /**
+     * Asynchronous calls which read the query rows. One call is in progress at a time.
+     */
+    interface PageSource {
+
+        /**
+         * Sends the next call. Its result or error is passed to the callback.
+         */
+        void sendNext(AsyncMethodCallback<Object> callback) throws SQLException, TException;
+
+        /**
+         * Processes result of the completed call
+         *
+         * @param buffer receives decoded rows
+         * @return true if there are no more rows to read
+         */
+        boolean accept(Object call, Queue<CassandraRow> buffer) throws Exception;
+
+        /**
+         * Releases the client. Called when no call is in progress, possibly several times.
+         */
+        void close();
+    }
+
+    /**
+     * Delivery of rows to one subscriber.
+     * Everything but demand, cancellation and completed calls is touched only by the drain loop,
+     * which runs on one executor thread at a time.
+     */
+    static class RowSubscription implements Subscription, AsyncMethodCallback<Object>, Runnable {
+
+        private final Subscriber<? super CassandraRow> subscriber;
+        private final PageSource pages;
+        private final Executor executor;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        // completed call or exception
+        private final AtomicReference<Object> completed = new AtomicReference<Object>();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException badRequest;
+
+        private boolean fetching;
+        private boolean lastPage;
+        private boolean done;
+        private final Queue<CassandraRow> buffer = new ArrayDeque<CassandraRow>();
+
+        RowSubscription(Subscriber<? super CassandraRow> subscriber, PageSource pages, Executor executor)
+        {
+            this.subscriber = subscriber;
+            this.pages = pages;
+            this.executor = executor;
+        }
+
+        public void request(long n)
+        {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                for (;;) {
+                    long current = requested.get();
+                    long next = current + n;
+                    if (next < 0) {
+                        // Overflow: unbounded demand
+                        next = Long.MAX_VALUE;
+                    }
+                    if (requested.compareAndSet(current, next)) {
+                        break;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        public void cancel()
+        {
+            cancelled = true;
+            schedule();
+        }
+
+        public void onComplete(Object call)
+        {
+            completed.set(call);
+            schedule();
+        }
+
+        public void onError(Exception error)
+        {
+            completed.set(error);
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        public void run()
+        {
+            int missed = 1;
+            for (;;) {
+                drain();
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void drain()
+        {
+            Object call = completed.getAndSet(null);
+            if (call != null) {
+                fetching = false;
+            }
+            if (done) {
+                closePages();
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (badRequest != null) {
+                fail(badRequest);
+                return;
+            }
+            try {
+                if (call instanceof Exception) {
+                    throw (Exception) call;
+                } else if (call != null) {
+                    lastPage = pages.accept(call, buffer);
+                }
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted < demand && !buffer.isEmpty()) {
+                    subscriber.onNext(buffer.poll());
+                    emitted++;
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+                }
+                if (emitted > 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                if (buffer.isEmpty() && !fetching) {
+                    if (lastPage) {
+                        finish();
+                        subscriber.onComplete();
+                    } else if (requested.get() > 0) {
+                        fetching = true;
+                        pages.sendNext(this);
+                    }
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Exception error)
+        {
+            if (done) {
+                // onComplete was delivered already and failed, the subscriber gets no other terminal signal
+                return;
+            }
+            finish();
+            subscriber.onError(translateError(error));
+        }
+
+        private void finish()
+        {
+            done = true;
+            buffer.clear();
+            closePages();
+        }
+
+        /**
+         * Closes the client unless a call is in progress (it is closed when the call completes)
+         */
+        private void closePages()
+        {
+            if (!fetching) {
+                pages.close();
+            }
+        }
+    }
+
+    /**
+     * Query execution on an asynchronous client: session setup calls, then the query or its pages
+     */
+    private class QueryPages implements PageSource {
+
+        private static final int STEP_LOGIN = 0;
+        private static final int STEP_KEYSPACE = 1;
+        private static final int STEP_CQL_VERSION = 2;
+        private static final int STEP_QUERY = 3;
+
+        private final AsyncClients clients;
+        private DirectRangeScan.RangePager pager;
+        private String keyspace;
+        private ConsistencyLevel readConsistencyLevel;
+        private AsyncClients.Client client;
+        private int step = STEP_LOGIN;
+
+        QueryPages(AsyncClients clients)
+        {
+            this.clients = clients;
+        }
+
+        void prepare() throws SQLException
+        {
+            keyspace = connection.getCurrentKeyspace();
+            readConsistencyLevel = consistencyLevel != null ? consistencyLevel : connection.getThriftReadConsistencyLevel();
+            if (!connection.isCql3()) {
+                DirectRangeScan scan = DirectRangeScan.parse(cql);
+                if (scan != null) {
+                    pager = scan.createPager(connection, 0, pageSize);
+                    if (pager != null) {
+                        keyspace = pager.getKeyspace();
+                    }
+                }
+            }
+        }
+
+        public boolean accept(Object call, Queue<CassandraRow> buffer) throws Exception
+        {
+            if (call instanceof Cassandra.AsyncClient.login_call) {
+                ((Cassandra.AsyncClient.login_call) call).getResult();
+                step = STEP_KEYSPACE;
+            } else if (call instanceof Cassandra.AsyncClient.set_keyspace_call) {
+                ((Cassandra.AsyncClient.set_keyspace_call) call).getResult();
+                step = STEP_CQL_VERSION;
+            } else if (call instanceof Cassandra.AsyncClient.set_cql_version_call) {
+                ((Cassandra.AsyncClient.set_cql_version_call) call).getResult();
+                step = STEP_QUERY;
+            } else if (call instanceof Cassandra.AsyncClient.get_range_slices_call) {
+                List<KeySlice> slices = ((Cassandra.AsyncClient.get_range_slices_call) call).getResult();
+                CqlMetadata schema = pager.getMetadata();
+                for (CqlRow row : pager.acceptPage(slices)) {
+                    buffer.add(CassandraRow.decode(row, schema));
+                }
+                return pager.isFinished();
+            } else if (call instanceof Cassandra.AsyncClient.execute_cql_query_call) {
+                CqlResult result = ((Cassandra.AsyncClient.execute_cql_query_call) call).getResult();
+                if (result.getType() == CqlResultType.ROWS) {
+                    for (CqlRow row : result.getRows()) {
+                        buffer.add(CassandraRow.decode(row, result.getSchema()));
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> AsyncMethodCallback<T> cast(AsyncMethodCallback<Object> callback)
+        {
+            return (AsyncMethodCallback<T>) (AsyncMethodCallback<?>) callback;
+        }
+
+        public void sendNext(AsyncMethodCallback<Object> callback) throws SQLException, TException
+        {
+            if (client == null) {
+                client = clients.open(connection.getHost());
+            }
+            if (step == STEP_LOGIN) {
+                AuthenticationRequest authRequest = connection.createAuthenticationRequest();
+                if (authRequest != null) {
+                    client.login(authRequest, this.<Cassandra.AsyncClient.login_call>cast(callback));
+                    return;
+                }
+                step = STEP_KEYSPACE;
+            }
+            if (step == STEP_KEYSPACE) {
+                if (keyspace != null) {
+                    client.set_keyspace(keyspace, this.<Cassandra.AsyncClient.set_keyspace_call>cast(callback));
+                    return;
+                }
+                step = STEP_CQL_VERSION;
+            }
+            if (step == STEP_CQL_VERSION) {
+                String version = connection.getActiveCqlVersion();
+                if (version != null && pager == null) {
+                    client.set_cql_version(version, this.<Cassandra.AsyncClient.set_cql_version_call>cast(callback));
+                    return;
+                }
+                step = STEP_QUERY;
+            }
+            if (pager != null) {
+                client.get_range_slices(
+                    pager.getColumnParent(),
+                    pager.getPredicate(),
+                    pager.nextRange(),
+                    readConsistencyLevel,
+                    this.<Cassandra.AsyncClient.get_range_slices_call>cast(callback));
+            } else {
+                String query = connection.applyConsistency(cql, consistencyLevel);
+                ByteBuffer queryBytes = CassandraUtils.compressQuery(query, Compression.NONE);
+                client.execute_cql_query(queryBytes, Compression.NONE, this.<Cassandra.AsyncClient.execute_cql_query_call>cast(callback));
+            }
+        }
+
+        public void close()
+        {
+            if (client != null) {
+                client.close();
+                client = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.CqlMetadata;
+import org.apache.cassandra.thrift.CqlRow;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Splittable iterator over rows of a column family (same contract as <code>java.util.Spliterator</code>).
+ * <p/>
+ * The scan covers a list of token ranges. {@link #trySplit()} hands the first half of ranges not started yet
+ * to a new iterator; when a single ring range is left it is divided with describe_splits first.
+ * Every range is read page by page, so memory is bounded by the page size per iterator.
+ * {@link #forEachParallel(RowAction)} splits the scan recursively in a fork/join pool.
+ * <p/>
+ * Obtain it with <code>connection.unwrap(CassandraConnection.class).stream("SELECT * FROM cf")</code>.
+ * Iterators are not thread safe, but each one obtained by {@link #trySplit()} may be used by another thread.
+ */
+public class CassandraRowSpliterator {
+
+    /**
+     * Row consumer
+     */
+    public interface RowAction {
+        void accept(CassandraRow row) throws SQLException;
+    }
+
+    /**
+     * Reads and divides token ranges
+     */
+    interface RangeSource {
+
+        RowSource open(CassandraSplit split) throws SQLException;
+
+        /**
+         * Divides a ring range into ranges of about the specified number of keys
+         */
+        List<CassandraSplit> divide(CassandraSplit split, int keysPerSplit) throws SQLException;
+    }
+
+    public static final int DEFAULT_KEYS_PER_SPLIT = CassandraTableScan.DEFAULT_KEYS_PER_SPLIT;
+    public static final int DEFAULT_PAGE_SIZE = CassandraTableScan.DEFAULT_PAGE_SIZE;
+
+    private final RangeSource ranges;
+    private final CqlMetadata metadata;
+    private final int keysPerSplit;
+    // ranges not started yet
+    private final LinkedList<CassandraSplit> splits;
+    // whether ranges are ring ranges not divided by describe_splits yet
+    private boolean divided;
+    private RowSource reader;
+
+    CassandraRowSpliterator(CassandraConnection connection, DirectRangeScan.RangePager format, List<CassandraSplit> splits,
+                            boolean divided, int keysPerSplit, int pageSize, ConsistencyLevel consistencyLevel)
+    {
+        this(new ServerRanges(connection, format, pageSize, consistencyLevel), format.getMetadata(), splits, divided, keysPerSplit);
+    }
+
+    CassandraRowSpliterator(RangeSource ranges, CqlMetadata metadata, List<CassandraSplit> splits, boolean divided, int keysPerSplit)
+    {
+        this.ranges = ranges;
+        this.metadata = metadata;
+        this.splits = new LinkedList<CassandraSplit>(splits);
+        this.divided = divided;
+        this.keysPerSplit = keysPerSplit;
+    }
+
+    /**
+     * Reads the next row
+     *
+     * @return false if there are no more rows
+     */
+    public boolean tryAdvance(RowAction action) throws SQLException
+    {
+        for (;;) {
+            if (reader == null) {
+                if (splits.isEmpty()) {
+                    return false;
+                }
+                reader = ranges.open(splits.removeFirst());
+            }
+            if (reader.hasNext()) {
+                CqlRow row = reader.next();
+                action.accept(CassandraRow.decode(row, metadata));
+                return true;
+            }
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * Reads all remaining rows
+     */
+    public void forEachRemaining(RowAction action) throws SQLException
+    {
+        try {
+            while (tryAdvance(action)) {
+                // next row
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Splits off the first half of ranges which are not read yet
+     *
+     * @return iterator over the split off ranges or null if this iterator can't be split
+     */
+    public CassandraRowSpliterator trySplit() throws SQLException
+    {
+        if (splits.size() == 1 && !divided) {
+            List<CassandraSplit> parts = ranges.divide(splits.removeFirst(), keysPerSplit);
+            splits.addAll(parts);
+            divided = true;
+        }
+        if (splits.size() < 2) {
+            return null;
+        }
+        List<CassandraSplit> prefix = new ArrayList<CassandraSplit>();
+        for (int i = splits.size() / 2; i > 0; i--) {
+            prefix.add(splits.removeFirst());
+        }
+        return new CassandraRowSpliterator(ranges, metadata, prefix, divided, keysPerSplit);
+    }
+
+    /**
+     * Estimated number of rows in ranges not started yet or Long.MAX_VALUE if it is unknown
+     */
+    public long estimateSize()
+    {
+        if (!divided) {
+            return Long.MAX_VALUE;
+        }
+        long size = 0;
+        for (CassandraSplit split : splits) {
+            size += split.getEstimatedRows();
+        }
+        return size;
+    }
+
+    /**
+     * Result schema
+     */
+    public CqlMetadata getMetadata()
+    {
+        return metadata;
+    }
+
+    /**
+     * Stops reading and releases the server connection
+     */
+    public void close()
+    {
+        splits.clear();
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * Reads all remaining rows in parallel in a new fork/join pool with one thread per processor.
+     * Action is called concurrently.
+     */
+    public void forEachParallel(RowAction action) throws SQLException
+    {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            forEachParallel(action, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads all remaining rows in parallel in the specified fork/join pool.
+     * Action is called concurrently. The first error stops the scan and is rethrown.
+     */
+    public void forEachParallel(RowAction action, ForkJoinPool pool) throws SQLException
+    {
+        try {
+            pool.invoke(new ScanTask(this, action, new AtomicBoolean()));
+        } catch (RuntimeException e) {
+            // Fork/join pool may rethrow a copy of the task exception, so look for the original cause
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ranges read from the server page by page
+     */
+    private static class ServerRanges implements RangeSource {
+        private final CassandraConnection connection;
+        private final DirectRangeScan.RangePager format;
+        private final int pageSize;
+        private final ConsistencyLevel consistencyLevel;
+
+        ServerRanges(CassandraConnection connection, DirectRangeScan.RangePager format, int pageSize, ConsistencyLevel consistencyLevel)
+        {
+            this.connection = connection;
+            this.format = format;
+            this.pageSize = pageSize;
+            this.consistencyLevel = consistencyLevel;
+        }
+
+        public RowSource open(CassandraSplit split) throws SQLException
+        {
+            return new RangeReader(
+                connection, split, format.getKeyAlias(), format.getPredicate(), format.getNames(),
+                pageSize, CassandraTableScan.DEFAULT_MAX_RETRIES, consistencyLevel);
+        }
+
+        public List<CassandraSplit> divide(CassandraSplit split, int keysPerSplit) throws SQLException
+        {
+            return connection.divideSplit(split, keysPerSplit);
+        }
+    }
+
+    private static class ScanFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ScanFailure(SQLException cause)
+        {
+            super(cause);
+        }
+    }
+
+    /**
+     * Splits off tasks while the iterator can be split, then reads the rest of rows
+     */
+    private static class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CassandraRowSpliterator spliterator;
+        private final RowAction action;
+        private final AtomicBoolean failed;
+
+        ScanTask(CassandraRowSpliterator spliterator, RowAction action, AtomicBoolean failed)
+        {
+            this.spliterator = spliterator;
+            this.action = action;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute()
+        {
+            List<ScanTask> forks = new ArrayList<ScanTask>();
+            try {
+                CassandraRowSpliterator prefix;
+                while (!failed.get() && (prefix = spliterator.trySplit()) != null) {
+                    ScanTask task = new ScanTask(prefix, action, failed);
+                    task.fork();
+                    forks.add(task);
+                }
+                while (!failed.get() && spliterator.tryAdvance(action)) {
+                    // next row
+                }
+            } catch (SQLException e) {
+                failed.set(true);
+                throw new ScanFailure(e);
+            } catch (RuntimeException e) {
+                failed.set(true);
+                throw e;
+            } finally {
+                spliterator.close();
+            }
+            for (ScanTask task : forks) {
+                task.join();
+            }
+        }
+    }
+
+}
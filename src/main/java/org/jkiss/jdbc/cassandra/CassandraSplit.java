@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token range of a column family.
+ * <p/>
+ * Splits are obtained with {@link CassandraConnection#getSplits(String, int)} and may be sent to other
+ * processes; every worker reads its split with {@link CassandraConnection#openSplit(CassandraSplit)},
+ * preferably on a host listed in {@link #getEndpoints()}.
+ */
+public class CassandraSplit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String keyspace;
+    private final String columnFamily;
+    private final String startToken;
+    private final String endToken;
+    private final ArrayList<String> endpoints;
+    private final long estimatedRows;
+
+    CassandraSplit(String keyspace, String columnFamily, String startToken, String endToken, List<String> endpoints, long estimatedRows)
+    {
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+        this.startToken = startToken;
+        this.endToken = endToken;
+        this.endpoints = new ArrayList<String>(endpoints);
+        this.estimatedRows = estimatedRows;
+    }
+
+    public String getKeyspace()
+    {
+        return keyspace;
+    }
+
+    public String getColumnFamily()
+    {
+        return columnFamily;
+    }
+
+    /**
+     * Start token (exclusive)
+     */
+    public String getStartToken()
+    {
+        return startToken;
+    }
+
+    /**
+     * End token (inclusive)
+     */
+    public String getEndToken()
+    {
+        return endToken;
+    }
+
+    /**
+     * Addresses of replicas holding this range
+     */
+    public List<String> getEndpoints()
+    {
+        return endpoints;
+    }
+
+    /**
+     * Approximate number of rows in the range. Equals to the split size passed to describe_splits.
+     */
+    public long getEstimatedRows()
+    {
+        return estimatedRows;
+    }
+
+    @Override
+    public String toString()
+    {
+        return keyspace + "." + columnFamily + " (" + startToken + ", " + endToken + "] " + endpoints;
+    }
+
+}
@@ -26,9 +26,10 @@ import org.apache.thrift.TException;
 import java.sql.*;
 
 /**
- * Cassandra statement
+ * Cassandra statement.
+ * Driver specific settings are available with <code>statement.unwrap(CassandraStatement.class)</code>.
  */
-class CassandraStatement extends AbstractStatement implements Comparable<Object> {
+public class CassandraStatement extends AbstractStatement implements Comparable<Object> {
     /**
      * The connection.
      */
@@ -59,6 +60,16 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
 
     protected boolean escapeProcessing = true;
 
+    protected ConsistencyLevel consistencyLevel;
+
+    protected Boolean idempotent;
+
+    protected Boolean directRangeScan;
+
+    protected boolean closeOnCompletion;
+
+    protected SQLWarning warnings;
+
     CassandraStatement(CassandraConnection con) throws SQLException
     {
         this(con, null);
@@ -99,11 +110,85 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
         this.resultSetHoldability = resultSetHoldability;
     }
 
+    void setResultSetType(int resultSetType) throws SQLException
+    {
+        if (!(resultSetType == ResultSet.TYPE_FORWARD_ONLY
+            || resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE
+            || resultSetType == ResultSet.TYPE_SCROLL_SENSITIVE))
+            throw new SQLSyntaxErrorException(ErrorMessages.BAD_TYPE_RSET);
+        this.resultSetType = resultSetType;
+    }
+
     public String getCql()
     {
         return cql;
     }
 
+    /**
+     * Consistency level of statement queries. Null means connection default read or write level.
+     * Ignored by CQL 3 queries, see {@link CassandraConnection#getReadConsistencyLevel()}.
+     */
+    public ConsistencyLevel getConsistencyLevel()
+    {
+        return consistencyLevel;
+    }
+
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel)
+    {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    /**
+     * Whether statement queries may be retried after a timeout. Null means only reads are retried.
+     */
+    public Boolean getIdempotent()
+    {
+        return idempotent;
+    }
+
+    public void setIdempotent(Boolean idempotent)
+    {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Whether simple key range queries are executed by get_range_slices instead of CQL.
+     * Null means connection default.
+     *
+     * @see CassandraConnection#isDirectRangeScan()
+     */
+    public Boolean getDirectRangeScan()
+    {
+        return directRangeScan;
+    }
+
+    public void setDirectRangeScan(Boolean directRangeScan)
+    {
+        this.directRangeScan = directRangeScan;
+    }
+
+    RetryState createRetryState(String query)
+    {
+        return new RetryState(idempotent != null ? idempotent : CassandraUtils.isReadQuery(query));
+    }
+
+    void addRetryWarning(RetryState retryState)
+    {
+        addWarning(retryState.makeWarning());
+    }
+
+    void addWarning(SQLWarning warning)
+    {
+        if (warning == null) {
+            return;
+        }
+        if (warnings == null) {
+            warnings = warning;
+        } else {
+            warnings.setNextWarning(warning);
+        }
+    }
+
     public void addBatch(String arg0) throws SQLException
     {
         checkNotClosed();
@@ -123,9 +208,20 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
 
     public void clearWarnings() throws SQLException
     {
-        // This implementation does not support the collection of warnings so clearing is a no-op
-        // but it is still an exception to call this on a closed connection.
         checkNotClosed();
+        warnings = null;
+    }
+
+    public void closeOnCompletion() throws SQLException
+    {
+        checkNotClosed();
+        closeOnCompletion = true;
+    }
+
+    public boolean isCloseOnCompletion() throws SQLException
+    {
+        checkNotClosed();
+        return closeOnCompletion;
     }
 
     public void close() throws SQLException
@@ -143,7 +239,20 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
             this.cql = sql;
 
             resetResults();
-            CqlResult rSet = connection.executeCQL(sql, maxRows);
+            if (directRangeScan != null ? directRangeScan : connection.isDirectRangeScan()) {
+                currentResultSet = executeDirect(sql);
+                if (currentResultSet != null) {
+                    return;
+                }
+            }
+            RetryState retryState = createRetryState(sql);
+            CqlResult rSet;
+            try {
+                rSet = connection.executeCQL(sql, maxRows, CassandraConnection.defaultCompression, consistencyLevel, retryState);
+            } finally {
+                addRetryWarning(retryState);
+            }
+            addWarning(connection.makeConsistencyWarning(sql, consistencyLevel));
             String keyspace = connection.getCurrentKeyspace();
 
             switch (rSet.getType()) {
@@ -175,6 +284,20 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
 
     }
 
+    /**
+     * Executes simple key range query by get_range_slices
+     *
+     * @return result set or null if the query has to be executed by CQL
+     */
+    private CassandraResultSet executeDirect(String sql) throws SQLException
+    {
+        if (connection.isCql3()) {
+            return null;
+        }
+        DirectRangeScan scan = DirectRangeScan.parse(sql);
+        return scan == null ? null : scan.execute(this);
+    }
+
     public boolean execute(String query) throws SQLException
     {
         checkNotClosed();
@@ -333,7 +456,7 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
     public int getResultSetType() throws SQLException
     {
         checkNotClosed();
-        return ResultSet.TYPE_FORWARD_ONLY;
+        return resultSetType;
     }
 
     public int getUpdateCount() throws SQLException
@@ -345,7 +468,7 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
     public SQLWarning getWarnings() throws SQLException
     {
         checkNotClosed();
-        return null;
+        return warnings;
     }
 
     public boolean isClosed() throws SQLException
@@ -361,13 +484,14 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException
     {
-        return false;
+        return iface.isAssignableFrom(getClass());
     }
 
     protected final void resetResults()
     {
         currentResultSet = null;
         updateCount = -1;
+        warnings = null;
     }
 
     public void setEscapeProcessing(boolean enable) throws SQLException
@@ -423,6 +547,9 @@ class CassandraStatement extends AbstractStatement implements Comparable<Object>
 
     public <T> T unwrap(Class<T> iface) throws SQLException
     {
+        if (iface.isAssignableFrom(getClass())) {
+            return iface.cast(this);
+        }
         throw new SQLFeatureNotSupportedException("Can't unwrap " + iface.getName());
     }
 
@@ -0,0 +1,272 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.CfDef;
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.CqlRow;
+
+import java.nio.charset.CharacterCodingException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel full scan of a column family.
+ * <p/>
+ * The ring is split into token ranges with describe_ring and describe_splits, ranges are read
+ * concurrently from their replicas and all rows are returned in one result set.
+ * Rows come in no particular order. Each range is retried independently on failure.
+ * <p/>
+ * Obtain it with <code>connection.unwrap(CassandraConnection.class).createTableScan("cf")</code>.
+ */
+public class CassandraTableScan {
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_KEYS_PER_SPLIT = 64 * 1024;
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int DEFAULT_COLUMN_LIMIT = 10000;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private final CassandraConnection connection;
+    private final String keyspace;
+    private final String columnFamily;
+
+    private int threads = DEFAULT_THREADS;
+    private int keysPerSplit = DEFAULT_KEYS_PER_SPLIT;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int columnLimit = DEFAULT_COLUMN_LIMIT;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private ConsistencyLevel consistencyLevel;
+
+    CassandraTableScan(CassandraConnection connection, String keyspace, String columnFamily)
+    {
+        this.connection = connection;
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+        this.consistencyLevel = connection.getThriftReadConsistencyLevel();
+    }
+
+    public String getKeyspace()
+    {
+        return keyspace;
+    }
+
+    public String getColumnFamily()
+    {
+        return columnFamily;
+    }
+
+    public void setThreads(int threads)
+    {
+        if (threads < 1) throw new IllegalArgumentException("Threads count must be positive: " + threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Approximate number of row keys in one token range
+     */
+    public void setKeysPerSplit(int keysPerSplit)
+    {
+        if (keysPerSplit < 1) throw new IllegalArgumentException("Split size must be positive: " + keysPerSplit);
+        this.keysPerSplit = keysPerSplit;
+    }
+
+    /**
+     * Number of rows read by one get_range_slices call
+     */
+    public void setPageSize(int pageSize)
+    {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Maximum number of columns read from each row
+     */
+    public void setColumnLimit(int columnLimit)
+    {
+        if (columnLimit < 1) throw new IllegalArgumentException("Column limit must be positive: " + columnLimit);
+        this.columnLimit = columnLimit;
+    }
+
+    /**
+     * Number of retries of a failed page read, each on the next replica
+     */
+    public void setMaxRetries(int maxRetries)
+    {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel)
+    {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    /**
+     * Starts the scan.
+     *
+     * @return result set with all column family rows. Closing it stops the scan.
+     */
+    public CassandraResultSet executeQuery() throws SQLException
+    {
+        CfDef cfDef = connection.describeColumnFamily(keyspace, columnFamily);
+        List<CassandraSplit> splits = connection.describeSplits(keyspace, columnFamily, keysPerSplit);
+        ParallelRowSource rows = new ParallelRowSource(cfDef, splits);
+        try {
+            return new CassandraResultSet(
+                connection.createInternalStatement("SELECT * FROM " + columnFamily),
+                rows,
+                CassandraUtils.makeCqlMetadata(cfDef),
+                keyspace,
+                columnFamily);
+        } catch (CharacterCodingException e) {
+            rows.close();
+            throw new SQLNonTransientException(e);
+        } catch (SQLException e) {
+            rows.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads ranges in a thread pool and merges received pages
+     */
+    private class ParallelRowSource implements RowSource {
+
+        private final List<CqlRow> END = Collections.emptyList();
+
+        private final ExecutorService executor;
+        private final BlockingQueue<List<CqlRow>> pages;
+        private final AtomicInteger activeRanges;
+        private volatile SQLException error;
+        private Iterator<CqlRow> page;
+        private boolean finished;
+
+        ParallelRowSource(final CfDef cfDef, List<CassandraSplit> splits) throws SQLException
+        {
+            pages = new ArrayBlockingQueue<List<CqlRow>>(threads * 2);
+            activeRanges = new AtomicInteger(splits.size());
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "Cassandra scan " + keyspace + "." + columnFamily + " #" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            if (splits.isEmpty()) {
+                pages.add(END);
+            }
+            for (final CassandraSplit split : splits) {
+                final RangeReader reader = new RangeReader(connection, split, cfDef, pageSize, columnLimit, maxRetries, consistencyLevel);
+                executor.execute(new Runnable() {
+                    public void run()
+                    {
+                        readRange(reader);
+                    }
+                });
+            }
+            executor.shutdown();
+        }
+
+        private void readRange(RangeReader reader)
+        {
+            try {
+                for (List<CqlRow> rows = reader.nextPage(); rows != null && error == null; rows = reader.nextPage()) {
+                    if (!rows.isEmpty()) {
+                        pages.put(rows);
+                    }
+                }
+            } catch (SQLException e) {
+                setError(e);
+            } catch (InterruptedException e) {
+                // Scan was closed
+                return;
+            } catch (Throwable e) {
+                // Decoding failures etc. The range must still be counted as done or the consumer waits forever
+                setError(new SQLNonTransientException("Range scan failed", e));
+            } finally {
+                reader.close();
+            }
+            if (activeRanges.decrementAndGet() == 0) {
+                try {
+                    pages.put(END);
+                } catch (InterruptedException e) {
+                    // Scan was closed
+                }
+            }
+        }
+
+        private void setError(SQLException e)
+        {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        public boolean hasNext() throws SQLException
+        {
+            while (!finished && (page == null || !page.hasNext())) {
+                List<CqlRow> rows;
+                try {
+                    rows = pages.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLNonTransientException("Scan interrupted", e);
+                }
+                if (error != null) {
+                    close();
+                    throw error;
+                }
+                if (rows == END) {
+                    finished = true;
+                } else if (rows != null) {
+                    page = rows.iterator();
+                }
+            }
+            return !finished || (page != null && page.hasNext());
+        }
+
+        public CqlRow next() throws SQLException
+        {
+            if (!hasNext()) {
+                throw new SQLNonTransientException("No more rows");
+            }
+            return page.next();
+        }
+
+        public void close()
+        {
+            finished = true;
+            page = null;
+            executor.shutdownNow();
+            pages.clear();
+        }
+    }
+
+}
@@ -21,8 +21,7 @@
 
 package org.jkiss.jdbc.cassandra;
 
-import org.apache.cassandra.thrift.CfDef;
-import org.apache.cassandra.thrift.Compression;
+import org.apache.cassandra.thrift.*;
 
 import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Constructor;
@@ -37,6 +36,8 @@ import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
 import java.sql.SQLSyntaxErrorException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -49,10 +50,20 @@ import java.util.zip.Deflater;
 public class CassandraUtils {
     private static final Pattern KEYSPACE_PATTERN = Pattern.compile("USE (\\w+);?", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
     private static final Pattern SELECT_PATTERN = Pattern.compile("SELECT\\s+.*FROM\\s+[\\w+\\.]+", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private static final Pattern READ_PATTERN = Pattern.compile("\\s*SELECT\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCHEMA_PATTERN = Pattern.compile("\\s*(?:CREATE|ALTER|DROP)\\s", Pattern.CASE_INSENSITIVE);
     private static final Pattern SELECT_COUNT_PATTERN = Pattern.compile("SELECT\\s+COUNT\\([^\\)]+\\).*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
     private static final Pattern SELECT_ALL_PATTERN = Pattern.compile("SELECT\\s+\\*.*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
     private static final Pattern SELECT_DELETE_PATTERN = Pattern.compile("(?:SELECT|DELETE)\\s+.+FROM\\s+([\\w+\\.]+).*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
     private static final Pattern UPDATE_PATTERN = Pattern.compile("UPDATE\\s+([\\w+\\.]+)\\s+.*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONSISTENCY_PATTERN = Pattern.compile("\\sUSING\\s+CONSISTENCY\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern[] CONSISTENCY_POSITION_PATTERNS = {
+        Pattern.compile("(\\s*(?:SELECT|DELETE)\\s+.*?FROM\\s+[\\w\\.]+)(\\s+USING\\s+)?(.*)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL),
+        Pattern.compile("(\\s*UPDATE\\s+[\\w\\.]+)(\\s+USING\\s+)?(.*)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL),
+        Pattern.compile("(\\s*INSERT\\s+INTO\\s+[\\w\\.]+\\s*\\(.*?\\)\\s*VALUES\\s*\\(.*\\))(\\s+USING\\s+)?(.*)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL),
+        Pattern.compile("(\\s*BEGIN\\s+BATCH)(\\s+USING\\s+)?(.*)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL),
+    };
+    private static final Pattern MODIFY_PATTERN = Pattern.compile("\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+.*?FROM|TRUNCATE)\\s+([\\w\\.]+).*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
     public static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.wrap(new byte[0]);
 
@@ -217,6 +228,22 @@ public class CassandraUtils {
         return SELECT_PATTERN.matcher(cql).matches();
     }
 
+    /**
+     * Checks whether the query is a SELECT (with any clauses)
+     */
+    public static boolean isReadQuery(String cql)
+    {
+        return READ_PATTERN.matcher(cql).lookingAt();
+    }
+
+    /**
+     * Checks whether query changes schema (creates, alters or drops keyspace, column family or index)
+     */
+    public static boolean isSchemaQuery(String cql)
+    {
+        return SCHEMA_PATTERN.matcher(cql).lookingAt();
+    }
+
     public static boolean isSelectCountQuery(String cql)
     {
         return SELECT_COUNT_PATTERN.matcher(cql).matches();
@@ -267,6 +294,54 @@ public class CassandraUtils {
         return null;
     }
 
+    /**
+     * Determine the column family modified by INSERT, UPDATE, DELETE or TRUNCATE statement.
+     *
+     * @param cql A CQL query string
+     * @return The column family name (possibly qualified with keyspace) or null if CQL isn't a single column family update
+     */
+    public static String determineModifiedSource(String cql)
+    {
+        Matcher isModify = MODIFY_PATTERN.matcher(cql);
+        return isModify.matches() ? isModify.group(1) : null;
+    }
+
+    public static boolean isUseQuery(String cql)
+    {
+        return KEYSPACE_PATTERN.matcher(cql.trim()).matches();
+    }
+
+    /**
+     * Adds USING CONSISTENCY clause to CQL 2 SELECT, INSERT, UPDATE, DELETE or BATCH statement.
+     * Other statements and statements which already specify consistency level are returned as is.
+     *
+     * @param cql   A CQL query string
+     * @param level consistency level
+     * @return CQL with consistency level clause
+     */
+    public static String addConsistency(String cql, ConsistencyLevel level)
+    {
+        if (CONSISTENCY_PATTERN.matcher(cql).find()) {
+            return cql;
+        }
+        for (Pattern pattern : CONSISTENCY_POSITION_PATTERNS) {
+            Matcher matcher = pattern.matcher(cql);
+            if (matcher.matches()) {
+                StringBuilder result = new StringBuilder(cql.length() + 32);
+                result.append(matcher.group(1)).append(" USING CONSISTENCY ").append(level.name());
+                if (matcher.group(2) != null) {
+                    // Other USING options follow
+                    result.append(" AND ");
+                } else if (matcher.group(3).length() > 0 && !Character.isWhitespace(matcher.group(3).charAt(0))) {
+                    result.append(' ');
+                }
+                result.append(matcher.group(3));
+                return result.toString();
+            }
+        }
+        return cql;
+    }
+
     public static String modifyQueryLimits(String queryStr, int maxRows)
     {
         if (maxRows > 0 && CassandraUtils.isSelectQuery(queryStr) && !CassandraUtils.isSelectCountQuery(queryStr)) {
@@ -296,10 +371,7 @@ public class CassandraUtils {
 
     public static boolean matchesPattern(String name, String patternStr)
     {
-        Pattern pattern = Pattern.compile(
-            patternStr.replace("%", ".*").replace("_", "."),
-            Pattern.CASE_INSENSITIVE);
-        return pattern.matcher(name).matches();
+        return NamePattern.like(patternStr).matches(name);
     }
 
     public static ByteBuffer bytes(String s)
@@ -312,6 +384,16 @@ public class CassandraUtils {
         return ByteBuffer.wrap(s.getBytes(charset));
     }
 
+    /**
+     * Returns a view of <code>length</code> bytes at the absolute <code>offset</code> of the buffer
+     */
+    public static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice;
+    }
+
     public static String string(ByteBuffer buffer) throws CharacterCodingException
     {
         return string(buffer, UTF_8);
@@ -393,6 +475,22 @@ public class CassandraUtils {
         return wrapCharArray(c);
     }
 
+    public static byte[] hexToBytes(String str)
+    {
+        if (str.length() % 2 == 1)
+            str = "0" + str;
+        byte[] bytes = new byte[str.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            char high = str.charAt(i * 2), low = str.charAt(i * 2 + 1);
+            byte halfByte1 = high < charToByte.length ? charToByte[high] : -1;
+            byte halfByte2 = low < charToByte.length ? charToByte[low] : -1;
+            if (halfByte1 == -1 || halfByte2 == -1)
+                throw new NumberFormatException("Non-hex characters in " + str);
+            bytes[i] = (byte) ((halfByte1 << 4) | halfByte2);
+        }
+        return bytes;
+    }
+
     public static byte[] getArray(ByteBuffer buffer)
     {
         int length = buffer.remaining();
@@ -458,6 +556,43 @@ public class CassandraUtils {
         return ByteBuffer.allocate(8).putDouble(0, d);
     }
 
+    /**
+     * Encodes a value in the IntegerType (varint) format without going through BigInteger.
+     *
+     * @param n value to encode
+     * @return minimal big-endian two's complement representation of the value
+     */
+    public static ByteBuffer varint(long n)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(varintSize(n));
+        writeVarint(buffer, n);
+        return buffer;
+    }
+
+    /**
+     * Writes the varint representation of a value at the buffer's position. The position is not changed.
+     *
+     * @return number of bytes written, see {@link #varintSize(long)}
+     */
+    public static int writeVarint(ByteBuffer buffer, long n)
+    {
+        int size = varintSize(n);
+        int offset = buffer.position();
+        for (int i = 0; i < size; i++) {
+            buffer.put(offset + i, (byte) (n >> ((size - 1 - i) * 8)));
+        }
+        return size;
+    }
+
+    /**
+     * Number of bytes in the varint representation of a value (1..8).
+     */
+    public static int varintSize(long n)
+    {
+        // significant bits without the sign, plus one sign bit
+        return (64 - Long.numberOfLeadingZeros(n ^ (n >> 63))) / 8 + 1;
+    }
+
     public static Constructor getProtectedConstructor(Class klass, Class... paramTypes)
     {
         Constructor c;
@@ -487,6 +622,40 @@ public class CassandraUtils {
         return keyNameBuffer == null ? CassandraConstants.DEFAULT_KEY_ALIAS.getBytes() : keyNameBuffer;
     }
 
+    /**
+     * Builds result set schema for rows read from the column family directly (not by CQL query).
+     * Such rows contain row key column named by the key alias.
+     */
+    public static CqlMetadata makeCqlMetadata(CfDef cf) throws CharacterCodingException
+    {
+        Map<ByteBuffer, String> nameTypes = new HashMap<ByteBuffer, String>();
+        Map<ByteBuffer, String> valueTypes = new HashMap<ByteBuffer, String>();
+        ByteBuffer keyAlias = ByteBuffer.wrap(getRawKeyAlias(cf));
+        nameTypes.put(keyAlias, "UTF8Type");
+        valueTypes.put(keyAlias, cf.getKey_validation_class());
+        for (ColumnDef column : cf.getColumn_metadata()) {
+            valueTypes.put(column.bufferForName(), column.getValidation_class());
+        }
+        return new CqlMetadata(nameTypes, valueTypes, cf.getComparator_type(), cf.getDefault_validation_class());
+    }
+
+    /**
+     * Returns regular column or counter column converted to regular one (with LongType value).
+     * Super columns are not supported and result in null.
+     */
+    public static Column getColumn(ColumnOrSuperColumn cosc)
+    {
+        if (cosc.isSetColumn()) {
+            return cosc.getColumn();
+        } else if (cosc.isSetCounter_column()) {
+            CounterColumn counter = cosc.getCounter_column();
+            ByteBuffer value = ByteBuffer.allocate(8);
+            value.putLong(0, counter.getValue());
+            return new Column(counter.bufferForName()).setValue(value);
+        }
+        return null;
+    }
+
     public static String getKeyAlias(CfDef cf) throws CharacterCodingException
     {
         ByteBuffer keyNameBuffer = cf.bufferForKey_alias();
@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.thrift.TException;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.*;
+
+/**
+ * Pool of additional Thrift clients owned by a connection.
+ * Thrift clients are not thread safe, so background work (bulk loads, parallel scans etc)
+ * borrows a dedicated client per thread and returns it when done.
+ */
+class ClientPool {
+
+    /**
+     * Borrowed client
+     */
+    static class PooledClient {
+        private final String host;
+        private final Cassandra.Client client;
+        private String keyspace;
+
+        private PooledClient(String host, Cassandra.Client client, String keyspace)
+        {
+            this.host = host;
+            this.client = client;
+            this.keyspace = keyspace;
+        }
+
+        String getHost()
+        {
+            return host;
+        }
+
+        Cassandra.Client getClient()
+        {
+            return client;
+        }
+    }
+
+    private final CassandraConnection connection;
+    private final Map<String, LinkedList<PooledClient>> idle = new HashMap<String, LinkedList<PooledClient>>();
+    private boolean closed;
+
+    ClientPool(CassandraConnection connection)
+    {
+        this.connection = connection;
+    }
+
+    /**
+     * Borrows a client connected to the given host with the given keyspace set.
+     */
+    PooledClient borrow(String host, String keyspace) throws SQLException
+    {
+        PooledClient pooled = null;
+        synchronized (this) {
+            if (closed) throw new SQLNonTransientConnectionException(ErrorMessages.WAS_CLOSED_CON);
+            LinkedList<PooledClient> clients = idle.get(host);
+            if (clients != null && !clients.isEmpty()) {
+                pooled = clients.removeFirst();
+            }
+        }
+        if (pooled == null) {
+            return new PooledClient(host, connection.openClient(host, keyspace), keyspace);
+        }
+        if (keyspace != null && !keyspace.equals(pooled.keyspace)) {
+            try {
+                pooled.client.set_keyspace(keyspace);
+                pooled.keyspace = keyspace;
+            } catch (InvalidRequestException e) {
+                release(pooled);
+                throw new SQLSyntaxErrorException(e.getWhy(), e);
+            } catch (TException e) {
+                invalidate(pooled);
+                throw new SQLNonTransientConnectionException(e);
+            }
+        }
+        return pooled;
+    }
+
+    /**
+     * Returns healthy client back to the pool
+     */
+    void release(PooledClient pooled)
+    {
+        synchronized (this) {
+            if (!closed) {
+                LinkedList<PooledClient> clients = idle.get(pooled.host);
+                if (clients == null) {
+                    clients = new LinkedList<PooledClient>();
+                    idle.put(pooled.host, clients);
+                }
+                clients.addFirst(pooled);
+                return;
+            }
+        }
+        CassandraConnection.closeClient(pooled.client);
+    }
+
+    /**
+     * Closes client after a transport failure (its state is undefined)
+     */
+    void invalidate(PooledClient pooled)
+    {
+        CassandraConnection.closeClient(pooled.client);
+    }
+
+    void close()
+    {
+        List<PooledClient> toClose = new ArrayList<PooledClient>();
+        synchronized (this) {
+            closed = true;
+            for (LinkedList<PooledClient> clients : idle.values()) {
+                toClose.addAll(clients);
+            }
+            idle.clear();
+        }
+        for (PooledClient pooled : toClose) {
+            CassandraConnection.closeClient(pooled.client);
+        }
+    }
+
+}
@@ -30,10 +30,13 @@ import org.jkiss.jdbc.cassandra.types.TypesMap;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.sql.SQLException;
 import java.sql.SQLNonTransientException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 //import org.slf4j.Logger;
 //import org.slf4j.LoggerFactory;
@@ -75,34 +78,76 @@ class ColumnDecoder {
     }
 
     private final Map<String, CFamMeta> metadata = new HashMap<String, CFamMeta>();
+    // set for lazy decoders only
+    private final CassandraConnection connection;
+    private final Set<String> loadedKeyspaces = new HashSet<String>();
+    private int schemaVersion;
 
     /**
      * is specific per set of keyspace definitions.
      */
     public ColumnDecoder(List<KsDef> defs)
     {
+        this.connection = null;
         for (KsDef ks : defs)
             for (CfDef cf : ks.getCf_defs())
                 metadata.put(ks.getName() + "." + cf.getName(), new CFamMeta(cf));
     }
 
+    /**
+     * Lazy decoder: definitions of a keyspace are read from the connection when one of its
+     * column families is used for the first time, and re-read after schema changes.
+     */
+    ColumnDecoder(CassandraConnection connection)
+    {
+        this.connection = connection;
+        this.schemaVersion = connection.getSchemaVersion();
+    }
+
+    private synchronized CFamMeta getMeta(String keyspace, String columnFamily)
+    {
+        String name = keyspace + "." + columnFamily;
+        if (connection == null) {
+            return metadata.get(name);
+        }
+        int version = connection.getSchemaVersion();
+        if (version != schemaVersion) {
+            metadata.clear();
+            loadedKeyspaces.clear();
+            schemaVersion = version;
+        }
+        CFamMeta cf = metadata.get(name);
+        if (cf == null && keyspace != null && loadedKeyspaces.add(keyspace)) {
+            try {
+                for (CfDef cfDef : connection.describeKeyspace(keyspace).getCf_defs())
+                    metadata.put(keyspace + "." + cfDef.getName(), new CFamMeta(cfDef));
+            } catch (SQLException e) {
+                // treated as unknown column family; retried on next use
+                loadedKeyspaces.remove(keyspace);
+                return null;
+            }
+            cf = metadata.get(name);
+        }
+        return cf;
+    }
+
     protected AbstractJdbcType<?> getComparator(String keyspace, String columnFamily)
     {
-        CFamMeta cf = metadata.get(String.format("%s.%s", keyspace, columnFamily));
+        CFamMeta cf = getMeta(keyspace, columnFamily);
         AbstractJdbcType<?> type = (cf != null) ? TypesMap.getTypeForComparator(cf.comparator) : null;
         return (type == null) ? null : type;
     }
 
     protected AbstractJdbcType<?> getDefaultValidator(String keyspace, String columnFamily)
     {
-        CFamMeta cf = metadata.get(keyspace + "." + columnFamily);
+        CFamMeta cf = getMeta(keyspace, columnFamily);
         AbstractJdbcType<?> type = (cf != null) ? TypesMap.getTypeForComparator(cf.defaultValidator) : null;
         return (type == null) ? null : type;
     }
 
     private AbstractJdbcType<?> getNameType(String keyspace, String columnFamily, ByteBuffer name)
     {
-        CFamMeta cf = metadata.get(keyspace + "." + columnFamily);
+        CFamMeta cf = getMeta(keyspace, columnFamily);
         try {
             if (CassandraUtils.string(name).equalsIgnoreCase(CassandraUtils.string(cf.keyAlias)))
                 return JdbcAscii.instance;
@@ -114,7 +159,7 @@ class ColumnDecoder {
 
     private AbstractJdbcType<?> getValueType(String keyspace, String columnFamily, ByteBuffer name)
     {
-        CFamMeta cf = metadata.get(keyspace + "." + columnFamily);
+        CFamMeta cf = getMeta(keyspace, columnFamily);
         if (cf == null)
             return null;
 
@@ -131,7 +176,7 @@ class ColumnDecoder {
 
     public AbstractJdbcType<?> getKeyValidator(String keyspace, String columnFamily)
     {
-        CFamMeta cf = metadata.get(keyspace + "." + columnFamily);
+        CFamMeta cf = getMeta(keyspace, columnFamily);
         AbstractJdbcType<?> type = (cf != null) ? TypesMap.getTypeForComparator(cf.keyValidator) : null;
         return (type == null) ? null : type;
     }
@@ -162,7 +207,7 @@ class ColumnDecoder {
      */
     public TypedColumn makeKeyColumn(String keyspace, String columnFamily, byte[] key) throws SQLNonTransientException
     {
-        CFamMeta cf = metadata.get(keyspace + "." + columnFamily);
+        CFamMeta cf = getMeta(keyspace, columnFamily);
         if (cf == null)
             throw new SQLNonTransientException(String.format("could not find decoder metadata for: %s.%s",
                 keyspace,
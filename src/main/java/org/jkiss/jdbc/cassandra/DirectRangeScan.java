@@ -0,0 +1,593 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+import org.jkiss.jdbc.cassandra.types.AbstractJdbcType;
+import org.jkiss.jdbc.cassandra.types.TypesMap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Simple key range query executed by get_range_slices instead of CQL:
+ * <pre>SELECT * | name [, name ...] FROM [keyspace.]cf [WHERE KEY >= term | KEY > term] [LIMIT n]</pre>
+ * The server doesn't have to parse and plan the query and rows are fetched page by page
+ * (statement fetch size) while the result set is read.
+ * Anything else (other clauses, unknown column family, values not convertible to the key or comparator type)
+ * is left to CQL. Rows without live columns are skipped.
+ */
+class DirectRangeScan {
+
+    // CQL 2 defaults
+    static final int DEFAULT_LIMIT = 10000;
+    static final int DEFAULT_COLUMN_LIMIT = 10000;
+    static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private static final ByteBuffer EMPTY = CassandraUtils.EMPTY_BYTE_BUFFER;
+    private static final int MAX_RETRIES = 3;
+
+    private final String keyspace;
+    private final String columnFamily;
+    private final List<String> columns;
+    private final String keyName;
+    private final String startKey;
+    private final boolean startExclusive;
+    // 0 if not specified
+    private final int limit;
+
+    private DirectRangeScan(String keyspace, String columnFamily, List<String> columns, String keyName, String startKey,
+                            boolean startExclusive, int limit)
+    {
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+        this.columns = columns;
+        this.keyName = keyName;
+        this.startKey = startKey;
+        this.startExclusive = startExclusive;
+        this.limit = limit;
+    }
+
+    String getColumnFamily()
+    {
+        return columnFamily;
+    }
+
+    /**
+     * Whether the query reads all rows (has neither key condition nor limit)
+     */
+    boolean isFullScan()
+    {
+        return keyName == null && limit == 0;
+    }
+
+    /**
+     * Parses the query
+     *
+     * @return scan or null if the query is not a simple key range query
+     */
+    static DirectRangeScan parse(String cql)
+    {
+        List<String> tokens = tokenize(cql);
+        if (tokens == null || tokens.size() < 4 || !tokens.get(0).equalsIgnoreCase("SELECT")) {
+            return null;
+        }
+        int pos = 1;
+        List<String> columns = null;
+        if (tokens.get(pos).equals("*")) {
+            pos++;
+        } else {
+            columns = new ArrayList<String>();
+            for (;;) {
+                String name = tokens.get(pos++);
+                if (!isTerm(name) || name.contains("..") || pos >= tokens.size()) {
+                    return null;
+                }
+                columns.add(unquote(name));
+                if (!tokens.get(pos).equals(",")) {
+                    break;
+                }
+                if (++pos >= tokens.size()) {
+                    return null;
+                }
+            }
+        }
+        if (pos + 1 >= tokens.size() || !tokens.get(pos++).equalsIgnoreCase("FROM")) {
+            return null;
+        }
+        String source = tokens.get(pos++);
+        if (!isWord(source)) {
+            return null;
+        }
+        String keyspace = null;
+        String columnFamily = source;
+        int dot = source.indexOf('.');
+        if (dot >= 0) {
+            keyspace = source.substring(0, dot);
+            columnFamily = source.substring(dot + 1);
+            if (keyspace.length() == 0 || columnFamily.length() == 0 || columnFamily.indexOf('.') >= 0) {
+                return null;
+            }
+        }
+        String keyName = null;
+        String startKey = null;
+        boolean startExclusive = false;
+        if (pos < tokens.size() && tokens.get(pos).equalsIgnoreCase("WHERE")) {
+            if (pos + 3 >= tokens.size()) {
+                return null;
+            }
+            keyName = tokens.get(pos + 1);
+            String operator = tokens.get(pos + 2);
+            startKey = tokens.get(pos + 3);
+            if (!isWord(keyName) || !(operator.equals(">=") || operator.equals(">")) || !isTerm(startKey)) {
+                return null;
+            }
+            startKey = unquote(startKey);
+            startExclusive = operator.equals(">");
+            pos += 4;
+        }
+        int limit = 0;
+        if (pos < tokens.size() && tokens.get(pos).equalsIgnoreCase("LIMIT")) {
+            if (pos + 1 >= tokens.size()) {
+                return null;
+            }
+            try {
+                limit = Integer.parseInt(tokens.get(pos + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (limit <= 0) {
+                return null;
+            }
+            pos += 2;
+        }
+        if (pos < tokens.size() && tokens.get(pos).equals(";")) {
+            pos++;
+        }
+        if (pos != tokens.size()) {
+            return null;
+        }
+        return new DirectRangeScan(keyspace, columnFamily, columns, keyName, startKey, startExclusive, limit);
+    }
+
+    /**
+     * Splits query into words, quoted strings (kept with the leading quote, unescaped) and operators
+     *
+     * @return tokens or null if the query contains anything else
+     */
+    private static List<String> tokenize(String cql)
+    {
+        List<String> tokens = new ArrayList<String>();
+        int length = cql.length();
+        int i = 0;
+        while (i < length) {
+            char c = cql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (isWordChar(c)) {
+                int start = i;
+                while (i < length && isWordChar(cql.charAt(i))) {
+                    i++;
+                }
+                tokens.add(cql.substring(start, i));
+            } else if (c == '\'') {
+                StringBuilder str = new StringBuilder().append('\'');
+                for (i++; ; i++) {
+                    if (i >= length) {
+                        return null;
+                    }
+                    c = cql.charAt(i);
+                    if (c == '\'') {
+                        if (i + 1 < length && cql.charAt(i + 1) == '\'') {
+                            i++;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    }
+                    str.append(c);
+                }
+                tokens.add(str.toString());
+            } else if (c == '>' && i + 1 < length && cql.charAt(i + 1) == '=') {
+                tokens.add(">=");
+                i += 2;
+            } else if (c == '*' || c == ',' || c == '>' || c == ';') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                return null;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c)
+    {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-' || c == '+' || c == ':';
+    }
+
+    private static boolean isWord(String token)
+    {
+        return isWordChar(token.charAt(0));
+    }
+
+    private static boolean isTerm(String token)
+    {
+        return isWord(token) || token.charAt(0) == '\'';
+    }
+
+    private static String unquote(String token)
+    {
+        return token.charAt(0) == '\'' ? token.substring(1) : token;
+    }
+
+    /**
+     * Prepares paging of the scan
+     *
+     * @param maxRows  maximum number of rows (0 means query limit)
+     * @param pageSize number of rows in a page (0 means default)
+     * @return pager or null if the query has to be executed by CQL
+     */
+    RangePager createPager(CassandraConnection connection, int maxRows, int pageSize) throws SQLException
+    {
+        String ks = keyspace == null ? connection.getCurrentKeyspace() : keyspace;
+        CfDef cfDef = ((CassandraDatabaseMetaData) connection.getMetaData()).findColumnFamily(ks, columnFamily);
+        if (cfDef == null || "Super".equalsIgnoreCase(cfDef.getColumn_type())) {
+            return null;
+        }
+        try {
+            String keyAliasName = CassandraUtils.getKeyAlias(cfDef);
+            if (keyName != null && !isKeyName(keyName, keyAliasName)) {
+                return null;
+            }
+            AbstractJdbcType<?> keyType = TypesMap.getTypeForComparator(cfDef.getKey_validation_class());
+            AbstractJdbcType<?> nameType = TypesMap.getTypeForComparator(cfDef.getComparator_type());
+            ByteBuffer start = startKey == null ? EMPTY : HandleObjects.encodeValue(startKey, keyType);
+            SlicePredicate predicate = new SlicePredicate();
+            // null stands for the row key
+            List<ByteBuffer> names = null;
+            if (columns == null) {
+                predicate.setSlice_range(new SliceRange(EMPTY, EMPTY, false, DEFAULT_COLUMN_LIMIT));
+            } else {
+                names = new ArrayList<ByteBuffer>(columns.size());
+                List<ByteBuffer> columnNames = new ArrayList<ByteBuffer>(columns.size());
+                for (String column : columns) {
+                    if (isKeyName(column, keyAliasName)) {
+                        names.add(null);
+                    } else {
+                        ByteBuffer name = HandleObjects.encodeValue(column, nameType);
+                        names.add(name);
+                        columnNames.add(name);
+                    }
+                }
+                if (columnNames.isEmpty()) {
+                    return null;
+                }
+                predicate.setColumn_names(columnNames);
+            }
+            int queryLimit = limit > 0 ? limit : DEFAULT_LIMIT;
+            return new RangePager(
+                ks,
+                CassandraUtils.makeCqlMetadata(cfDef),
+                predicate,
+                ByteBuffer.wrap(CassandraUtils.getRawKeyAlias(cfDef)),
+                names,
+                start,
+                maxRows > 0 && maxRows < queryLimit ? maxRows : queryLimit,
+                pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE);
+        } catch (CharacterCodingException e) {
+            return null;
+        } catch (SQLSyntaxErrorException e) {
+            // Bad key or column name - let the server report it
+            return null;
+        }
+    }
+
+    /**
+     * Starts the scan
+     *
+     * @return result set or null if the query has to be executed by CQL
+     */
+    CassandraResultSet execute(CassandraStatement statement) throws SQLException
+    {
+        CassandraConnection connection = statement.getConnection();
+        RangePager pager = createPager(connection, statement.getMaxRows(), statement.getFetchSize());
+        if (pager == null) {
+            return null;
+        }
+        KeyRangeReader reader = new KeyRangeReader(
+            connection,
+            pager,
+            statement.getConsistencyLevel() != null ? statement.getConsistencyLevel() : connection.getThriftReadConsistencyLevel());
+        return new CassandraResultSet(statement, reader, pager.getMetadata(), pager.getKeyspace(), columnFamily);
+    }
+
+    private static boolean isKeyName(String name, String keyAlias)
+    {
+        return name.equalsIgnoreCase(CassandraConstants.DEFAULT_KEY_ALIAS) || name.equalsIgnoreCase(keyAlias);
+    }
+
+    /**
+     * Converts Thrift row into CQL row. All columns are preceded by the row key,
+     * named columns are returned in the query order (missing ones without value).
+     *
+     * @param names selected column names (null for the row key) or null for all columns
+     * @return row or null if the row has no live columns
+     */
+    static CqlRow makeRow(KeySlice slice, ByteBuffer keyAlias, List<ByteBuffer> names)
+    {
+        List<ColumnOrSuperColumn> columns = slice.getColumns();
+        if (columns.isEmpty()) {
+            // Deleted row
+            return null;
+        }
+        ByteBuffer key = slice.bufferForKey();
+        List<Column> rowColumns;
+        if (names == null) {
+            rowColumns = new ArrayList<Column>(columns.size() + 1);
+            rowColumns.add(new Column(keyAlias).setValue(key));
+            for (ColumnOrSuperColumn cosc : columns) {
+                Column column = CassandraUtils.getColumn(cosc);
+                if (column != null) {
+                    rowColumns.add(column);
+                }
+            }
+        } else {
+            rowColumns = new ArrayList<Column>(names.size());
+            for (ByteBuffer name : names) {
+                if (name == null) {
+                    rowColumns.add(new Column(keyAlias).setValue(key));
+                } else {
+                    rowColumns.add(findColumn(columns, name));
+                }
+            }
+        }
+        return new CqlRow(key, rowColumns);
+    }
+
+    private static Column findColumn(List<ColumnOrSuperColumn> columns, ByteBuffer name)
+    {
+        for (ColumnOrSuperColumn cosc : columns) {
+            Column column = CassandraUtils.getColumn(cosc);
+            if (column != null && name.equals(column.bufferForName())) {
+                return column;
+            }
+        }
+        return new Column(name);
+    }
+
+    /**
+     * Paging state of the scan: builds key range of the next page and converts received rows.
+     * Start key is inclusive, so every page after the first one requests one more row
+     * and skips the last row of the previous page.
+     */
+    class RangePager {
+
+        private final String keyspace;
+        private final CqlMetadata metadata;
+        private final ColumnParent columnParent = new ColumnParent(columnFamily);
+        private final SlicePredicate predicate;
+        private final ByteBuffer keyAlias;
+        private final List<ByteBuffer> names;
+        private final int pageSize;
+
+        private ByteBuffer nextStart;
+        private ByteBuffer lastKey;
+        private int remaining;
+        private int requested;
+        private boolean finished;
+
+        private RangePager(String keyspace, CqlMetadata metadata, SlicePredicate predicate, ByteBuffer keyAlias,
+                           List<ByteBuffer> names, ByteBuffer start, int limit, int pageSize)
+        {
+            this.keyspace = keyspace;
+            this.metadata = metadata;
+            this.predicate = predicate;
+            this.keyAlias = keyAlias;
+            this.names = names;
+            this.nextStart = start;
+            this.lastKey = startExclusive ? start : null;
+            this.remaining = limit;
+            this.pageSize = pageSize;
+        }
+
+        String getKeyspace()
+        {
+            return keyspace;
+        }
+
+        CqlMetadata getMetadata()
+        {
+            return metadata;
+        }
+
+        ColumnParent getColumnParent()
+        {
+            return columnParent;
+        }
+
+        SlicePredicate getPredicate()
+        {
+            return predicate;
+        }
+
+        ByteBuffer getKeyAlias()
+        {
+            return keyAlias;
+        }
+
+        /**
+         * Selected column names (null for the row key) or null for all columns
+         */
+        List<ByteBuffer> getNames()
+        {
+            return names;
+        }
+
+        boolean isFinished()
+        {
+            return finished;
+        }
+
+        void finish()
+        {
+            finished = true;
+        }
+
+        /**
+         * Key range of the next page
+         */
+        KeyRange nextRange()
+        {
+            requested = Math.min(pageSize, remaining) + (lastKey == null ? 0 : 1);
+            KeyRange range = new KeyRange(requested);
+            range.setStart_key(nextStart);
+            range.setEnd_key(EMPTY);
+            return range;
+        }
+
+        /**
+         * Converts the page requested by {@link #nextRange()}. Pager is finished after the last page.
+         */
+        List<CqlRow> acceptPage(List<KeySlice> slices)
+        {
+            if (slices.size() < requested) {
+                finished = true;
+            }
+            List<CqlRow> rows = new ArrayList<CqlRow>(slices.size());
+            for (KeySlice slice : slices) {
+                if (remaining == 0) {
+                    break;
+                }
+                if (lastKey != null && lastKey.equals(slice.bufferForKey())) {
+                    continue;
+                }
+                CqlRow row = makeRow(slice, keyAlias, names);
+                if (row != null) {
+                    rows.add(row);
+                    remaining--;
+                }
+            }
+            if (remaining == 0) {
+                finished = true;
+            }
+            if (!slices.isEmpty()) {
+                lastKey = slices.get(slices.size() - 1).bufferForKey();
+                nextStart = lastKey;
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Reads pages from the connection host
+     */
+    private static class KeyRangeReader implements RowSource {
+
+        private final CassandraConnection connection;
+        private final RangePager pager;
+        private final ConsistencyLevel consistencyLevel;
+
+        private ClientPool.PooledClient pooled;
+        private Iterator<CqlRow> page;
+
+        KeyRangeReader(CassandraConnection connection, RangePager pager, ConsistencyLevel consistencyLevel)
+        {
+            this.connection = connection;
+            this.pager = pager;
+            this.consistencyLevel = consistencyLevel;
+        }
+
+        public boolean hasNext() throws SQLException
+        {
+            while (page == null || !page.hasNext()) {
+                if (pager.isFinished()) {
+                    return false;
+                }
+                page = pager.acceptPage(getRangeSlices(pager.nextRange())).iterator();
+                if (pager.isFinished()) {
+                    releaseClient();
+                }
+            }
+            return true;
+        }
+
+        public CqlRow next() throws SQLException
+        {
+            if (!hasNext()) {
+                throw new SQLNonTransientException("No more rows");
+            }
+            return page.next();
+        }
+
+        public void close()
+        {
+            page = null;
+            pager.finish();
+            releaseClient();
+        }
+
+        private List<KeySlice> getRangeSlices(KeyRange range) throws SQLException
+        {
+            connection.startRetryableCall();
+            for (int attempt = 1; ; attempt++) {
+                Exception cause;
+                SQLException sqlError;
+                try {
+                    if (pooled == null) {
+                        pooled = connection.getClientPool().borrow(connection.getHost(), pager.getKeyspace());
+                    }
+                    return pooled.getClient().get_range_slices(pager.getColumnParent(), pager.getPredicate(), range, consistencyLevel);
+                } catch (InvalidRequestException e) {
+                    throw new SQLSyntaxErrorException(e.getWhy(), e);
+                } catch (UnavailableException e) {
+                    cause = e;
+                    sqlError = new SQLNonTransientConnectionException(ErrorMessages.NO_SERVER, e);
+                } catch (TimedOutException e) {
+                    cause = e;
+                    sqlError = new SQLTransientConnectionException(e);
+                } catch (TException e) {
+                    connection.getClientPool().invalidate(pooled);
+                    pooled = null;
+                    cause = e;
+                    sqlError = new SQLNonTransientConnectionException(e);
+                }
+                if (attempt > MAX_RETRIES || !connection.prepareCallRetry(cause, attempt, true)) {
+                    throw sqlError;
+                }
+            }
+        }
+
+        private void releaseClient()
+        {
+            if (pooled != null) {
+                connection.getClientPool().release(pooled);
+                pooled = null;
+            }
+        }
+    }
+
+}
@@ -30,4 +30,5 @@ class ErrorMessages {
     protected static final String URI_IS_SIMPLE = "Connection url may only include host, port, and keyspace and version option, e.g., jdbc:jkiss:cassandra://localhost:9170/Keyspace1?version=2.0.0";
     protected static final String NOT_OPTION = "Connection url only support the 'version' option";
     protected static final String VALID_LABELS = "name provided was not in the list of valid column labels: %s";
+    protected static final String NO_CURRENT_ROW = "the result set cursor is not on a row";
 }
@@ -0,0 +1,78 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.util.Random;
+
+/**
+ * Retries idempotent statements with exponentially growing delays.
+ * Delay is a random value between zero and min(maxDelay, baseDelay * 2^(attempt - 1)) (full jitter)
+ * so clients which failed together don't retry together.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY = 50;
+    public static final long DEFAULT_MAX_DELAY = 2000;
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final boolean retryOnOtherHost;
+    private final Random random = new Random();
+
+    public ExponentialBackoffRetryPolicy()
+    {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, false);
+    }
+
+    /**
+     * @param maxAttempts      maximum number of retries
+     * @param baseDelay        delay limit of the first retry in milliseconds, doubled for every next one
+     * @param maxDelay         delay limit in milliseconds
+     * @param retryOnOtherHost send retries to other cluster hosts
+     */
+    public ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelay, long maxDelay, boolean retryOnOtherHost)
+    {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.retryOnOtherHost = retryOnOtherHost;
+    }
+
+    public long getRetryDelay(Exception error, int attempt, boolean idempotent)
+    {
+        if (!idempotent || attempt > maxAttempts) {
+            return -1;
+        }
+        // attempt is 1 after the first failure
+        long delay = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+        synchronized (random) {
+            return (long) (random.nextDouble() * delay);
+        }
+    }
+
+    public boolean isRetryOnOtherHost(Exception error, int attempt)
+    {
+        return retryOnOtherHost;
+    }
+
+}
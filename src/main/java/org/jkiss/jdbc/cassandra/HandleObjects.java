@@ -34,6 +34,15 @@ import java.sql.*;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class HandleObjects {
 
@@ -41,27 +50,34 @@ public class HandleObjects {
 
     private static final String STR_BOOL_NUMERIC = "String, Boolean, or a Numeric class";
 
-    private static Long fromString(String source) throws SQLException
+    private static long fromString(String source) throws SQLException
     {
-        long millis = 0;
-        if (source.isEmpty() || source.toLowerCase().equals("now")) return System.currentTimeMillis();
-            // Milliseconds since epoch?
-        else if (source.matches("^\\d+$")) {
+        if (source.isEmpty() || source.equalsIgnoreCase("now")) return System.currentTimeMillis();
+        // Milliseconds since epoch?
+        if (isDigits(source)) {
             try {
-                Long.parseLong(source);
+                return Long.parseLong(source);
             } catch (NumberFormatException e) {
                 throw new SQLNonTransientException(String.format("unable to make long (for date) from:  '%s'", source), e);
             }
         }
-        // Last chance, attempt to parse as date-time string
-        else {
-            try {
-                millis = parseDate(source, JdbcDate.iso8601Patterns).getTime();
-            } catch (ParseException e1) {
-                throw new SQLNonTransientException(String.format("unable to coerce '%s' to a  formatted date (long)", source), e1);
-            }
+        long millis = Iso8601.parse(source);
+        if (millis != Iso8601.NOT_PARSED) return millis;
+        // Last chance, let the lenient date formats have a go
+        try {
+            return parseDate(source, JdbcDate.iso8601Patterns).getTime();
+        } catch (ParseException e1) {
+            throw new SQLNonTransientException(String.format("unable to coerce '%s' to a  formatted date (long)", source), e1);
+        }
+    }
+
+    private static boolean isDigits(String source)
+    {
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') return false;
         }
-        return millis;
+        return true;
     }
 
     private static SQLException makeBadMapping(Class<?> badclass, String javatype, String jdbctype)
@@ -88,284 +104,658 @@ public class HandleObjects {
         return ByteBuffer.wrap(bytes);
     }
 
-    private static Integer objectToINTEGER(Class<?> objectClass, Object object)
+    // JDBC types makeBytes converts to; the index in this array is the column of the conversion matrix
+    private static final int[] SQL_TYPES = {
+        Types.BIT, Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+        Types.REAL, Types.FLOAT, Types.DOUBLE, Types.DECIMAL, Types.NUMERIC, Types.BOOLEAN,
+        Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NVARCHAR, Types.LONGNVARCHAR,
+        Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY,
+        Types.DATE, Types.TIME, Types.TIMESTAMP,
+        Types.DATALINK, Types.JAVA_OBJECT, Types.ROWID, Types.OTHER
+    };
+    private static final String[] TYPE_NAMES = {
+        "BIT", "TINYINT", "SMALLINT", "INTEGER", "BIGINT",
+        "the floating point types", "the floating point types", "the floating point types", "the floating point types", "NUMERIC", "BOOLEAN",
+        "the various VARCHAR types", "the various VARCHAR types", "the various VARCHAR types", "the various VARCHAR types", "the various VARCHAR types",
+        "the BINARY Types", "the BINARY Types", "the BINARY Types",
+        "DATE", "TIME", "TIMESTAMP",
+        "DATALINK", "JAVA_OBJECT", "ROWID", "OTHER"
+    };
+    private static final String[] SUPPORTED_CLASSES = {
+        STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC,
+        STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC, STR_BOOL_NUMERIC,
+        "String", "String", "String", "String", "String",
+        "ByteBuffer or byte[]", "ByteBuffer or byte[]", "ByteBuffer or byte[]",
+        "String, Date(java and sql) or Timestamp types", "String, Date (java), Time or Timestamp types", "String, Date(java and sql) or Timestamp types",
+        "a URL type", "any", "a RowId type", "UUID or a class with registered encoder"
+    };
+    // extra column: encoder of setObject() without target type
+    private static final int NATURAL = SQL_TYPES.length;
+    // extra column: encoder registered by the application for setObject() without target type
+    private static final int REGISTERED = NATURAL + 1;
+
+    private static final int[] NUMERIC_TYPES = {
+        Types.BIT, Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+        Types.REAL, Types.FLOAT, Types.DOUBLE, Types.DECIMAL, Types.NUMERIC, Types.BOOLEAN
+    };
+    private static final int[] STRING_TYPES = {Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NVARCHAR, Types.LONGNVARCHAR};
+    private static final int[] BINARY_TYPES = {Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY};
+
+    private static final ValueEncoder<?>[] NO_ENCODERS = new ValueEncoder<?>[REGISTERED + 1];
+
+    // encoders declared for a class (row of the matrix); rows are replaced, never modified
+    private static final Map<Class<?>, ValueEncoder<?>[]> declaredEncoders = new HashMap<Class<?>, ValueEncoder<?>[]>();
+    // rows resolved for concrete classes of bound values, including subclasses of declared ones
+    private static final ConcurrentMap<Class<?>, ValueEncoder<?>[]> resolvedEncoders = new ConcurrentHashMap<Class<?>, ValueEncoder<?>[]>();
+
+    /**
+     * Numeric conversions of one source class, by default those of a Number.
+     * Integral targets keep only the integer part.
+     */
+    private static class NumberView {
+        int toInt(Object value)
+        {
+            return ((Number) value).intValue();
+        }
+
+        long toLong(Object value)
+        {
+            return ((Number) value).longValue();
+        }
+
+        // whether toLong() is exact for varint targets
+        boolean isLong()
+        {
+            return true;
+        }
+
+        BigInteger toBigInteger(Object value)
+        {
+            return BigInteger.valueOf(toLong(value));
+        }
+
+        boolean toBoolean(Object value)
+        {
+            return ((Number) value).intValue() != 0;
+        }
+
+        double toDouble(Object value)
+        {
+            return ((Number) value).doubleValue();
+        }
+
+        // via the string form, so 0.1f stays 0.1
+        BigDecimal toBigDecimal(Object value)
+        {
+            return new BigDecimal(value.toString());
+        }
+    }
+
+    private static final NumberView NUMBER_VIEW = new NumberView();
+
+    private static final NumberView INTEGRAL_VIEW = new NumberView() {
+        @Override
+        boolean toBoolean(Object value)
+        {
+            return ((Number) value).longValue() != 0;
+        }
+    };
+
+    private static final NumberView BIG_INTEGER_VIEW = new NumberView() {
+        @Override
+        boolean isLong()
+        {
+            return false;
+        }
+
+        @Override
+        BigInteger toBigInteger(Object value)
+        {
+            return (BigInteger) value;
+        }
+
+        @Override
+        boolean toBoolean(Object value)
+        {
+            return ((BigInteger) value).signum() != 0;
+        }
+
+        @Override
+        BigDecimal toBigDecimal(Object value)
+        {
+            return new BigDecimal((BigInteger) value);
+        }
+    };
+
+    private static final NumberView BIG_DECIMAL_VIEW = new NumberView() {
+        @Override
+        boolean isLong()
+        {
+            return false;
+        }
+
+        @Override
+        BigInteger toBigInteger(Object value)
+        {
+            return ((BigDecimal) value).toBigInteger();
+        }
+
+        @Override
+        BigDecimal toBigDecimal(Object value)
+        {
+            return (BigDecimal) value;
+        }
+    };
+
+    // false=0 or true=1
+    private static final NumberView BOOLEAN_VIEW = new NumberView() {
+        @Override
+        int toInt(Object value)
+        {
+            return (Boolean) value ? 1 : 0;
+        }
+
+        @Override
+        long toLong(Object value)
+        {
+            return (Boolean) value ? 1 : 0;
+        }
+
+        @Override
+        boolean toBoolean(Object value)
+        {
+            return (Boolean) value;
+        }
+
+        @Override
+        double toDouble(Object value)
+        {
+            return (Boolean) value ? 1 : 0;
+        }
+
+        @Override
+        BigDecimal toBigDecimal(Object value)
+        {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+    };
+
+    private static final NumberView STRING_VIEW = new NumberView() {
+        @Override
+        int toInt(Object value)
+        {
+            return Integer.parseInt((String) value);
+        }
+
+        @Override
+        long toLong(Object value)
+        {
+            return Long.parseLong((String) value);
+        }
+
+        @Override
+        boolean isLong()
+        {
+            return false;
+        }
+
+        @Override
+        BigInteger toBigInteger(Object value)
+        {
+            return new BigInteger((String) value);
+        }
+
+        @Override
+        boolean toBoolean(Object value)
+        {
+            return Boolean.parseBoolean((String) value);
+        }
+
+        @Override
+        double toDouble(Object value)
+        {
+            return Double.parseDouble((String) value);
+        }
+
+        @Override
+        BigDecimal toBigDecimal(Object value)
+        {
+            return new BigDecimal((String) value);
+        }
+    };
+
+    private static abstract class NumericEncoder implements ValueEncoder<Object> {
+        final NumberView view;
+
+        NumericEncoder(NumberView view)
+        {
+            this.view = view;
+        }
+    }
+
+    private static final class BitEncoder extends NumericEncoder {
+        BitEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            boolean set = view.isLong() ? view.toLong(value) != 0 : view.toBigInteger(value).signum() != 0;
+            return CassandraUtils.varint(set ? 1 : 0);
+        }
+    }
+
+    private static final class VarintEncoder extends NumericEncoder {
+        VarintEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return view.isLong() ? CassandraUtils.varint(view.toLong(value)) : ByteBuffer.wrap(view.toBigInteger(value).toByteArray());
+        }
+    }
+
+    private static final class Int32Encoder extends NumericEncoder {
+        Int32Encoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return CassandraUtils.bytes(view.toInt(value));
+        }
+    }
+
+    private static final class LongEncoder extends NumericEncoder {
+        LongEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return CassandraUtils.bytes(view.toLong(value));
+        }
+    }
+
+    private static final class FloatEncoder extends NumericEncoder {
+        FloatEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return CassandraUtils.bytes((float) view.toDouble(value));
+        }
+    }
+
+    private static final class DoubleEncoder extends NumericEncoder {
+        DoubleEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return CassandraUtils.bytes(view.toDouble(value));
+        }
+    }
+
+    private static final class DecimalEncoder extends NumericEncoder {
+        DecimalEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return JdbcDecimal.instance.decompose(view.toBigDecimal(value));
+        }
+    }
+
+    private static final class BooleanEncoder extends NumericEncoder {
+        BooleanEncoder(NumberView view)
+        {
+            super(view);
+        }
+
+        public ByteBuffer encode(Object value)
+        {
+            return ByteBuffer.wrap(new byte[]{view.toBoolean(value) ? (byte) 1 : (byte) 0});
+        }
+    }
+
+    private static final ValueEncoder<String> STRING_ENCODER = new ValueEncoder<String>() {
+        public ByteBuffer encode(String value)
+        {
+            return CassandraUtils.bytes(value);
+        }
+    };
+
+    private static final ValueEncoder<String> STRING_MILLIS_ENCODER = new ValueEncoder<String>() {
+        public ByteBuffer encode(String value) throws SQLException
+        {
+            return CassandraUtils.bytes(fromString(value));
+        }
+    };
+
+    private static final ValueEncoder<java.util.Date> DATE_MILLIS_ENCODER = new ValueEncoder<java.util.Date>() {
+        public ByteBuffer encode(java.util.Date value)
+        {
+            return CassandraUtils.bytes(value.getTime());
+        }
+    };
+
+    private static final ValueEncoder<ByteBuffer> BUFFER_ENCODER = new ValueEncoder<ByteBuffer>() {
+        public ByteBuffer encode(ByteBuffer value)
+        {
+            return value;
+        }
+    };
+
+    private static final ValueEncoder<byte[]> ARRAY_ENCODER = new ValueEncoder<byte[]>() {
+        public ByteBuffer encode(byte[] value)
+        {
+            return ByteBuffer.wrap(value);
+        }
+    };
+
+    private static final ValueEncoder<URL> URL_ENCODER = new ValueEncoder<URL>() {
+        public ByteBuffer encode(URL value)
+        {
+            return CassandraUtils.bytes(value.toExternalForm());
+        }
+    };
+
+    private static final ValueEncoder<RowId> ROWID_ENCODER = new ValueEncoder<RowId>() {
+        public ByteBuffer encode(RowId value)
+        {
+            return ByteBuffer.wrap(value.getBytes());
+        }
+    };
+
+    private static final ValueEncoder<UUID> UUID_ENCODER = new ValueEncoder<UUID>() {
+        public ByteBuffer encode(UUID value)
+        {
+            return ByteBuffer.allocate(16).putLong(0, value.getMostSignificantBits()).putLong(8, value.getLeastSignificantBits());
+        }
+    };
+
+    static {
+        declareNumber(String.class, STRING_VIEW, Types.VARCHAR);
+        declare(String.class, STRING_ENCODER, STRING_TYPES);
+        declare(String.class, STRING_MILLIS_ENCODER, Types.DATE, Types.TIME, Types.TIMESTAMP);
+        declare(String.class, STRING_ENCODER, NATURAL);
+
+        declareNumber(Boolean.class, BOOLEAN_VIEW, Types.BOOLEAN);
+        declareNumber(Integer.class, INTEGRAL_VIEW, Types.INTEGER);
+        declareNumber(Long.class, INTEGRAL_VIEW, Types.BIGINT);
+        declareNumber(Short.class, INTEGRAL_VIEW, Types.SMALLINT);
+        declareNumber(Byte.class, INTEGRAL_VIEW, Types.TINYINT);
+        declareNumber(BigInteger.class, BIG_INTEGER_VIEW, Types.NUMERIC);
+        declareNumber(Double.class, NUMBER_VIEW, Types.DOUBLE);
+        declareNumber(Float.class, NUMBER_VIEW, Types.REAL);
+        declareNumber(BigDecimal.class, BIG_DECIMAL_VIEW, Types.DECIMAL);
+        declareNumber(Number.class, NUMBER_VIEW, Types.BIGINT);
+
+        declare(java.util.Date.class, DATE_MILLIS_ENCODER, Types.DATE, Types.TIME, Types.TIMESTAMP, NATURAL);
+        declare(Date.class, DATE_MILLIS_ENCODER, Types.DATE, Types.TIMESTAMP, NATURAL);
+        declare(Time.class, DATE_MILLIS_ENCODER, Types.TIME, NATURAL);
+        declare(Timestamp.class, DATE_MILLIS_ENCODER, Types.DATE, Types.TIME, Types.TIMESTAMP, NATURAL);
+
+        declare(ByteBuffer.class, BUFFER_ENCODER, BINARY_TYPES);
+        declare(ByteBuffer.class, BUFFER_ENCODER, NATURAL);
+        declare(byte[].class, ARRAY_ENCODER, BINARY_TYPES);
+        declare(byte[].class, ARRAY_ENCODER, NATURAL);
+        declare(URL.class, URL_ENCODER, Types.DATALINK, NATURAL);
+        declare(RowId.class, ROWID_ENCODER, Types.ROWID, NATURAL);
+        declare(UUID.class, UUID_ENCODER, Types.OTHER, NATURAL);
+    }
+
+    private static void declareNumber(Class<?> valueClass, NumberView view, int naturalType)
+    {
+        declare(valueClass, new BitEncoder(view), Types.BIT);
+        declare(valueClass, new VarintEncoder(view), Types.TINYINT, Types.SMALLINT, Types.NUMERIC);
+        declare(valueClass, new Int32Encoder(view), Types.INTEGER);
+        declare(valueClass, new LongEncoder(view), Types.BIGINT);
+        declare(valueClass, new FloatEncoder(view), Types.REAL, Types.FLOAT);
+        declare(valueClass, new DoubleEncoder(view), Types.DOUBLE);
+        declare(valueClass, new DecimalEncoder(view), Types.DECIMAL);
+        declare(valueClass, new BooleanEncoder(view), Types.BOOLEAN);
+        if (valueClass != String.class) {
+            declare(valueClass, declaredEncoders.get(valueClass)[typeIndex(naturalType)], NATURAL);
+        }
+    }
+
+    /**
+     * Sets encoder of the class for the given JDBC types ({@link #NATURAL} and {@link #REGISTERED} stand for
+     * setObject() without type)
+     */
+    private static void declare(Class<?> valueClass, ValueEncoder<?> encoder, int... sqlTypes)
+    {
+        synchronized (declaredEncoders) {
+            ValueEncoder<?>[] row = declaredEncoders.get(valueClass);
+            row = row == null ? new ValueEncoder<?>[REGISTERED + 1] : row.clone();
+            for (int sqlType : sqlTypes) {
+                row[sqlType == NATURAL || sqlType == REGISTERED ? sqlType : typeIndex(sqlType)] = encoder;
+            }
+            declaredEncoders.put(valueClass, row);
+            resolvedEncoders.clear();
+        }
+    }
+
+    private static int typeIndex(int sqlType)
+    {
+        for (int i = 0; i < SQL_TYPES.length; i++) {
+            if (SQL_TYPES[i] == sqlType) return i;
+        }
+        return -1;
+    }
+
+    private static ValueEncoder<?>[] getEncoders(Class<?> valueClass)
+    {
+        ValueEncoder<?>[] row = resolvedEncoders.get(valueClass);
+        if (row == null) {
+            synchronized (declaredEncoders) {
+                row = findEncoders(valueClass);
+                resolvedEncoders.put(valueClass, row);
+            }
+        }
+        return row;
+    }
+
+    // row of the class itself or of the nearest superclass, then of its interfaces
+    private static ValueEncoder<?>[] findEncoders(Class<?> valueClass)
+    {
+        for (Class<?> type = valueClass; type != null; type = type.getSuperclass()) {
+            ValueEncoder<?>[] row = declaredEncoders.get(type);
+            if (row != null) return row;
+        }
+        for (Class<?> type = valueClass; type != null; type = type.getSuperclass()) {
+            for (Class<?> iface : type.getInterfaces()) {
+                ValueEncoder<?>[] row = findEncoders(iface);
+                if (row != NO_ENCODERS) return row;
+            }
+        }
+        return NO_ENCODERS;
+    }
+
+    /**
+     * Registers encoder for values of the given class (and its subclasses) bound with setObject() without type,
+     * as JAVA_OBJECT or as OTHER. Replaces Java serialization for them.
+     */
+    public static <T> void registerEncoder(Class<T> valueClass, ValueEncoder<? super T> encoder)
     {
-        // Strings should always work
-        if (objectClass == String.class) return Integer.valueOf((String) object);
-
-        // Booleans are either false=0 or true=1
-        if (objectClass == Boolean.class) return !((Boolean) object) ? 0 : 1;
-
-        // All the integer (non floating-point) are simple
-        if (objectClass == Integer.class) return (Integer) object;
-        else if (objectClass == BigInteger.class) return ((BigInteger) object).intValue();
-        else if (objectClass == Long.class) return ((Long) object).intValue();
-        else if (objectClass == Short.class) return ((Short) object).intValue();
-        else if (objectClass == Byte.class) return ((Byte) object).intValue();
-
-            // Floating ones need to just pass the integer part
-        else if (objectClass == Double.class) return ((Double) object).intValue();
-        else if (objectClass == Float.class) return ((Float) object).intValue();
-        else if (objectClass == BigDecimal.class) return ((BigDecimal) object).intValue();
-        else return null; // this should not happen
+        declare(valueClass, encoder, Types.JAVA_OBJECT, Types.OTHER, NATURAL, REGISTERED);
     }
 
-    private static Long objectToBIGINT(Class<?> objectClass, Object object)
+    /**
+     * Registers encoder for values of the given class (and its subclasses) bound as the given JDBC type.
+     */
+    public static <T> void registerEncoder(Class<T> valueClass, int targetSqlType, ValueEncoder<? super T> encoder)
     {
-        // Strings should always work
-        if (objectClass == String.class) return Long.valueOf((String) object);
-
-        // Booleans are either false=0 or true=1
-        if (objectClass == Boolean.class) return !((Boolean) object) ? 0L : 1L;
-
-        // All the integer (non floating-point) are simple
-        if (objectClass == Integer.class) return Long.valueOf((Integer) object);
-        else if (objectClass == BigInteger.class) return ((BigInteger) object).longValue();
-        else if (objectClass == Long.class) return (Long) object;
-        else if (objectClass == Short.class) return ((Short) object).longValue();
-        else if (objectClass == Byte.class) return ((Byte) object).longValue();
-
-            // Floating ones need to just pass the integer part
-        else if (objectClass == Double.class) return ((Double) object).longValue();
-        else if (objectClass == Float.class) return ((Float) object).longValue();
-        else if (objectClass == BigDecimal.class) return ((BigDecimal) object).longValue();
-        else return null; // this should not happen
+        if (typeIndex(targetSqlType) < 0) {
+            throw new IllegalArgumentException("Unsupported JDBC type: " + targetSqlType);
+        }
+        declare(valueClass, encoder, targetSqlType);
+    }
+
+    /**
+     * Encodes value for a column of the specified type.
+     * Values of other classes are converted from their string form (BLOBs are expected in hex).
+     * Values for unknown types are encoded as UTF8 strings.
+     */
+    @SuppressWarnings("unchecked")
+    static ByteBuffer encodeValue(Object value, AbstractJdbcType<?> type) throws SQLException
+    {
+        if (value instanceof ByteBuffer) {
+            return (ByteBuffer) value;
+        }
+        if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        if (type == null) {
+            return CassandraUtils.bytes(value.toString());
+        }
+        if (type.getType().isInstance(value) && !(type instanceof AbstractJdbcCollection)) {
+            return ((AbstractJdbcType<Object>) type).decompose(value);
+        }
+        if (type instanceof JdbcComposite && !((JdbcComposite) type).isDynamic()) {
+            return encodeComposite(value, (JdbcComposite) type);
+        }
+        if (type instanceof AbstractJdbcCollection && (value instanceof Collection || value instanceof Map)) {
+            return encodeCollection(value, type);
+        }
+        String str = value.toString();
+        try {
+            if (type instanceof AbstractJdbcUUID) {
+                return ByteBuffer.wrap(UUIDGen.decompose(UUID.fromString(str)));
+            } else if (type == JdbcBytes.instance) {
+                return ByteBuffer.wrap(CassandraUtils.hexToBytes(str));
+            } else if (type == JdbcInteger.instance) {
+                return JdbcInteger.instance.decompose(value instanceof Number && !(value instanceof BigDecimal) ?
+                    BigInteger.valueOf(((Number) value).longValue()) : new BigInteger(str));
+            } else if (type == JdbcDecimal.instance) {
+                return JdbcDecimal.instance.decompose(new BigDecimal(str));
+            } else if (type == JdbcDouble.instance) {
+                return JdbcDouble.instance.decompose(value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(str));
+            } else if (type == JdbcFloat.instance) {
+                return JdbcFloat.instance.decompose(value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(str));
+            } else if (type == JdbcCounterColumn.instance) {
+                throw new SQLFeatureNotSupportedException("Counter columns can't be bulk loaded");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new SQLSyntaxErrorException("Can't convert '" + str + "' to " + type.getType().getSimpleName(), e);
+        }
+        return makeBytes(value, type.getJdbcType(), 0);
     }
 
-    private static Long objectToDATEorTIMEorTIMESTAMP(Class<?> objectClass, Object object) throws SQLException
+    /**
+     * Encodes components given as an array, a list or a string ("a:b", ':' escaped with '\\')
+     */
+    private static ByteBuffer encodeComposite(Object value, JdbcComposite type) throws SQLException
     {
-        // Strings should always work
-        if (objectClass == String.class) return fromString((String) object);
-
-        if (objectClass == java.util.Date.class) return ((java.util.Date) object).getTime();
-        else if (objectClass == Date.class) return ((Date) object).getTime();
-        else if (objectClass == Time.class) return ((Time) object).getTime();
-        else if (objectClass == Timestamp.class) return ((Timestamp) object).getTime();
-        else return null; // this should not happen
+        List<?> components;
+        if (value instanceof Object[]) {
+            components = Arrays.asList((Object[]) value);
+        } else if (value instanceof List) {
+            components = (List<?>) value;
+        } else {
+            components = JdbcComposite.split(value.toString());
+        }
+        ByteBuffer[] encoded = new ByteBuffer[components.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            Object component = components.get(i);
+            encoded[i] = component == null ? null : encodeValue(component, type.getComponentType(i));
+        }
+        return JdbcComposite.build(encoded);
     }
 
-    private static Boolean objectToBOOLEAN(Class<?> objectClass, Object object)
+    /**
+     * Encodes elements of a collection (or entries of a map) with the element types of the column
+     */
+    private static ByteBuffer encodeCollection(Object value, AbstractJdbcType<?> type) throws SQLException
     {
-        // Strings should always work
-        if (objectClass == String.class) return Boolean.valueOf((String) object);
-
-        // Booleans are either false=0 or true=1
-        if (objectClass == Boolean.class) return ((Boolean) object);
-
-        // All the integer (non floating-point) are simple
-        if (objectClass == Integer.class) return ((Integer) object) != 0;
-        else if (objectClass == BigInteger.class) return ((BigInteger) object).intValue() != 0;
-        else if (objectClass == Long.class) return ((Long) object) != 0;
-        else if (objectClass == Short.class) return ((Short) object) != 0;
-        else if (objectClass == Byte.class) return ((Byte) object) != 0;
-
-            // Floating ones need to just pass the integer part
-        else if (objectClass == Double.class) return ((Double) object).intValue() != 0;
-        else if (objectClass == Float.class) return ((Float) object).intValue() != 0;
-        else if (objectClass == BigDecimal.class)
-            return ((BigDecimal) object).intValue() != 0;
-        else return null; // this should not happen
+        List<ByteBuffer> elements = new ArrayList<ByteBuffer>();
+        if (type instanceof JdbcMap && value instanceof Map) {
+            JdbcMap mapType = (JdbcMap) type;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                elements.add(encodeValue(entry.getKey(), mapType.getKeyType()));
+                elements.add(encodeValue(entry.getValue(), mapType.getValueType()));
+            }
+            return AbstractJdbcCollection.build(elements, elements.size() / 2);
+        }
+        if (!(value instanceof Collection)) {
+            throw new SQLSyntaxErrorException("Can't convert " + value.getClass().getSimpleName() + " to " + type);
+        }
+        AbstractJdbcType<?> elementType = type instanceof JdbcList ? ((JdbcList) type).getElementType() :
+            type instanceof JdbcSet ? ((JdbcSet) type).getElementType() : null;
+        if (elementType == null) {
+            throw new SQLSyntaxErrorException("Can't convert " + value.getClass().getSimpleName() + " to " + type);
+        }
+        for (Object element : (Collection<?>) value) {
+            elements.add(encodeValue(element, elementType));
+        }
+        return AbstractJdbcCollection.build(elements, elements.size());
     }
 
-    private static BigInteger objectToBITorTINYINTorSMALLINTorNUMERIC(Class<?> objectClass, Object object)
+    /**
+     * Encodes value bound with setObject() without target type: with the encoder registered for its class,
+     * otherwise as VARCHAR. Values other than strings are bound in their string form, binary values as is.
+     * Binding a number in its binary form would be accepted by text columns and keys and silently stored
+     * as garbage characters.
+     */
+    @SuppressWarnings("unchecked")
+    public static ByteBuffer makeUntypedBytes(Object object) throws SQLException
     {
-        // Strings should always work
-        if (objectClass == String.class) return new BigInteger((String) object);
-
-        // Booleans are either false=0 or true=1
-        if (objectClass == Boolean.class) return !((Boolean) object) ? BigInteger.ZERO : BigInteger.ONE;
-
-        // All the integer (non floating-point) are simple
-        if (objectClass == Integer.class) return BigInteger.valueOf((Integer) object);
-        else if (objectClass == BigInteger.class) return ((BigInteger) object);
-        else if (objectClass == Long.class) return BigInteger.valueOf(((Long) object));
-        else if (objectClass == Short.class) return BigInteger.valueOf(((Short) object).longValue());
-        else if (objectClass == Byte.class) return BigInteger.valueOf(((Byte) object).longValue());
-
-            // Floating ones need to just pass the integer part
-        else if (objectClass == Double.class) return BigInteger.valueOf(((Double) object).longValue());
-        else if (objectClass == Float.class) return BigInteger.valueOf(((Float) object).longValue());
-        else if (objectClass == BigDecimal.class) return BigInteger.valueOf(((BigDecimal) object).intValue());
-        else return null; // this should not happen
+        ValueEncoder<Object> encoder = (ValueEncoder<Object>) getEncoders(object.getClass())[REGISTERED];
+        if (encoder != null) {
+            return encoder.encode(object);
+        }
+        if (object instanceof ByteBuffer || object instanceof byte[]) {
+            return makeBytes(object);
+        }
+        return CassandraUtils.bytes(object.toString());
     }
 
+    /**
+     * Encodes value bound with setObject() without target type, in the natural JDBC type of its class.
+     * Used when the connection has the naturalObjectTypes property set.
+     */
+    @SuppressWarnings("unchecked")
+    public static ByteBuffer makeBytes(Object object) throws SQLException
+    {
+        ValueEncoder<Object> encoder = (ValueEncoder<Object>) getEncoders(object.getClass())[NATURAL];
+        if (encoder == null) {
+            return makeBytes(object, Types.VARCHAR, 0);
+        }
+        return encoder.encode(object);
+    }
 
+    @SuppressWarnings("unchecked")
     public static ByteBuffer makeBytes(Object object, int targetSqlType, int scaleOrLength) throws SQLException
     {
-        Class<?> objectClass = object.getClass();
+        int index = typeIndex(targetSqlType);
+        if (index < 0) throw new SQLNonTransientException("Unsupported transformation to Jdbc Type: " + targetSqlType);
 
-        // Type check first
-        switch (targetSqlType) {
-            case Types.TINYINT:
-                // Only Numeric classes, Strings and Booleans are supported for transformation to TINYINT
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "TINYINT");
-                break;
-
-            case Types.SMALLINT:
-                // Only Numeric classes, Strings and Booleans are supported for transformation to SMALLINT
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "SMALLINT");
-                break;
-
-
-            case Types.INTEGER:
-                // Only Numeric classes, Strings and Booleans are supported for transformation to INTEGER
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "INTEGER");
-                break;
-
-            case Types.BIGINT:
-                // Only Numeric classes, Strings and Booleans are supported for transformation to BIGINT
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "BIGINT");
-                break;
-
-            case Types.REAL:
-            case Types.FLOAT:
-            case Types.DOUBLE:
-            case Types.DECIMAL:
-                // Only Numeric classes Strings and Booleans are supported for transformation to REAL,FLOAT,DOUBLE,DECIMAL
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "the floating point types");
-                break;
-
-            case Types.NUMERIC:
-                //NB This as a special case variation for Cassandra!! NUMERIC is transformed to java BigInteger (varint CQL type)
-                //
-                // Only Numeric classes Strings and Booleans are supported for transformation to NUMERIC
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "NUMERIC");
-                break;
-
-            case Types.BIT:
-                // Only Numeric classes Strings and Booleans are supported for transformation to BIT
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "BIT");
-                break;
-
-            case Types.BOOLEAN:
-                // Only Numeric classes Strings and Booleans are supported for transformation to BOOLEAN
-                if (!(objectClass == String.class || objectClass == Boolean.class || Number.class.isAssignableFrom(object.getClass())))
-                    throw makeBadMapping(objectClass, STR_BOOL_NUMERIC, "BOOLEAN");
-                break;
-
-            case Types.CHAR:
-            case Types.VARCHAR:
-            case Types.LONGVARCHAR:
-            case Types.NVARCHAR:
-            case Types.LONGNVARCHAR:
-                if (!objectClass.isAssignableFrom(String.class))
-                    throw makeBadMapping(objectClass, "String", "the various VARCHAR types");
-                break;
-
-            case Types.BINARY:
-            case Types.VARBINARY:
-            case Types.LONGVARBINARY:
-                if (!(objectClass.isAssignableFrom(ByteBuffer.class) || objectClass.getSimpleName().equals("byte[]")))
-                    throw makeBadMapping(objectClass, "ByteBuffer or byte[]", "the BINARY Types");
-                break;
-
-            case Types.DATE:
-                if (!(objectClass == String.class || objectClass == java.util.Date.class || objectClass == Date.class || objectClass == Timestamp.class))
-                    throw makeBadMapping(objectClass, "String, Date(java and sql) or Timestamp types", "DATE");
-                break;
-
-            case Types.TIME:
-                if (!(objectClass == String.class || objectClass == java.util.Date.class || objectClass == Time.class || objectClass == Timestamp.class))
-                    throw makeBadMapping(objectClass, "String, Date (java), Time or Timestamp types", "TIME");
-                break;
-
-            case Types.TIMESTAMP:
-                if (!(objectClass == String.class || objectClass == java.util.Date.class || objectClass == Date.class || objectClass == Timestamp.class))
-                    throw makeBadMapping(objectClass, "String, Date(java and sql) or Timestamp types", "TIMESTAMP");
-                break;
-
-            case Types.DATALINK:
-                if (objectClass != URL.class) throw makeBadMapping(objectClass, "a URL type", "DATALINK");
-                break;
-
-            case Types.JAVA_OBJECT:
-                break;
-
-            case Types.ROWID:
-                if (objectClass != RowId.class) throw makeBadMapping(objectClass, "a RowId type", "ROWID");
-                break;
-
-            default:
-                throw new SQLNonTransientException("Unsupported transformation to Jdbc Type: " + targetSqlType);
-        }
-
-        // see if we can map to an supported Type
-        switch (targetSqlType) {
-            case Types.BIT:
-                BigInteger bitvalue = objectToBITorTINYINTorSMALLINTorNUMERIC(objectClass, object);
-                assert bitvalue != null;
-                return JdbcInteger.instance.decompose((bitvalue.equals(BigInteger.ZERO)) ? BigInteger.ZERO : BigInteger.ONE);
-
-            case Types.TINYINT:
-            case Types.SMALLINT:
-            case Types.NUMERIC:
-                BigInteger varint = objectToBITorTINYINTorSMALLINTorNUMERIC(objectClass, object);
-                assert varint != null;
-                return JdbcInteger.instance.decompose(varint);
-
-            case Types.INTEGER:
-                Integer value = objectToINTEGER(objectClass, object);
-                assert value != null;
-                return JdbcInt32.instance.decompose(value);
-
-            case Types.BIGINT:
-                Long longvalue = objectToBIGINT(objectClass, object);
-                assert longvalue != null;
-                return JdbcLong.instance.decompose(longvalue);
-
-            case Types.BOOLEAN:
-                Boolean bool = objectToBOOLEAN(objectClass, object);
-                assert bool != null;
-                return JdbcBoolean.instance.decompose(bool);
-
-            case Types.CHAR:
-            case Types.VARCHAR:
-            case Types.LONGVARCHAR:
-            case Types.NVARCHAR:
-            case Types.LONGNVARCHAR:
-                return CassandraUtils.bytes((String) object);
-
-            case Types.BINARY:
-            case Types.VARBINARY:
-            case Types.LONGVARBINARY:
-                if (objectClass.isAssignableFrom(ByteBuffer.class)) {
-                    return ((ByteBuffer) object);
-                } else if (objectClass.getSimpleName().equals("byte[]")) {
-                    return ByteBuffer.wrap((byte[]) object);
-                } else return null; // this should not happen
-
-
-            case Types.DATE:
-            case Types.TIME:
-            case Types.TIMESTAMP:
-                Long millis = objectToDATEorTIMEorTIMESTAMP(objectClass, object);
-                assert millis != null;
-                return JdbcLong.instance.decompose(millis);
-
-            case Types.DATALINK:
-                String urlAsString = ((URL) object).toExternalForm();
-                return JdbcUTF8.instance.decompose(urlAsString);
-
-            case Types.JAVA_OBJECT:
-                return javaObject(object);
-
-            case Types.ROWID:
-                byte[] bytes = ((RowId) object).getBytes();
-                return ByteBuffer.wrap(bytes);
-
-            default:
-                throw new SQLException("Unsupported JDBC type: " + targetSqlType);
+        Class<?> objectClass = object.getClass();
+        ValueEncoder<Object> encoder = (ValueEncoder<Object>) getEncoders(objectClass)[index];
+        if (encoder == null) {
+            if (targetSqlType == Types.JAVA_OBJECT) return javaObject(object);
+            throw makeBadMapping(objectClass, SUPPORTED_CLASSES[index], TYPE_NAMES[index]);
+        }
+        try {
+            return encoder.encode(object);
+        } catch (NumberFormatException e) {
+            throw new SQLSyntaxErrorException("Can't convert '" + object + "' to " + TYPE_NAMES[index], e);
         }
     }
 
-
     public static java.util.Date parseDate(String str, String[] parsePatterns) throws ParseException
     {
         if (str == null || parsePatterns == null) {
@@ -0,0 +1,202 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Speculative execution of read queries.
+ * <p/>
+ * Query is sent to the connection host. If it doesn't answer within the hedge delay (fixed or a percentile
+ * of recent query latencies) the same query is sent to another host and the first answer wins.
+ * Both requests use pooled clients, so the slow one may complete in background.
+ */
+class HedgedReader {
+
+    private final CassandraConnection connection;
+    private final long delay;
+    private final double percentile;
+    private final ExecutorService executor;
+    private final AtomicInteger nextHost = new AtomicInteger();
+
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    /**
+     * @param delay      fixed hedge delay in milliseconds. Used until latency statistics are collected if percentile is set,
+     *                   so it must be positive then.
+     * @param percentile latency percentile used as hedge delay (0 to use fixed delay only)
+     */
+    HedgedReader(CassandraConnection connection, long delay, double percentile)
+    {
+        if (delay <= 0) throw new IllegalArgumentException("Hedge delay must be positive: " + delay);
+        this.connection = connection;
+        this.delay = delay;
+        this.percentile = percentile;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "Cassandra hedged read #" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    long getHedgeCount()
+    {
+        return hedgeCount.get();
+    }
+
+    long getHedgeWinCount()
+    {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * Hedge delay in microseconds
+     */
+    private long getDelay()
+    {
+        if (percentile > 0) {
+            long latency = connection.getLatencyTracker().getPercentile(percentile);
+            if (latency >= 0) {
+                return latency;
+            }
+        }
+        return delay * 1000;
+    }
+
+    CqlResult execute(String keyspace, ByteBuffer query, Compression compression)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        CompletionService<CqlResult> completion = new ExecutorCompletionService<CqlResult>(executor);
+        completion.submit(new Attempt(connection.getHost(), keyspace, query, compression));
+        Future<CqlResult> hedge = null;
+        try {
+            Future<CqlResult> done = completion.poll(getDelay(), TimeUnit.MICROSECONDS);
+            if (done == null) {
+                String hedgeHost = pickHedgeHost();
+                if (hedgeHost != null) {
+                    hedgeCount.incrementAndGet();
+                    hedge = completion.submit(new Attempt(hedgeHost, keyspace, query, compression));
+                }
+                done = completion.take();
+            }
+            try {
+                CqlResult result = done.get();
+                if (done == hedge) {
+                    hedgeWinCount.incrementAndGet();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (hedge == null) {
+                    throw e;
+                }
+                // First answer is an error - wait for the other request
+                Future<CqlResult> other = completion.take();
+                CqlResult result = other.get();
+                if (other == hedge) {
+                    hedgeWinCount.incrementAndGet();
+                }
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TException("Query interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InvalidRequestException) throw (InvalidRequestException) cause;
+            if (cause instanceof UnavailableException) throw (UnavailableException) cause;
+            if (cause instanceof TimedOutException) throw (TimedOutException) cause;
+            if (cause instanceof SchemaDisagreementException) throw (SchemaDisagreementException) cause;
+            if (cause instanceof TException) throw (TException) cause;
+            throw new TException(cause);
+        }
+    }
+
+    void close()
+    {
+        executor.shutdown();
+    }
+
+    private String pickHedgeHost()
+    {
+        List<String> hosts = connection.getHosts();
+        String primaryHost = connection.getHost();
+        for (int i = 0; i < hosts.size(); i++) {
+            String host = hosts.get((nextHost.getAndIncrement() & Integer.MAX_VALUE) % hosts.size());
+            if (!host.equals(primaryHost)) {
+                return host;
+            }
+        }
+        return null;
+    }
+
+    private class Attempt implements Callable<CqlResult> {
+        private final String host;
+        private final String keyspace;
+        private final ByteBuffer query;
+        private final Compression compression;
+
+        Attempt(String host, String keyspace, ByteBuffer query, Compression compression)
+        {
+            this.host = host;
+            this.keyspace = keyspace;
+            this.query = query;
+            this.compression = compression;
+        }
+
+        public CqlResult call() throws Exception
+        {
+            ClientPool pool = connection.getClientPool();
+            ClientPool.PooledClient pooled;
+            try {
+                pooled = pool.borrow(host, keyspace);
+            } catch (SQLException e) {
+                throw new TException(e);
+            }
+            try {
+                CqlResult result = pooled.getClient().execute_cql_query(query.duplicate(), compression);
+                pool.release(pooled);
+                return result;
+            } catch (TException e) {
+                // Transport state is unknown
+                pool.invalidate(pooled);
+                throw e;
+            } catch (Exception e) {
+                pool.release(pooled);
+                throw e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.util.Arrays;
+
+/**
+ * Keeps latencies of recent queries and computes their percentiles.
+ * Percentiles are recalculated after every few recorded samples, not on each request.
+ */
+class LatencyTracker {
+
+    private static final int WINDOW_SIZE = 1024;
+    private static final int RECALC_INTERVAL = 64;
+    private static final int MIN_SAMPLES = 100;
+
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int count;
+    private int position;
+    private int sinceRecalc;
+    private long[] sorted;
+
+    /**
+     * Records query latency in microseconds
+     */
+    synchronized void record(long micros)
+    {
+        samples[position] = micros;
+        position = (position + 1) % WINDOW_SIZE;
+        if (count < WINDOW_SIZE) {
+            count++;
+        }
+        sinceRecalc++;
+    }
+
+    /**
+     * Returns latency percentile in microseconds or -1 if there are not enough samples yet
+     *
+     * @param percentile percentile (0..100)
+     */
+    synchronized long getPercentile(double percentile)
+    {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        if (sorted == null || sinceRecalc >= RECALC_INTERVAL) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceRecalc = 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+}
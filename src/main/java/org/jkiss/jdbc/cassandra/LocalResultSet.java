@@ -6,6 +6,9 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.sql.*;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Local result set
@@ -19,35 +22,98 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
      * The values.
      */
     private LocalColumn[] columns;
-    private Object[][] rows;
+    private int[] columnTypes;
+    // Column indexes by lower case name
+    private Map<String, Integer> columnIndexes;
+    private RowGenerator rows;
+    private int rowCount;
+    private Object[] currentRow;
+    private int currentRowNumber;
     private boolean wasNull;
 
+    /**
+     * Builds result set rows on demand, so rows which are never read are never allocated
+     */
+    interface RowGenerator {
+        int getRowCount();
+
+        Object[] getRow(int index);
+    }
+
+    /**
+     * Rows which are already built
+     */
+    static class ArrayRows implements RowGenerator {
+        private final Object[][] rows;
+
+        ArrayRows(Object[][] rows)
+        {
+            this.rows = rows;
+        }
+
+        public int getRowCount()
+        {
+            return rows.length;
+        }
+
+        public Object[] getRow(int index)
+        {
+            return rows[index];
+        }
+    }
+
     LocalResultSet()
     {
         this(null, new LocalColumn[0], new Object[0][0]);
     }
 
     LocalResultSet(Statement statement, LocalColumn[] columns, Object[][] rows)
+    {
+        this(statement, columns, new ArrayRows(rows));
+    }
+
+    LocalResultSet(Statement statement, LocalColumn[] columns, RowGenerator rows)
     {
         this.statement = statement;
         this.columns = columns;
         this.rows = rows;
+        this.rowCount = rows.getRowCount();
+        this.columnTypes = new int[columns.length];
+        this.columnIndexes = new HashMap<String, Integer>(columns.length * 2);
+        for (int i = columns.length - 1; i >= 0; i--) {
+            columnTypes[i] = columns[i].getValueType();
+            // Go backwards so the first column wins if names are the same
+            columnIndexes.put(columns[i].getColumnName().toLowerCase(Locale.ENGLISH), i + 1);
+        }
     }
 
     private boolean hasMoreRows()
     {
-        return rowNumber < rows.length;
+        return rowNumber < rowCount;
+    }
+
+    private Object getValue(int index) throws SQLException
+    {
+        checkIndex(index);
+        if (rowNumber < 1 || rowNumber > rowCount) {
+            throw new SQLSyntaxErrorException("Bad row number: " + rowNumber);
+        }
+        if (currentRowNumber != rowNumber) {
+            currentRow = rows.getRow(rowNumber - 1);
+            currentRowNumber = rowNumber;
+        }
+        return currentRow[index - 1];
     }
 
     public boolean absolute(int rowNum) throws SQLException
     {
         rowNumber = rowNum;
-        return rowNumber > 0 && rowNumber <= rows.length;
+        return rowNumber > 0 && rowNumber <= rowCount;
     }
 
     public void afterLast() throws SQLException
     {
-        rowNumber = rows.length + 1;
+        rowNumber = rowCount + 1;
     }
 
     public void beforeFirst() throws SQLException
@@ -58,8 +124,8 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
     private void checkIndex(int index) throws SQLException
     {
         // 1 <= index <= size()
-        if (index < 1 || index > rows.length)
-            throw new SQLSyntaxErrorException("Bad row number: " + index);
+        if (index < 1 || index > columns.length)
+            throw new SQLSyntaxErrorException("Bad column index: " + index);
     }
 
     public void clearWarnings() throws SQLException
@@ -69,15 +135,18 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
     public void close() throws SQLException
     {
         columns = new LocalColumn[0];
-        rows = new Object[0][0];
+        columnIndexes.clear();
+        rows = new ArrayRows(new Object[0][0]);
+        rowCount = 0;
+        currentRow = null;
+        currentRowNumber = 0;
     }
 
     public int findColumn(String name) throws SQLException
     {
-        for (int i = 0; i < columns.length; i++) {
-            if (columns[i].getColumnName().equalsIgnoreCase(name)) {
-                return i + 1;
-            }
+        Integer index = columnIndexes.get(name.toLowerCase(Locale.ENGLISH));
+        if (index != null) {
+            return index;
         }
         throw new SQLSyntaxErrorException("Column '" + name + "' not found");
     }
@@ -85,13 +154,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
     public boolean first() throws SQLException
     {
         rowNumber = 1;
-        return rowNumber <= rows.length;
+        return rowNumber <= rowCount;
     }
 
     public BigDecimal getBigDecimal(int index) throws SQLException
     {
-        checkIndex(index);
-        return getBigDecimal(rows[rowNumber - 1][index - 1]);
+        return getBigDecimal(getValue(index));
     }
 
     /**
@@ -99,13 +167,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
      */
     public BigDecimal getBigDecimal(int index, int scale) throws SQLException
     {
-        checkIndex(index);
-        return getBigDecimal(rows[rowNumber - 1][index - 1]).setScale(scale);
+        return getBigDecimal(getValue(index)).setScale(scale);
     }
 
     public BigDecimal getBigDecimal(String name) throws SQLException
     {
-        return getBigDecimal(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getBigDecimal(getValue(findColumn(name)));
     }
 
     /**
@@ -113,7 +180,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
      */
     public BigDecimal getBigDecimal(String name, int scale) throws SQLException
     {
-        return getBigDecimal(rows[rowNumber - 1][findColumn(name) - 1]).setScale(scale);
+        return getBigDecimal(getValue(findColumn(name))).setScale(scale);
     }
 
     private BigDecimal getBigDecimal(Object value) throws SQLException
@@ -141,13 +208,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public BigInteger getBigInteger(int index) throws SQLException
     {
-        checkIndex(index);
-        return getBigInteger(rows[rowNumber - 1][index - 1]);
+        return getBigInteger(getValue(index));
     }
 
     public BigInteger getBigInteger(String name) throws SQLException
     {
-        return getBigInteger(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getBigInteger(getValue(findColumn(name)));
     }
 
     private BigInteger getBigInteger(Object value) throws SQLException
@@ -173,13 +239,17 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public boolean getBoolean(int index) throws SQLException
     {
-        checkIndex(index);
-        return getBoolean(rows[rowNumber - 1][index - 1]);
+        Object value = getValue(index);
+        if (columnTypes[index - 1] == Types.BOOLEAN && value instanceof Boolean) {
+            wasNull = false;
+            return (Boolean) value;
+        }
+        return getBoolean(value);
     }
 
     public boolean getBoolean(String name) throws SQLException
     {
-        return getBoolean(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getBoolean(findColumn(name));
     }
 
     private Boolean getBoolean(Object value) throws SQLException
@@ -205,13 +275,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public byte getByte(int index) throws SQLException
     {
-        checkIndex(index);
-        return getByte(rows[rowNumber - 1][index - 1]);
+        return getByte(getValue(index));
     }
 
     public byte getByte(String name) throws SQLException
     {
-        return getByte(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getByte(getValue(findColumn(name)));
     }
 
     private Byte getByte(Object value) throws SQLException
@@ -237,12 +306,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public byte[] getBytes(int index) throws SQLException
     {
-        return getBytes(rows[rowNumber - 1][index - 1]);
+        return getBytes(getValue(index));
     }
 
     public byte[] getBytes(String name) throws SQLException
     {
-        return getBytes(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getBytes(getValue(findColumn(name)));
     }
 
     private byte[] getBytes(Object value) throws SQLException
@@ -258,8 +327,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public Date getDate(int index) throws SQLException
     {
-        checkIndex(index);
-        return getDate(rows[rowNumber - 1][index - 1]);
+        return getDate(getValue(index));
     }
 
     public Date getDate(int index, Calendar calendar) throws SQLException
@@ -271,7 +339,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public Date getDate(String name) throws SQLException
     {
-        return getDate(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getDate(getValue(findColumn(name)));
     }
 
     public Date getDate(String name, Calendar calendar) throws SQLException
@@ -301,13 +369,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public double getDouble(int index) throws SQLException
     {
-        checkIndex(index);
-        return getDouble(rows[rowNumber - 1][index - 1]);
+        return getDouble(getValue(index));
     }
 
     public double getDouble(String name) throws SQLException
     {
-        return getDouble(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getDouble(getValue(findColumn(name)));
     }
 
     private Double getDouble(Object value) throws SQLException
@@ -347,13 +414,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public float getFloat(int index) throws SQLException
     {
-        checkIndex(index);
-        return getFloat(rows[rowNumber - 1][index - 1]);
+        return getFloat(getValue(index));
     }
 
     public float getFloat(String name) throws SQLException
     {
-        return getFloat(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getFloat(getValue(findColumn(name)));
     }
 
     private Float getFloat(Object value) throws SQLException
@@ -388,13 +454,17 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public int getInt(int index) throws SQLException
     {
-        checkIndex(index);
-        return getInt(rows[rowNumber - 1][index - 1]);
+        Object value = getValue(index);
+        if (columnTypes[index - 1] == Types.INTEGER && value instanceof Integer) {
+            wasNull = false;
+            return (Integer) value;
+        }
+        return getInt(value);
     }
 
     public int getInt(String name) throws SQLException
     {
-        return getInt(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getInt(findColumn(name));
     }
 
     private int getInt(Object value) throws SQLException
@@ -420,13 +490,17 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public long getLong(int index) throws SQLException
     {
-        checkIndex(index);
-        return getLong(rows[rowNumber - 1][index - 1]);
+        Object value = getValue(index);
+        if (columnTypes[index - 1] == Types.BIGINT && value instanceof Long) {
+            wasNull = false;
+            return (Long) value;
+        }
+        return getLong(value);
     }
 
     public long getLong(String name) throws SQLException
     {
-        return getLong(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getLong(findColumn(name));
     }
 
     private Long getLong(Object value) throws SQLException
@@ -459,13 +533,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public Object getObject(int index) throws SQLException
     {
-        checkIndex(index);
-        return getObject(rows[rowNumber - 1][index - 1]);
+        return getObject(getValue(index));
     }
 
     public Object getObject(String name) throws SQLException
     {
-        return getObject(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getObject(getValue(findColumn(name)));
     }
 
 
@@ -482,13 +555,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public RowId getRowId(int index) throws SQLException
     {
-        checkIndex(index);
-        return getRowId(rows[rowNumber - 1][index - 1]);
+        return getRowId(getValue(index));
     }
 
     public RowId getRowId(String name) throws SQLException
     {
-        return getRowId(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getRowId(getValue(findColumn(name)));
     }
 
     private RowId getRowId(Object value) throws SQLException
@@ -499,13 +571,12 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public short getShort(int index) throws SQLException
     {
-        checkIndex(index);
-        return getShort(rows[rowNumber - 1][index - 1]);
+        return getShort(getValue(index));
     }
 
     public short getShort(String name) throws SQLException
     {
-        return getShort(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getShort(getValue(findColumn(name)));
     }
 
     private Short getShort(Object value) throws SQLException
@@ -536,13 +607,17 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public String getString(int index) throws SQLException
     {
-        checkIndex(index);
-        return getString(rows[rowNumber - 1][index - 1]);
+        Object value = getValue(index);
+        if (columnTypes[index - 1] == Types.VARCHAR && value instanceof String) {
+            wasNull = false;
+            return (String) value;
+        }
+        return getString(value);
     }
 
     public String getString(String name) throws SQLException
     {
-        return getString(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getString(findColumn(name));
     }
 
     private String getString(Object value) throws SQLException
@@ -553,7 +628,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public Time getTime(int index) throws SQLException
     {
-        return getTime(rows[rowNumber - 1][index - 1]);
+        return getTime(getValue(index));
     }
 
     public Time getTime(int index, Calendar calendar) throws SQLException
@@ -565,13 +640,13 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public Time getTime(String name) throws SQLException
     {
-        return getTime(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getTime(getValue(findColumn(name)));
     }
 
     public Time getTime(String name, Calendar calendar) throws SQLException
     {
         // silently ignore the Calendar argument; its a hint we do not need
-        return getTime(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getTime(getValue(findColumn(name)));
     }
 
     private Time getTime(Object value) throws SQLException
@@ -595,26 +670,25 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public Timestamp getTimestamp(int index) throws SQLException
     {
-        checkIndex(index);
-        return getTimestamp(rows[rowNumber - 1][index - 1]);
+        return getTimestamp(getValue(index));
     }
 
     public Timestamp getTimestamp(int index, Calendar calendar) throws SQLException
     {
         checkIndex(index);
         // silently ignore the Calendar argument; its a hint we do not need
-        return getTimestamp(rows[rowNumber - 1][index - 1]);
+        return getTimestamp(getValue(index));
     }
 
     public Timestamp getTimestamp(String name) throws SQLException
     {
-        return getTimestamp(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getTimestamp(getValue(findColumn(name)));
     }
 
     public Timestamp getTimestamp(String name, Calendar calendar) throws SQLException
     {
         // silently ignore the Calendar argument; its a hint we do not need
-        return getTimestamp(rows[rowNumber - 1][findColumn(name) - 1]);
+        return getTimestamp(getValue(findColumn(name)));
     }
 
     private Timestamp getTimestamp(Object value) throws SQLException
@@ -660,7 +734,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public boolean isAfterLast() throws SQLException
     {
-        return rowNumber > rows.length;
+        return rowNumber > rowCount;
     }
 
     public boolean isBeforeFirst() throws SQLException
@@ -680,7 +754,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public boolean isLast() throws SQLException
     {
-        return rowNumber > 0 && rowNumber == rows.length;
+        return rowNumber > 0 && rowNumber == rowCount;
     }
 
     public boolean isWrapperFor(Class<?> clazz) throws SQLException
@@ -690,7 +764,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
 
     public boolean last() throws SQLException
     {
-        rowNumber = rows.length;
+        rowNumber = rowCount;
         return rowNumber > 0;
     }
 
@@ -715,7 +789,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
     public boolean relative(int count) throws SQLException
     {
         rowNumber += count;
-        return rowNumber > 0 && rowNumber <= rows.length;
+        return rowNumber > 0 && rowNumber <= rowCount;
     }
 
     public void setFetchDirection(int direction) throws SQLException
@@ -759,7 +833,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
         public String getColumnClassName(int column) throws SQLException
         {
             checkIndex(column);
-            Object value = rows[rowNumber - 1][column - 1];
+            Object value = rowNumber > 0 && rowNumber <= rowCount ? getValue(column) : null;
             return value == null ? Object.class.getName() : value.getClass().getName();
         }
 
@@ -795,7 +869,7 @@ class LocalResultSet extends AbstractResultSet implements ResultSet {
         // Spec says "database specific type name". For Cassandra this means the abstract type.
         public String getColumnTypeName(int column) throws SQLException
         {
-            Object value = rows[rowNumber - 1][column - 1];
+            Object value = rowNumber > 0 && rowNumber <= rowCount ? getValue(column) : null;
             return value == null ? Object.class.getName() : value.getClass().getSimpleName();
         }
 
@@ -0,0 +1,115 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.util.regex.Pattern;
+
+/**
+ * Compiled name pattern of DatabaseMetaData methods.
+ * LIKE patterns ('%' and '_' wildcards, '\' escape) are matched case insensitive. Patterns without wildcards
+ * are compared as plain strings and expose the name for index lookups.
+ */
+class NamePattern {
+
+    private static final NamePattern ANY = new NamePattern(null, null, false);
+
+    private final String name;
+    private final Pattern pattern;
+    private final boolean caseSensitive;
+
+    private NamePattern(String name, Pattern pattern, boolean caseSensitive)
+    {
+        this.name = name;
+        this.pattern = pattern;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * Compiles LIKE pattern. Null or empty pattern matches everything.
+     */
+    static NamePattern like(String like)
+    {
+        if (like == null || like.isEmpty() || like.equals("%")) {
+            return ANY;
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        boolean wildcards = false;
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                literal.append(like.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                wildcards = true;
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!wildcards) {
+            return new NamePattern(literal.toString(), null, false);
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return new NamePattern(null, Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE), false);
+    }
+
+    /**
+     * Exact name. Null or empty name matches everything.
+     */
+    static NamePattern name(String name)
+    {
+        if (name == null || name.isEmpty()) {
+            return ANY;
+        }
+        return new NamePattern(name, null, true);
+    }
+
+    boolean isAny()
+    {
+        return this == ANY;
+    }
+
+    /**
+     * Name matched by the pattern or null if pattern has wildcards
+     */
+    String getName()
+    {
+        return name;
+    }
+
+    boolean matches(String value)
+    {
+        if (this == ANY) {
+            return true;
+        }
+        if (name != null) {
+            return caseSensitive ? name.equals(value) : name.equalsIgnoreCase(value);
+        }
+        return pattern.matcher(value).matches();
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable encode buffer for fixed-width bind values.
+ * Values are written one after another into a shared chunk and handed out as slices, so binding
+ * a primitive parameter doesn't allocate a buffer of its own. Space is never reused: a slice handed
+ * out earlier may still be referenced (by a batch or a query cache key) and must not change when the
+ * parameter is bound again. A new chunk is started when the current one is full.
+ */
+class ParameterSlab {
+
+    static final int CHUNK_SIZE = 256;
+
+    private ByteBuffer chunk;
+
+    ParameterSlab()
+    {
+        chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    ByteBuffer putBoolean(boolean value)
+    {
+        ByteBuffer slot = slot(1);
+        slot.put(0, value ? (byte) 1 : (byte) 0);
+        return slot;
+    }
+
+    ByteBuffer putInt(int value)
+    {
+        ByteBuffer slot = slot(4);
+        slot.putInt(0, value);
+        return slot;
+    }
+
+    ByteBuffer putLong(long value)
+    {
+        ByteBuffer slot = slot(8);
+        slot.putLong(0, value);
+        return slot;
+    }
+
+    ByteBuffer putFloat(float value)
+    {
+        ByteBuffer slot = slot(4);
+        slot.putFloat(0, value);
+        return slot;
+    }
+
+    ByteBuffer putDouble(double value)
+    {
+        ByteBuffer slot = slot(8);
+        slot.putDouble(0, value);
+        return slot;
+    }
+
+    /**
+     * Writes value in the IntegerType (varint) format
+     */
+    ByteBuffer putVarint(long value)
+    {
+        ByteBuffer slot = slot(CassandraUtils.varintSize(value));
+        CassandraUtils.writeVarint(slot, value);
+        return slot;
+    }
+
+    private ByteBuffer slot(int size)
+    {
+        if (chunk.remaining() < size) {
+            // Slices handed out earlier still reference the old chunk and stay valid
+            chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        }
+        ByteBuffer slot = chunk.slice();
+        slot.limit(size);
+        chunk.position(chunk.position() + size);
+        return slot;
+    }
+
+}
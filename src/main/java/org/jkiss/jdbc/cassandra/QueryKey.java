@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identity of a read query: keyspace, normalized CQL text, row limit and bind values.
+ * Bind values are copied so the key doesn't change when the statement buffers are reused.
+ */
+final class QueryKey {
+
+    private final String keyspace;
+    private final String cql;
+    private final int maxRows;
+    private final List<ByteBuffer> values;
+    private final int hashCode;
+
+    QueryKey(String keyspace, String cql, int maxRows, List<ByteBuffer> values)
+    {
+        this.keyspace = keyspace;
+        this.cql = normalize(cql);
+        this.maxRows = maxRows;
+        if (values == null || values.isEmpty()) {
+            this.values = Collections.emptyList();
+        } else {
+            List<ByteBuffer> copy = new ArrayList<ByteBuffer>(values.size());
+            for (ByteBuffer value : values) {
+                copy.add(value == null ? null : copy(value));
+            }
+            this.values = copy;
+        }
+        int result = keyspace == null ? 0 : keyspace.hashCode();
+        result = 31 * result + this.cql.hashCode();
+        result = 31 * result + maxRows;
+        result = 31 * result + this.values.hashCode();
+        this.hashCode = result;
+    }
+
+    String getKeyspace()
+    {
+        return keyspace;
+    }
+
+    String getCql()
+    {
+        return cql;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof QueryKey)) {
+            return false;
+        }
+        QueryKey key = (QueryKey) obj;
+        return hashCode == key.hashCode &&
+            maxRows == key.maxRows &&
+            cql.equals(key.cql) &&
+            (keyspace == null ? key.keyspace == null : keyspace.equals(key.keyspace)) &&
+            values.equals(key.values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return keyspace + ": " + cql + (values.isEmpty() ? "" : " " + values.size() + " values");
+    }
+
+    private static ByteBuffer copy(ByteBuffer value)
+    {
+        ByteBuffer copy = ByteBuffer.allocate(value.remaining());
+        copy.put(value.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    /**
+     * Collapses whitespace outside of string literals and removes trailing semicolon
+     */
+    static String normalize(String cql)
+    {
+        StringBuilder result = new StringBuilder(cql.length());
+        boolean quoted = false;
+        boolean space = false;
+        for (int i = 0; i < cql.length(); i++) {
+            char c = cql.charAt(i);
+            if (quoted) {
+                result.append(c);
+                if (c == '\'') {
+                    quoted = false;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space && result.length() > 0) {
+                    result.append(' ');
+                }
+                space = false;
+                result.append(c);
+                if (c == '\'') {
+                    quoted = true;
+                }
+            }
+        }
+        int length = result.length();
+        while (length > 0 && (result.charAt(length - 1) == ';' || result.charAt(length - 1) == ' ')) {
+            length--;
+        }
+        result.setLength(length);
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads rows of one token range page by page with get_range_slices.
+ * Pages are requested from the range replicas. On failure the page is retried on the next replica,
+ * reading continues after the last received key so rows are never returned twice.
+ * As a row source it fetches the next page when the current one is consumed.
+ */
+class RangeReader implements RowSource {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.wrap(new byte[0]);
+
+    private final CassandraConnection connection;
+    private final CassandraSplit split;
+    private final ColumnParent columnParent;
+    private final SlicePredicate predicate;
+    private final ByteBuffer keyAlias;
+    private final List<ByteBuffer> names;
+    private final int pageSize;
+    private final int maxRetries;
+    private final ConsistencyLevel consistencyLevel;
+
+    private ClientPool.PooledClient pooled;
+    private int endpointIndex;
+    private ByteBuffer lastKey;
+    private boolean finished;
+    private Iterator<CqlRow> page;
+
+    RangeReader(CassandraConnection connection, CassandraSplit split, CfDef cfDef, int pageSize, int columnLimit, int maxRetries,
+                ConsistencyLevel consistencyLevel) throws SQLException
+    {
+        this(connection, split, getKeyAlias(cfDef), new SlicePredicate().setSlice_range(new SliceRange(EMPTY, EMPTY, false, columnLimit)),
+            null, pageSize, maxRetries, consistencyLevel);
+    }
+
+    /**
+     * @param names selected column names (null for the row key) or null if predicate is a slice range
+     */
+    RangeReader(CassandraConnection connection, CassandraSplit split, ByteBuffer keyAlias, SlicePredicate predicate, List<ByteBuffer> names,
+                int pageSize, int maxRetries, ConsistencyLevel consistencyLevel)
+    {
+        this.connection = connection;
+        this.split = split;
+        this.keyAlias = keyAlias;
+        this.predicate = predicate;
+        this.names = names;
+        this.pageSize = pageSize;
+        this.maxRetries = maxRetries;
+        this.consistencyLevel = consistencyLevel;
+        this.columnParent = new ColumnParent(split.getColumnFamily());
+    }
+
+    private static ByteBuffer getKeyAlias(CfDef cfDef) throws SQLException
+    {
+        try {
+            return ByteBuffer.wrap(CassandraUtils.getRawKeyAlias(cfDef));
+        } catch (CharacterCodingException e) {
+            throw new SQLNonTransientException(e);
+        }
+    }
+
+    CassandraSplit getSplit()
+    {
+        return split;
+    }
+
+    /**
+     * Reads next page of rows. Rows without live columns are skipped.
+     *
+     * @return rows or null if the whole range was read
+     */
+    List<CqlRow> nextPage() throws SQLException
+    {
+        if (finished) {
+            return null;
+        }
+        connection.startRetryableCall();
+        for (int attempt = 1; ; attempt++) {
+            Exception cause;
+            SQLException sqlError;
+            try {
+                if (pooled == null) {
+                    pooled = connection.getClientPool().borrow(nextEndpoint(), split.getKeyspace());
+                }
+                // Start key is inclusive, so request one more row and skip the last row of the previous page
+                KeyRange range = new KeyRange(lastKey == null ? pageSize : pageSize + 1);
+                if (lastKey == null) {
+                    range.setStart_token(split.getStartToken());
+                } else {
+                    range.setStart_key(lastKey);
+                }
+                range.setEnd_token(split.getEndToken());
+                List<KeySlice> slices = pooled.getClient().get_range_slices(columnParent, predicate, range, consistencyLevel);
+                if (slices.size() < range.getCount()) {
+                    finished = true;
+                }
+                List<CqlRow> rows = new ArrayList<CqlRow>(slices.size());
+                for (KeySlice slice : slices) {
+                    if (lastKey != null && lastKey.equals(slice.bufferForKey())) {
+                        continue;
+                    }
+                    CqlRow row = DirectRangeScan.makeRow(slice, keyAlias, names);
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                }
+                if (!slices.isEmpty()) {
+                    lastKey = slices.get(slices.size() - 1).bufferForKey();
+                }
+                return rows;
+            } catch (InvalidRequestException e) {
+                throw new SQLSyntaxErrorException(e.getWhy(), e);
+            } catch (UnavailableException e) {
+                switchReplica();
+                cause = e;
+                sqlError = new SQLNonTransientConnectionException(ErrorMessages.NO_SERVER, e);
+            } catch (TimedOutException e) {
+                switchReplica();
+                cause = e;
+                sqlError = new SQLTransientConnectionException(e);
+            } catch (TException e) {
+                connection.getClientPool().invalidate(pooled);
+                pooled = null;
+                cause = e;
+                sqlError = new SQLNonTransientConnectionException(e);
+            } catch (SQLNonTransientConnectionException e) {
+                // Replica is down
+                cause = e;
+                sqlError = e;
+            }
+            if (attempt > maxRetries || !connection.prepareCallRetry(cause, attempt, true)) {
+                throw sqlError;
+            }
+        }
+    }
+
+    public boolean hasNext() throws SQLException
+    {
+        while (page == null || !page.hasNext()) {
+            List<CqlRow> rows = nextPage();
+            if (rows == null) {
+                return false;
+            }
+            page = rows.iterator();
+        }
+        return true;
+    }
+
+    public CqlRow next() throws SQLException
+    {
+        if (!hasNext()) {
+            throw new SQLNonTransientException("No more rows");
+        }
+        return page.next();
+    }
+
+    public void close()
+    {
+        page = null;
+        finished = true;
+        if (pooled != null) {
+            connection.getClientPool().release(pooled);
+            pooled = null;
+        }
+    }
+
+    /**
+     * Returns the client of a replica which failed to serve the page, the next attempt borrows one of the next replica
+     */
+    private void switchReplica()
+    {
+        if (pooled != null) {
+            connection.getClientPool().release(pooled);
+            pooled = null;
+        }
+    }
+
+    private String nextEndpoint()
+    {
+        List<String> endpoints = split.getEndpoints();
+        if (endpoints == null || endpoints.isEmpty()) {
+            return connection.getHost();
+        }
+        return endpoints.get(endpointIndex++ % endpoints.size());
+    }
+
+}
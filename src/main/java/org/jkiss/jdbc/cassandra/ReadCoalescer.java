@@ -0,0 +1,420 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+import org.jkiss.jdbc.cassandra.types.AbstractJdbcType;
+import org.jkiss.jdbc.cassandra.types.TypesMap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Coalesces concurrent single key reads into multiget_slice calls.
+ * <p/>
+ * Queries like <code>SELECT a, b FROM cf WHERE KEY = 'k'</code> issued by different threads for the same
+ * column family and column list are collected during a short window (or until the batch is full) and sent
+ * as one request. The first thread of a batch waits for the window and executes it, other threads wait for its result.
+ * Results are built the way CQL 2 builds them: every key produces a row, missing named columns have no value.
+ * CQL 3 queries are never coalesced (one partition may produce several rows there).
+ * <p/>
+ * Batches are executed with dedicated clients from the connection client pool, and so are plain (not prepared)
+ * reads which can't be coalesced. Only such reads may be run concurrently on one connection: writes, prepared
+ * statements and metadata calls use the single connection client.
+ */
+class ReadCoalescer {
+
+    private static final Pattern KEY_SELECT_PATTERN = Pattern.compile(
+        "\\s*SELECT\\s+(.+?)\\s+FROM\\s+([\\w\\.]+)(?:\\s+USING\\s+CONSISTENCY\\s+(\\w+))?\\s+WHERE\\s+(\\w+)\\s*=\\s*('(?:[^']|'')*'|\\?|[\\w\\-\\.]+)\\s*;?\\s*",
+        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PROJECTION_PATTERN = Pattern.compile("\\*|(?:\\w+|'(?:[^']|'')*')(?:\\s*,\\s*(?:\\w+|'(?:[^']|'')*'))*");
+    private static final ByteBuffer EMPTY = ByteBuffer.wrap(new byte[0]);
+    private static final int MAX_COLUMNS = 10000;
+    private static final int MAX_PARSED_QUERIES = 1000;
+
+    /**
+     * Parsed single key query
+     */
+    private static class KeyQuery {
+        final String source;
+        final List<String> columns;
+        final String keyColumn;
+        final String keyLiteral;
+        final ConsistencyLevel consistencyLevel;
+
+        KeyQuery(String source, List<String> columns, String keyColumn, String keyLiteral, ConsistencyLevel consistencyLevel)
+        {
+            this.source = source;
+            this.columns = columns;
+            this.keyColumn = keyColumn;
+            this.keyLiteral = keyLiteral;
+            this.consistencyLevel = consistencyLevel;
+        }
+    }
+
+    private static final KeyQuery NOT_COALESCED = new KeyQuery(null, null, null, null, null);
+
+    private static class Batch {
+        final String keyspace;
+        final CfDef cfDef;
+        final KeyQuery query;
+        final List<ByteBuffer> keys = new ArrayList<ByteBuffer>();
+        boolean sealed;
+        boolean done;
+        Map<ByteBuffer, List<ColumnOrSuperColumn>> rows;
+        Exception error;
+
+        Batch(String keyspace, CfDef cfDef, KeyQuery query)
+        {
+            this.keyspace = keyspace;
+            this.cfDef = cfDef;
+            this.query = query;
+        }
+    }
+
+    private final CassandraConnection connection;
+    private final long window;
+    private final int batchSize;
+    private final boolean fallback;
+
+    private final Map<String, KeyQuery> parsedQueries = new ConcurrentHashMap<String, KeyQuery>();
+    private final Map<String, CfDef> cfDefs = new ConcurrentHashMap<String, CfDef>();
+    private volatile int schemaVersion;
+    private final Map<String, Batch> pending = new HashMap<String, Batch>();
+
+    ReadCoalescer(CassandraConnection connection, long window, int batchSize, boolean fallback)
+    {
+        this.connection = connection;
+        this.window = window;
+        this.batchSize = batchSize;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Reads the row if query is a single key read.
+     *
+     * @param keyspace  current keyspace
+     * @param cql       query
+     * @param bindValue key value for prepared query with a key marker
+     * @return query result or null if the query can't be coalesced or batch failed and fallback is enabled
+     */
+    CqlResult read(String keyspace, String cql, ByteBuffer bindValue)
+        throws InvalidRequestException, UnavailableException, TimedOutException, TException
+    {
+        if (connection.isCql3()) {
+            return null;
+        }
+        KeyQuery query = parse(cql);
+        if (query == NOT_COALESCED || (query.keyLiteral == null) == (bindValue == null)) {
+            return null;
+        }
+        String sourceKeyspace = CassandraUtils.determineCurrentSource(query.source, true);
+        if (sourceKeyspace != null) {
+            keyspace = sourceKeyspace;
+        }
+        CfDef cfDef = getCfDef(keyspace, CassandraUtils.determineCurrentSource(query.source, false));
+        if (cfDef == null || !isKeyAlias(cfDef, query.keyColumn) || !hasRegularColumns(cfDef, query.columns)) {
+            return null;
+        }
+        ByteBuffer key = bindValue;
+        if (key == null) {
+            try {
+                key = HandleObjects.encodeValue(query.keyLiteral, TypesMap.getTypeForComparator(cfDef.getKey_validation_class()));
+            } catch (SQLException e) {
+                // Let the server report bad key
+                return null;
+            }
+        }
+
+        String groupId = keyspace + "." + cfDef.getName() + ":" + query.columns + ":" + query.consistencyLevel;
+        Batch batch;
+        boolean leader = false;
+        synchronized (this) {
+            batch = pending.get(groupId);
+            if (batch == null) {
+                batch = new Batch(keyspace, cfDef, query);
+                pending.put(groupId, batch);
+                leader = true;
+            }
+            batch.keys.add(key);
+            if (batch.keys.size() >= batchSize) {
+                pending.remove(groupId);
+                batch.sealed = true;
+                notifyAll();
+            }
+        }
+        try {
+            if (leader) {
+                synchronized (this) {
+                    long deadline = System.currentTimeMillis() + window;
+                    for (long rest = window; !batch.sealed && rest > 0; rest = deadline - System.currentTimeMillis()) {
+                        wait(rest);
+                    }
+                    if (!batch.sealed) {
+                        pending.remove(groupId);
+                        batch.sealed = true;
+                    }
+                }
+                execute(batch);
+            } else {
+                synchronized (batch) {
+                    while (!batch.done) {
+                        batch.wait();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (leader) {
+                execute(batch);
+            }
+            return null;
+        }
+
+        if (batch.error != null) {
+            if (fallback) {
+                return null;
+            }
+            if (batch.error instanceof InvalidRequestException) throw (InvalidRequestException) batch.error;
+            if (batch.error instanceof UnavailableException) throw (UnavailableException) batch.error;
+            if (batch.error instanceof TimedOutException) throw (TimedOutException) batch.error;
+            if (batch.error instanceof TException) throw (TException) batch.error;
+            throw new TException(batch.error);
+        }
+        return makeResult(batch, key);
+    }
+
+    private void execute(Batch batch)
+    {
+        ClientPool pool = connection.getClientPool();
+        ClientPool.PooledClient pooled = null;
+        try {
+            pooled = pool.borrow(connection.getHost(), batch.keyspace);
+            SlicePredicate predicate = new SlicePredicate();
+            if (batch.query.columns == null) {
+                predicate.setSlice_range(new SliceRange(EMPTY, EMPTY, false, MAX_COLUMNS));
+            } else {
+                AbstractJdbcType<?> nameType = TypesMap.getTypeForComparator(batch.cfDef.getComparator_type());
+                List<ByteBuffer> names = new ArrayList<ByteBuffer>();
+                for (String column : batch.query.columns) {
+                    if (!isKeyAlias(batch.cfDef, column)) {
+                        names.add(HandleObjects.encodeValue(column, nameType));
+                    }
+                }
+                predicate.setColumn_names(names);
+            }
+            List<ByteBuffer> keys = new ArrayList<ByteBuffer>(new LinkedHashSet<ByteBuffer>(batch.keys));
+            batch.rows = pooled.getClient().multiget_slice(keys, new ColumnParent(batch.cfDef.getName()), predicate,
+                batch.query.consistencyLevel == null ? ConsistencyLevel.ONE : batch.query.consistencyLevel);
+            pool.release(pooled);
+        } catch (TException e) {
+            if (pooled != null) {
+                pool.invalidate(pooled);
+            }
+            batch.error = e;
+        } catch (Exception e) {
+            if (pooled != null) {
+                pool.release(pooled);
+            }
+            batch.error = e;
+        } finally {
+            synchronized (batch) {
+                batch.done = true;
+                batch.notifyAll();
+            }
+        }
+    }
+
+    private CqlResult makeResult(Batch batch, ByteBuffer key) throws TException
+    {
+        CqlResult result = new CqlResult(CqlResultType.ROWS);
+        result.setRows(new ArrayList<CqlRow>(1));
+        ByteBuffer keyAlias;
+        try {
+            result.setSchema(CassandraUtils.makeCqlMetadata(batch.cfDef));
+            keyAlias = ByteBuffer.wrap(CassandraUtils.getRawKeyAlias(batch.cfDef));
+        } catch (CharacterCodingException e) {
+            throw new TException(e);
+        }
+        List<ColumnOrSuperColumn> columns = batch.rows.get(key);
+        if (columns == null) {
+            columns = Collections.emptyList();
+        }
+        List<Column> rowColumns = new ArrayList<Column>(columns.size() + 1);
+        if (batch.query.columns == null) {
+            rowColumns.add(new Column(keyAlias).setValue(key).setTimestamp(-1));
+            for (ColumnOrSuperColumn cosc : columns) {
+                Column column = CassandraUtils.getColumn(cosc);
+                if (column != null) {
+                    rowColumns.add(column);
+                }
+            }
+        } else {
+            // Keep requested columns order
+            Map<ByteBuffer, Column> columnMap = new HashMap<ByteBuffer, Column>();
+            for (ColumnOrSuperColumn cosc : columns) {
+                Column column = CassandraUtils.getColumn(cosc);
+                if (column != null) {
+                    columnMap.put(column.bufferForName(), column);
+                }
+            }
+            AbstractJdbcType<?> nameType = TypesMap.getTypeForComparator(batch.cfDef.getComparator_type());
+            for (String name : batch.query.columns) {
+                if (isKeyAlias(batch.cfDef, name)) {
+                    rowColumns.add(new Column(keyAlias).setValue(key).setTimestamp(-1));
+                } else {
+                    try {
+                        ByteBuffer columnName = HandleObjects.encodeValue(name, nameType);
+                        Column column = columnMap.get(columnName);
+                        // Missing column is returned without value
+                        rowColumns.add(column != null ? column : new Column(columnName));
+                    } catch (SQLException e) {
+                        throw new TException(e);
+                    }
+                }
+            }
+        }
+        result.getRows().add(new CqlRow(key, rowColumns));
+        return result;
+    }
+
+    private CfDef getCfDef(String keyspace, String columnFamily) throws TException
+    {
+        int version = connection.getSchemaVersion();
+        if (version != schemaVersion) {
+            // Schema was changed through the connection
+            cfDefs.clear();
+            schemaVersion = version;
+        }
+        String cfId = keyspace + "." + columnFamily;
+        CfDef cfDef = cfDefs.get(cfId);
+        if (cfDef == null) {
+            ClientPool pool = connection.getClientPool();
+            ClientPool.PooledClient pooled;
+            try {
+                pooled = pool.borrow(connection.getHost(), keyspace);
+            } catch (SQLException e) {
+                return null;
+            }
+            try {
+                for (CfDef cf : pooled.getClient().describe_keyspace(keyspace).getCf_defs()) {
+                    if (cf.getName().equals(columnFamily)) {
+                        cfDef = cf;
+                        cfDefs.put(cfId, cfDef);
+                        break;
+                    }
+                }
+                pool.release(pooled);
+            } catch (NotFoundException e) {
+                pool.release(pooled);
+            } catch (InvalidRequestException e) {
+                pool.release(pooled);
+            } catch (TException e) {
+                pool.invalidate(pooled);
+                throw e;
+            }
+        }
+        return cfDef;
+    }
+
+    private KeyQuery parse(String cql)
+    {
+        KeyQuery query = parsedQueries.get(cql);
+        if (query != null) {
+            return query;
+        }
+        query = NOT_COALESCED;
+        Matcher matcher = KEY_SELECT_PATTERN.matcher(cql);
+        if (matcher.matches()) {
+            String projection = matcher.group(1).trim();
+            String keyColumn = matcher.group(4);
+            String keyTerm = matcher.group(5);
+            String consistency = matcher.group(3);
+            ConsistencyLevel consistencyLevel = null;
+            for (ConsistencyLevel level : ConsistencyLevel.values()) {
+                if (level.name().equalsIgnoreCase(consistency)) {
+                    consistencyLevel = level;
+                }
+            }
+            // Bad consistency level is reported by the server
+            if (PROJECTION_PATTERN.matcher(projection).matches() && (consistency == null || consistencyLevel != null)) {
+                List<String> columns = null;
+                if (!projection.equals("*")) {
+                    columns = new ArrayList<String>();
+                    for (String column : projection.split("\\s*,\\s*")) {
+                        columns.add(unquote(column));
+                    }
+                }
+                query = new KeyQuery(
+                    matcher.group(2),
+                    columns,
+                    keyColumn,
+                    keyTerm.equals("?") ? null : unquote(keyTerm),
+                    consistencyLevel);
+            }
+        }
+        if (parsedQueries.size() >= MAX_PARSED_QUERIES) {
+            parsedQueries.clear();
+        }
+        parsedQueries.put(cql, query);
+        return query;
+    }
+
+    private static boolean isKeyAlias(CfDef cfDef, String name)
+    {
+        try {
+            return name.equalsIgnoreCase(CassandraConstants.DEFAULT_KEY_ALIAS) || name.equalsIgnoreCase(CassandraUtils.getKeyAlias(cfDef));
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks that projection has something besides the row key
+     */
+    private static boolean hasRegularColumns(CfDef cfDef, List<String> columns)
+    {
+        if (columns == null) {
+            return true;
+        }
+        for (String column : columns) {
+            if (!isKeyAlias(cfDef, column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String unquote(String term)
+    {
+        if (term.length() >= 2 && term.startsWith("'") && term.endsWith("'")) {
+            return term.substring(1, term.length() - 1).replace("''", "'");
+        }
+        return term;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+/**
+ * Limits retries to a share of executed queries.
+ * Every query adds ratio tokens to the budget (up to the limit), every retry takes one token.
+ * When the cluster is overloaded and most queries fail the budget is exhausted quickly and retries stop.
+ */
+class RetryBudget {
+
+    static final int DEFAULT_MIN_TOKENS = 10;
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    /**
+     * @param ratio     retries allowed per query
+     * @param minTokens retries allowed before any queries are made and the budget limit
+     */
+    RetryBudget(double ratio, int minTokens)
+    {
+        this.ratio = ratio;
+        this.maxTokens = minTokens;
+        this.tokens = minTokens;
+    }
+
+    synchronized void deposit()
+    {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    synchronized boolean withdraw()
+    {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+/**
+ * Decides whether a query failed with TimedOutException or UnavailableException is executed again.
+ * Set it with the retryPolicy connection property (class name with public no-arg constructor)
+ * or with {@link CassandraConnection#setRetryPolicy(RetryPolicy)}.
+ */
+public interface RetryPolicy {
+
+    /**
+     * Returns delay before the next attempt.
+     *
+     * @param error      TimedOutException or UnavailableException; for Thrift calls made by the driver itself
+     *                   (range scans, column pages, bulk loads) also transport and connection errors
+     * @param attempt    number of failed attempts (1 after the first failure)
+     * @param idempotent whether the statement may be executed more than once
+     * @return delay in milliseconds or negative value to give up
+     */
+    long getRetryDelay(Exception error, int attempt, boolean idempotent);
+
+    /**
+     * Whether the next attempt should go to another cluster host
+     */
+    boolean isRetryOnOtherHost(Exception error, int attempt);
+
+}
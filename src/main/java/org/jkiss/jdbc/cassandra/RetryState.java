@@ -0,0 +1,78 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import java.sql.SQLWarning;
+
+/**
+ * Retry information of one statement execution
+ */
+class RetryState {
+
+    private final boolean idempotent;
+    private String host;
+    private int retries;
+
+    RetryState(boolean idempotent)
+    {
+        this.idempotent = idempotent;
+    }
+
+    boolean isIdempotent()
+    {
+        return idempotent;
+    }
+
+    /**
+     * Host of the next attempt. Null means the connection host.
+     */
+    String getHost()
+    {
+        return host;
+    }
+
+    void setHost(String host)
+    {
+        this.host = host;
+    }
+
+    int getRetries()
+    {
+        return retries;
+    }
+
+    void addRetry()
+    {
+        retries++;
+    }
+
+    /**
+     * Warning reported by the statement when the query was retried
+     */
+    SQLWarning makeWarning()
+    {
+        if (retries == 0) {
+            return null;
+        }
+        return new SQLWarning("Query was retried " + retries + " time(s)" + (host == null ? "" : ", last attempt on " + host));
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.CqlRow;
+
+import java.sql.SQLException;
+
+/**
+ * Source of result set rows.
+ * Unlike plain iterator may fetch rows lazily from the server and fail with SQLException.
+ */
+interface RowSource {
+
+    boolean hasNext() throws SQLException;
+
+    CqlRow next() throws SQLException;
+
+    /**
+     * Releases resources held by the source (background threads, borrowed clients)
+     */
+    void close();
+
+}
@@ -0,0 +1,457 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.CqlRow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Random access storage of fetched rows used by scrollable result sets.
+ * Rows are kept serialized (key, then name, value, timestamp and ttl of every column) and decoded back to CqlRow
+ * on every access. Rows go to the primary segment (heap array or off-heap direct pages) until it reaches
+ * the budget, the following rows are appended to a temporary file which is read through memory mapped regions.
+ * With off-heap and mmap storage the row offset index is kept off-heap too, so heap use of the stored rows
+ * doesn't depend on the result size. This covers rows the store holds only: a shared query result (result cache,
+ * single-flight) stays on heap as received.
+ */
+class RowStore {
+
+    /**
+     * Where the primary segment keeps row data
+     */
+    enum Storage {
+        HEAP,
+        OFFHEAP,
+        MMAP
+    }
+
+    static final long DEFAULT_HEAP_BUDGET = 16 * 1024 * 1024;
+    // Some VMs can't allocate arrays of Integer.MAX_VALUE elements
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final int PAGE_SIZE = 1024 * 1024;
+    private static final int MAP_REGION_SIZE = 16 * 1024 * 1024;
+    private static final int FLAG_TIMESTAMP = 1;
+    private static final int FLAG_TTL = 2;
+
+    private final long budget;
+    private Segment primary;
+    private FileSegment spill;
+    // Row start offsets. Offsets past the primary segment size point to the spill file
+    private Segment index;
+    private int rowCount;
+    private long size;
+    // Error which left segments and index inconsistent
+    private IOException failure;
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(1024);
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(8);
+
+    /**
+     * @param storage primary segment storage. With MMAP storage all rows go to the file.
+     * @param budget  primary segment size limit in bytes
+     */
+    RowStore(Storage storage, long budget)
+    {
+        switch (storage) {
+            case HEAP:
+                this.budget = Math.min(budget, MAX_ARRAY_SIZE);
+                this.primary = new HeapSegment(this.budget);
+                this.index = new HeapSegment(Integer.MAX_VALUE);
+                break;
+            case OFFHEAP:
+                this.budget = budget;
+                this.primary = new DirectSegment();
+                this.index = new DirectSegment();
+                break;
+            default:
+                this.budget = 0;
+                this.primary = new HeapSegment(0);
+                this.index = new DirectSegment();
+                break;
+        }
+    }
+
+    int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Size of stored rows in bytes
+     */
+    long getSize()
+    {
+        return size;
+    }
+
+    boolean isSpilled()
+    {
+        return spill != null;
+    }
+
+    /**
+     * Appends the row. If it fails the store keeps rows added before but rejects new ones.
+     */
+    void add(CqlRow row) throws SQLException
+    {
+        if (failure != null) {
+            throw new SQLException("Result rows storage failed earlier", failure);
+        }
+        ByteBuffer data = encode(row);
+        int length = data.remaining();
+        try {
+            if (spill == null && primary.size() + length <= budget) {
+                primary.append(data);
+            } else {
+                if (spill == null) {
+                    spill = new FileSegment();
+                }
+                spill.append(data);
+            }
+            indexBuffer.clear();
+            indexBuffer.putLong(0, size);
+            index.append(indexBuffer);
+        } catch (IOException e) {
+            // Part of the row may be written already
+            failure = e;
+            throw new SQLException("Can't store result rows", e);
+        }
+        rowCount++;
+        size += length;
+    }
+
+    /**
+     * Decodes row with the specified index (0-based)
+     */
+    CqlRow get(int row) throws SQLException
+    {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException(String.valueOf(row));
+        }
+        long offset = getOffset(row);
+        int length = (int) ((row + 1 < rowCount ? getOffset(row + 1) : size) - offset);
+        long primarySize = primary.size();
+        try {
+            if (offset < primarySize) {
+                return decode(primary.read(offset, length));
+            }
+            return decode(spill.read(offset - primarySize, length));
+        } catch (IOException e) {
+            throw new SQLException("Can't read result rows from temporary file", e);
+        }
+    }
+
+    void close()
+    {
+        primary.close();
+        index.close();
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+    private long getOffset(int row) throws SQLException
+    {
+        try {
+            return index.read(row * 8L, 8).getLong();
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private ByteBuffer encode(CqlRow row)
+    {
+        List<Column> columns = row.getColumns();
+        int length = 8 + sizeOf(row.bufferForKey());
+        if (columns != null) {
+            for (Column column : columns) {
+                // Name and value lengths, flags, timestamp and ttl
+                length += 21 + sizeOf(column.bufferForName()) + sizeOf(column.bufferForValue());
+            }
+        }
+        if (writeBuffer.capacity() < length) {
+            writeBuffer = ByteBuffer.allocate(Math.max(length, writeBuffer.capacity() * 2));
+        }
+        ByteBuffer data = writeBuffer;
+        data.clear();
+        putBytes(data, row.bufferForKey());
+        data.putInt(columns == null ? -1 : columns.size());
+        if (columns != null) {
+            for (Column column : columns) {
+                putBytes(data, column.bufferForName());
+                putBytes(data, column.bufferForValue());
+                int flags = (column.isSetTimestamp() ? FLAG_TIMESTAMP : 0) | (column.isSetTtl() ? FLAG_TTL : 0);
+                data.put((byte) flags);
+                if (column.isSetTimestamp()) {
+                    data.putLong(column.getTimestamp());
+                }
+                if (column.isSetTtl()) {
+                    data.putInt(column.getTtl());
+                }
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    private static CqlRow decode(ByteBuffer data)
+    {
+        CqlRow row = new CqlRow();
+        row.setKey(getBytes(data));
+        int columnCount = data.getInt();
+        if (columnCount >= 0) {
+            List<Column> columns = new ArrayList<Column>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                Column column = new Column();
+                column.setName(getBytes(data));
+                column.setValue(getBytes(data));
+                int flags = data.get();
+                if ((flags & FLAG_TIMESTAMP) != 0) {
+                    column.setTimestamp(data.getLong());
+                }
+                if ((flags & FLAG_TTL) != 0) {
+                    column.setTtl(data.getInt());
+                }
+                columns.add(column);
+            }
+            row.setColumns(columns);
+        }
+        return row;
+    }
+
+    private static int sizeOf(ByteBuffer value)
+    {
+        return value == null ? 0 : value.remaining();
+    }
+
+    private static void putBytes(ByteBuffer data, ByteBuffer value)
+    {
+        if (value == null) {
+            data.putInt(-1);
+        } else {
+            data.putInt(value.remaining());
+            data.put(value.duplicate());
+        }
+    }
+
+    private static ByteBuffer getBytes(ByteBuffer data)
+    {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        data.get(value);
+        return ByteBuffer.wrap(value);
+    }
+
+    /**
+     * Append-only byte storage
+     */
+    private static abstract class Segment {
+
+        abstract long size();
+
+        abstract void append(ByteBuffer data) throws IOException;
+
+        /**
+         * Returns buffer with the specified bytes. It may share content with the segment.
+         */
+        abstract ByteBuffer read(long position, int length) throws IOException;
+
+        abstract void close();
+    }
+
+    /**
+     * Segment backed by a heap array
+     */
+    private static class HeapSegment extends Segment {
+        private final long limit;
+        private byte[] data = new byte[0];
+        private int size;
+
+        /**
+         * @param limit capacity limit. Array grows beyond it only if data doesn't fit otherwise.
+         */
+        HeapSegment(long limit)
+        {
+            this.limit = limit;
+        }
+
+        long size()
+        {
+            return size;
+        }
+
+        void append(ByteBuffer buffer) throws IOException
+        {
+            int length = buffer.remaining();
+            if ((long) size + length > data.length) {
+                if ((long) size + length > MAX_ARRAY_SIZE) {
+                    throw new IOException("Heap segment is full");
+                }
+                long capacity = Math.min(Math.min(limit, MAX_ARRAY_SIZE), Math.max(4096, data.length * 2L));
+                data = Arrays.copyOf(data, (int) Math.max(capacity, size + length));
+            }
+            buffer.get(data, size, length);
+            size += length;
+        }
+
+        ByteBuffer read(long position, int length)
+        {
+            return ByteBuffer.wrap(data, (int) position, length);
+        }
+
+        void close()
+        {
+            data = null;
+        }
+    }
+
+    /**
+     * Segment backed by direct buffers allocated page by page.
+     * Data which crosses page boundary is copied to a heap buffer on read.
+     */
+    private static class DirectSegment extends Segment {
+        private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+        private long size;
+
+        long size()
+        {
+            return size;
+        }
+
+        void append(ByteBuffer buffer)
+        {
+            while (buffer.hasRemaining()) {
+                int offset = (int) (size % PAGE_SIZE);
+                if (offset == 0) {
+                    pages.add(ByteBuffer.allocateDirect(PAGE_SIZE));
+                }
+                ByteBuffer page = pages.get(pages.size() - 1).duplicate();
+                page.position(offset);
+                int length = Math.min(page.remaining(), buffer.remaining());
+                ByteBuffer chunk = buffer.duplicate();
+                chunk.limit(chunk.position() + length);
+                page.put(chunk);
+                buffer.position(buffer.position() + length);
+                size += length;
+            }
+        }
+
+        ByteBuffer read(long position, int length)
+        {
+            int offset = (int) (position % PAGE_SIZE);
+            int pageIndex = (int) (position / PAGE_SIZE);
+            if (offset + length <= PAGE_SIZE) {
+                ByteBuffer page = pages.get(pageIndex).duplicate();
+                page.limit(offset + length).position(offset);
+                return page;
+            }
+            ByteBuffer result = ByteBuffer.allocate(length);
+            while (result.hasRemaining()) {
+                ByteBuffer page = pages.get(pageIndex++).duplicate();
+                page.limit(Math.min(PAGE_SIZE, offset + result.remaining())).position(offset);
+                result.put(page);
+                offset = 0;
+            }
+            result.flip();
+            return result;
+        }
+
+        void close()
+        {
+            // Direct memory is released when buffers are collected
+            pages.clear();
+        }
+    }
+
+    /**
+     * Segment backed by a temporary file
+     */
+    private static class FileSegment extends Segment {
+        private final File file;
+        private final RandomAccessFile access;
+        private final FileChannel channel;
+        private long size;
+        private MappedByteBuffer region;
+        private long regionStart;
+
+        FileSegment() throws IOException
+        {
+            file = File.createTempFile("cassandra-rows", ".tmp");
+            access = new RandomAccessFile(file, "rw");
+            channel = access.getChannel();
+        }
+
+        long size()
+        {
+            return size;
+        }
+
+        void append(ByteBuffer buffer) throws IOException
+        {
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer, size);
+            }
+        }
+
+        ByteBuffer read(long position, int length) throws IOException
+        {
+            if (region == null || position < regionStart || position + length > regionStart + region.limit()) {
+                long mapSize = Math.max(length, Math.min(MAP_REGION_SIZE, size - position));
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize);
+                regionStart = position;
+            }
+            ByteBuffer buffer = region.duplicate();
+            buffer.position((int) (position - regionStart));
+            buffer.limit(buffer.position() + length);
+            return buffer;
+        }
+
+        void close()
+        {
+            region = null;
+            try {
+                access.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            // Deletion fails on some platforms while the file is still mapped - it is removed on exit then
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.cassandra.thrift.KsDef;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local copy of the cluster schema (keyspace and column family definitions) kept in a file,
+ * so that connections don't read the whole schema from the server on every connect.
+ * <p/>
+ * The file holds the cluster name, the schema version and Thrift compact encoded keyspace definitions.
+ * It is read at connect and used while the cluster agrees on the same schema version.
+ * A stale snapshot is rewritten in background with a separate client; the connection reads
+ * the schema from the server until then.
+ */
+class SchemaSnapshot {
+
+    private static final int MAGIC = 0x43534e50;
+    private static final int FORMAT_VERSION = 1;
+    static final String UNREACHABLE = "UNREACHABLE";
+
+    /**
+     * Snapshot content
+     */
+    private static class Content {
+        private final String clusterName;
+        private final String version;
+        private final List<KsDef> keyspaces;
+        // connection schema version the content is valid for
+        private final int connectionSchemaVersion;
+
+        private Content(String clusterName, String version, List<KsDef> keyspaces, int connectionSchemaVersion)
+        {
+            this.clusterName = clusterName;
+            this.version = version;
+            this.keyspaces = Collections.unmodifiableList(keyspaces);
+            this.connectionSchemaVersion = connectionSchemaVersion;
+        }
+    }
+
+    private final CassandraConnection connection;
+    private final File file;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Content content;
+    private volatile int refreshedSchemaVersion = -1;
+
+    SchemaSnapshot(CassandraConnection connection, File directory)
+    {
+        this.connection = connection;
+        this.file = new File(directory, makeFileName(connection.getHost(), connection.getPort()));
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Reads the snapshot file and checks it against the schema versions reported by the cluster.
+     * Starts background refresh if the file is missing or stale.
+     */
+    void validate(Map<String, List<String>> schemaVersions)
+    {
+        Content loaded = read(file);
+        String version = getAgreedVersion(schemaVersions);
+        if (loaded != null && version != null && version.equals(loaded.version)) {
+            content = new Content(loaded.clusterName, loaded.version, loaded.keyspaces, connection.getSchemaVersion());
+        } else {
+            refresh();
+        }
+    }
+
+    /**
+     * Keyspace definitions or null if the snapshot is not valid
+     */
+    List<KsDef> getKeyspaces()
+    {
+        Content current = getContent();
+        return current == null ? null : current.keyspaces;
+    }
+
+    /**
+     * Cluster name or null if the snapshot is not valid
+     */
+    String getClusterName()
+    {
+        Content current = getContent();
+        return current == null ? null : current.clusterName;
+    }
+
+    private Content getContent()
+    {
+        Content current = content;
+        if (current != null && current.connectionSchemaVersion == connection.getSchemaVersion()) {
+            return current;
+        }
+        // Schema was changed through the connection
+        refresh();
+        return null;
+    }
+
+    /**
+     * Starts background refresh, once per connection schema version
+     */
+    private void refresh()
+    {
+        final int schemaVersion = connection.getSchemaVersion();
+        if (refreshedSchemaVersion == schemaVersion || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshedSchemaVersion = schemaVersion;
+        Thread refresher = new Thread("Cassandra schema snapshot " + file.getName()) {
+            public void run()
+            {
+                try {
+                    Content fresh = fetch(schemaVersion);
+                    if (fresh != null) {
+                        write(file, fresh);
+                        content = fresh;
+                    }
+                } catch (Exception e) {
+                    // Snapshot stays stale, schema is read from the server
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        };
+        refresher.setDaemon(true);
+        refresher.start();
+    }
+
+    /**
+     * Reads the schema with a dedicated client. Returns null if the cluster doesn't agree on schema version.
+     */
+    private Content fetch(int connectionSchemaVersion) throws SQLException, TException, InvalidRequestException
+    {
+        Cassandra.Client client = connection.openClient(connection.getHost(), null);
+        try {
+            String version = getAgreedVersion(client.describe_schema_versions());
+            if (version == null) {
+                return null;
+            }
+            String clusterName = client.describe_cluster_name();
+            List<KsDef> keyspaces = client.describe_keyspaces();
+            if (!version.equals(getAgreedVersion(client.describe_schema_versions()))) {
+                // Changed while reading
+                return null;
+            }
+            return new Content(clusterName, version, keyspaces, connectionSchemaVersion);
+        } finally {
+            CassandraConnection.closeClient(client);
+        }
+    }
+
+    /**
+     * Schema version all reachable nodes agree on, or null
+     */
+    static String getAgreedVersion(Map<String, List<String>> schemaVersions)
+    {
+        String agreed = null;
+        for (String version : schemaVersions.keySet()) {
+            if (UNREACHABLE.equals(version)) {
+                continue;
+            }
+            if (agreed != null) {
+                return null;
+            }
+            agreed = version;
+        }
+        return agreed;
+    }
+
+    static String makeFileName(String host, int port)
+    {
+        StringBuilder name = new StringBuilder();
+        for (char c : (host + "_" + port).toCharArray()) {
+            name.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' ? c : '_');
+        }
+        return name.append(".schema").toString();
+    }
+
+    /**
+     * Reads snapshot file. Returns null if it doesn't exist or can't be read.
+     */
+    private static Content read(File file)
+    {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            // Plain stream, not a mapping: a mapped file stays open until GC and can't be replaced on Windows
+            InputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(in));
+                if (protocol.readI32() != MAGIC || protocol.readI32() != FORMAT_VERSION) {
+                    return null;
+                }
+                String clusterName = protocol.readString();
+                String version = protocol.readString();
+                int count = protocol.readI32();
+                List<KsDef> keyspaces = new ArrayList<KsDef>(count);
+                for (int i = 0; i < count; i++) {
+                    KsDef ksDef = new KsDef();
+                    ksDef.read(protocol);
+                    keyspaces.add(ksDef);
+                }
+                return new Content(clusterName, version, keyspaces, -1);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (TException e) {
+            // Truncated or corrupted
+            return null;
+        }
+    }
+
+    /**
+     * Writes snapshot to a temporary file and renames it, so readers never see partial content
+     */
+    private static void write(File file, Content content) throws IOException, TException
+    {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(out));
+                protocol.writeI32(MAGIC);
+                protocol.writeI32(FORMAT_VERSION);
+                protocol.writeString(content.clusterName);
+                protocol.writeString(content.version);
+                protocol.writeI32(content.keyspaces.size());
+                for (KsDef ksDef : content.keyspaces) {
+                    ksDef.write(protocol);
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                // Platforms which don't replace existing files on rename
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Can't rename " + temp + " to " + file);
+                }
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+}
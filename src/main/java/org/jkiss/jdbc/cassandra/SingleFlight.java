@@ -0,0 +1,125 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+import org.apache.cassandra.thrift.*;
+import org.apache.thrift.TException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates identical read queries executed concurrently.
+ * The first caller executes the query, callers which come with the same query while it runs
+ * wait and receive the same result. Results are never modified so every caller iterates them independently.
+ * <p/>
+ * Queries are shared between threads using one connection only: every connection has its own single-flight
+ * layer, so applications which use a connection per thread get no deduplication.
+ * Only plain (not prepared) reads go through it, they run on pooled clients while single-flight is enabled.
+ * Prepared statements are registered on the single connection client, so prepared reads aren't deduplicated.
+ * They, writes and metadata calls use that client and must not run concurrently.
+ */
+class SingleFlight {
+
+    /**
+     * Query execution
+     */
+    interface Query {
+        CqlResult execute()
+            throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException;
+    }
+
+    private static class Call {
+        CqlResult result;
+        Throwable error;
+        boolean done;
+    }
+
+    private final Map<QueryKey, Call> calls = new HashMap<QueryKey, Call>();
+    private long sharedCount;
+
+    /**
+     * Number of queries which received result of another caller
+     */
+    synchronized long getSharedCount()
+    {
+        return sharedCount;
+    }
+
+    CqlResult execute(QueryKey key, Query query)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        Call call;
+        synchronized (this) {
+            call = calls.get(key);
+            if (call == null) {
+                call = new Call();
+                calls.put(key, call);
+            } else {
+                sharedCount++;
+                try {
+                    while (!call.done) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // Don't wait for others
+                    call = null;
+                }
+                if (call != null) {
+                    return getResult(call);
+                }
+            }
+        }
+        if (call == null) {
+            return query.execute();
+        }
+        try {
+            call.result = query.execute();
+        } catch (Throwable e) {
+            // Errors too, waiters must not get an empty result
+            call.error = e;
+        } finally {
+            synchronized (this) {
+                call.done = true;
+                calls.remove(key);
+                notifyAll();
+            }
+        }
+        return getResult(call);
+    }
+
+    private static CqlResult getResult(Call call)
+        throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        Throwable error = call.error;
+        if (error == null) return call.result;
+        if (error instanceof InvalidRequestException) throw (InvalidRequestException) error;
+        if (error instanceof UnavailableException) throw (UnavailableException) error;
+        if (error instanceof TimedOutException) throw (TimedOutException) error;
+        if (error instanceof SchemaDisagreementException) throw (SchemaDisagreementException) error;
+        if (error instanceof TException) throw (TException) error;
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof Error) throw (Error) error;
+        throw new TException(error);
+    }
+
+}
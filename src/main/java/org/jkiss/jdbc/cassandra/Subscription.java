@@ -0,0 +1,39 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.jkiss.jdbc.cassandra;
+
+/**
+ * Link between a {@link Publisher} and one of its subscribers.
+ * Same contract as <code>org.reactivestreams.Subscription</code>.
+ */
+public interface Subscription {
+
+    /**
+     * Adds demand for n more elements. Non-positive n results in {@link Subscriber#onError}.
+     */
+    void request(long n);
+
+    /**
+     * Stops publishing and releases resources. Some signals may still arrive after the call.
+     */
+    void cancel();
+
+}
@@ -0,0 +1,129 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import org.jkiss.jdbc.cassandra.CassandraUtils;
+
+import java.nio.ByteBuffer;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Base of the CQL3 collection types.
+ * A collection is stored as &lt;count:2&gt; followed by elements (map entries are key, value),
+ * each one as &lt;length:2&gt;&lt;value&gt;.
+ */
+public abstract class AbstractJdbcCollection<T> extends AbstractJdbcType<T> {
+
+    public boolean isCaseSensitive()
+    {
+        return true;
+    }
+
+    public int getScale(T obj)
+    {
+        return -1;
+    }
+
+    public int getPrecision(T obj)
+    {
+        return -1;
+    }
+
+    public boolean isCurrency()
+    {
+        return false;
+    }
+
+    public boolean isSigned()
+    {
+        return false;
+    }
+
+    public String toString(T obj)
+    {
+        return obj.toString();
+    }
+
+    public boolean needsQuotes()
+    {
+        return true;
+    }
+
+    public int getJdbcType()
+    {
+        return Types.JAVA_OBJECT;
+    }
+
+    /**
+     * Decodes elements (keys and values for maps) and passes them to {@link #addElement}
+     */
+    void readElements(ByteBuffer bytes, Object target, boolean asString)
+    {
+        int pos = bytes.position();
+        int count = bytes.getShort(pos) & 0xFFFF;
+        pos += 2;
+        for (int i = 0; i < count * getElementsPerItem(); i++) {
+            int length = bytes.getShort(pos) & 0xFFFF;
+            pos += 2;
+            ByteBuffer element = CassandraUtils.slice(bytes, pos, length);
+            AbstractJdbcType<?> type = getElementType(i % getElementsPerItem());
+            addElement(target, i, asString ? type.getString(element) : type.compose(element));
+            pos += length;
+        }
+    }
+
+    int getElementsPerItem()
+    {
+        return 1;
+    }
+
+    /**
+     * Type of the element (0) or of the map key (0) and value (1)
+     */
+    abstract AbstractJdbcType<?> getElementType(int index);
+
+    abstract void addElement(Object target, int index, Object element);
+
+    /**
+     * Builds a collection from encoded elements (key, value, key, value... for maps)
+     */
+    public static ByteBuffer build(List<ByteBuffer> elements, int count)
+    {
+        int size = 2;
+        for (ByteBuffer element : elements) {
+            size += 2 + element.remaining();
+        }
+        ByteBuffer result = ByteBuffer.allocate(size);
+        result.putShort((short) count);
+        for (ByteBuffer element : elements) {
+            result.putShort((short) element.remaining()).put(element.duplicate());
+        }
+        result.flip();
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static ByteBuffer encode(AbstractJdbcType<?> type, Object element)
+    {
+        return ((AbstractJdbcType<Object>) type).decompose(element);
+    }
+}
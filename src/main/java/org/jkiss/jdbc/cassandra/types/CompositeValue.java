@@ -0,0 +1,102 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import java.sql.SQLException;
+import java.sql.Struct;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Decoded value of a CompositeType or DynamicCompositeType column name (or value).
+ * Components are exposed as Struct attributes.
+ */
+public class CompositeValue implements Struct {
+    private final String typeName;
+    private final AbstractJdbcType<?>[] types;
+    private final Object[] values;
+
+    CompositeValue(String typeName, AbstractJdbcType<?>[] types, Object[] values)
+    {
+        this.typeName = typeName;
+        this.types = types;
+        this.values = values;
+    }
+
+    public int size()
+    {
+        return values.length;
+    }
+
+    /**
+     * Decoded component, null for empty components
+     */
+    public Object get(int index)
+    {
+        return values[index];
+    }
+
+    public AbstractJdbcType<?> getType(int index)
+    {
+        return types[index];
+    }
+
+    public String getSQLTypeName() throws SQLException
+    {
+        return typeName;
+    }
+
+    public Object[] getAttributes() throws SQLException
+    {
+        return values.clone();
+    }
+
+    public Object[] getAttributes(Map<String, Class<?>> map) throws SQLException
+    {
+        return getAttributes();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj instanceof CompositeValue && Arrays.deepEquals(values, ((CompositeValue) obj).values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.deepHashCode(values);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) str.append(':');
+            if (values[i] != null) {
+                JdbcComposite.escape(str, ((AbstractJdbcType<Object>) types[i]).toString(values[i]));
+            }
+        }
+        return str.toString();
+    }
+}
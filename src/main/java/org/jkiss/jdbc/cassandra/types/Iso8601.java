@@ -0,0 +1,226 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import java.util.TimeZone;
+
+/**
+ * Allocation-light parser and formatter for the ISO-8601 forms listed in {@link JdbcDate#iso8601Patterns}.
+ * Input is classified in a single pass without exceptions. Anything the fast path isn't sure about
+ * (exotic zones, lenient out-of-range fields, pre-Gregorian dates, local times close to a DST transition)
+ * is reported as {@link #NOT_PARSED} so the caller can fall back to SimpleDateFormat and get exactly the old result.
+ */
+public final class Iso8601 {
+
+    public static final long NOT_PARSED = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final long TRANSITION_WINDOW = 3 * 3600000L;
+    // first full year of the Gregorian calendar; SimpleDateFormat uses the Julian calendar before it
+    private static final int MIN_YEAR = 1583;
+    private static final int MAX_YEAR = 9999;
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // like the thread-local formatters this replaces, bound to the default zone at first use
+    private static final TimeZone ZONE = TimeZone.getDefault();
+
+    private Iso8601()
+    {
+    }
+
+    /**
+     * Parses <code>yyyy-MM-dd[( |T)HH:mm[:ss[.SSS]]][Z|+hhmm|+hh:mm]</code>.
+     * Values without a zone are in the default time zone.
+     *
+     * @return milliseconds since epoch or {@link #NOT_PARSED}
+     */
+    public static long parse(String source)
+    {
+        int length = source.length();
+        int[] pos = {0};
+        int year = readNumber(source, pos, 4, 4);
+        if (year < MIN_YEAR || !skip(source, pos, '-')) return NOT_PARSED;
+        int month = readNumber(source, pos, 1, 2);
+        if (month < 1 || month > 12 || !skip(source, pos, '-')) return NOT_PARSED;
+        int day = readNumber(source, pos, 1, 2);
+        if (day < 1 || day > DAYS_IN_MONTH[month - 1] || (month == 2 && day == 29 && !isLeapYear(year))) return NOT_PARSED;
+
+        int hour = 0, minute = 0, second = 0, millis = 0;
+        if (pos[0] < length && (source.charAt(pos[0]) == ' ' || source.charAt(pos[0]) == 'T')) {
+            pos[0]++;
+            hour = readNumber(source, pos, 1, 2);
+            if (hour < 0 || hour > 23 || !skip(source, pos, ':')) return NOT_PARSED;
+            minute = readNumber(source, pos, 1, 2);
+            if (minute < 0 || minute > 59) return NOT_PARSED;
+            if (skip(source, pos, ':')) {
+                second = readNumber(source, pos, 1, 2);
+                if (second < 0 || second > 59) return NOT_PARSED;
+                if (skip(source, pos, '.')) {
+                    int start = pos[0];
+                    int fraction = readNumber(source, pos, 1, 9);
+                    if (fraction < 0) return NOT_PARSED;
+                    int digits = pos[0] - start;
+                    for (; digits < 3; digits++) fraction *= 10;
+                    for (; digits > 3; digits--) fraction /= 10;
+                    millis = fraction;
+                }
+            }
+        }
+        long local = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+            + hour * 3600000L + minute * 60000L + second * 1000L + millis;
+
+        if (pos[0] == length) {
+            return localToUtc(local);
+        }
+        char sign = source.charAt(pos[0]++);
+        if (sign == 'Z') {
+            return pos[0] == length ? local : NOT_PARSED;
+        }
+        if (sign != '+' && sign != '-') return NOT_PARSED;
+        int offsetHours = readNumber(source, pos, 2, 2);
+        skip(source, pos, ':');
+        int offsetMinutes = readNumber(source, pos, 2, 2);
+        if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59 || pos[0] != length) {
+            return NOT_PARSED;
+        }
+        long offset = offsetHours * 3600000L + offsetMinutes * 60000L;
+        return sign == '+' ? local - offset : local + offset;
+    }
+
+    /**
+     * Formats as <code>yyyy-MM-dd HH:mm:ssZ</code> in the default time zone,
+     * the same text SimpleDateFormat produces for {@link JdbcDate#DEFAULT_FORMAT}.
+     */
+    public static String format(long time)
+    {
+        int offset = ZONE.getOffset(time);
+        long local = time + offset;
+        long days = floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+
+        // civil date from days since epoch
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return JdbcDate.FORMATTER.get().format(new java.util.Date(time));
+        }
+
+        char[] buf = new char[24];
+        write4(buf, 0, (int) year);
+        buf[4] = '-';
+        write2(buf, 5, month);
+        buf[7] = '-';
+        write2(buf, 8, day);
+        buf[10] = ' ';
+        write2(buf, 11, millisOfDay / 3600000);
+        buf[13] = ':';
+        write2(buf, 14, millisOfDay / 60000 % 60);
+        buf[16] = ':';
+        write2(buf, 17, millisOfDay / 1000 % 60);
+        // RFC 822 zone, truncated to whole minutes like SimpleDateFormat does
+        int offsetMinutes = offset / 60000;
+        buf[19] = offsetMinutes < 0 ? '-' : '+';
+        offsetMinutes = Math.abs(offsetMinutes);
+        write2(buf, 20, offsetMinutes / 60);
+        write2(buf, 22, offsetMinutes % 60);
+        return new String(buf);
+    }
+
+    private static long localToUtc(long local)
+    {
+        int offset = ZONE.getOffset(local - ZONE.getRawOffset());
+        long utc = local - offset;
+        // a wall time near a transition may be ambiguous or skipped - leave it to the calendar
+        if (ZONE.getOffset(utc - TRANSITION_WINDOW) != offset || ZONE.getOffset(utc + TRANSITION_WINDOW) != offset) {
+            return NOT_PARSED;
+        }
+        return utc;
+    }
+
+    /**
+     * Reads minDigits..maxDigits decimal digits at pos[0]; returns -1 if there are fewer
+     * (more digits than maxDigits are left for the caller to reject).
+     */
+    private static int readNumber(String source, int[] pos, int minDigits, int maxDigits)
+    {
+        int i = pos[0];
+        int end = Math.min(source.length(), i + maxDigits);
+        int value = 0;
+        for (; i < end; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+        }
+        if (i - pos[0] < minDigits) return -1;
+        pos[0] = i;
+        return value;
+    }
+
+    private static boolean skip(String source, int[] pos, char c)
+    {
+        if (pos[0] < source.length() && source.charAt(pos[0]) == c) {
+            pos[0]++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isLeapYear(int year)
+    {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static long daysFromCivil(int year, int month, int day)
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static long floorDiv(long x, long y)
+    {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static void write2(char[] buf, int offset, int value)
+    {
+        buf[offset] = (char) ('0' + value / 10);
+        buf[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static void write4(char[] buf, int offset, int value)
+    {
+        write2(buf, offset, value / 100);
+        write2(buf, offset + 2, value % 100);
+    }
+
+}
@@ -0,0 +1,255 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import org.jkiss.jdbc.cassandra.CassandraUtils;
+
+import java.nio.ByteBuffer;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompositeType and DynamicCompositeType.
+ * Every component is stored as &lt;length:2&gt;&lt;value&gt;&lt;end-of-component:1&gt;; dynamic composites prefix it
+ * with the component comparator - either an alias (0x80nn) or &lt;length:2&gt;&lt;class name&gt;.
+ */
+public class JdbcComposite extends AbstractJdbcType<CompositeValue> {
+    private static final int ALIAS_FLAG = 0x8000;
+
+    private final String name;
+    // component types of a static composite
+    private final AbstractJdbcType<?>[] types;
+    // alias -> type of a dynamic composite
+    private final Map<Character, AbstractJdbcType<?>> aliases;
+
+    JdbcComposite(String name, AbstractJdbcType<?>[] types)
+    {
+        this.name = name;
+        this.types = types;
+        this.aliases = null;
+    }
+
+    JdbcComposite(String name, Map<Character, AbstractJdbcType<?>> aliases)
+    {
+        this.name = name;
+        this.types = null;
+        this.aliases = aliases;
+    }
+
+    public boolean isDynamic()
+    {
+        return aliases != null;
+    }
+
+    /**
+     * Type of the component of a static composite
+     */
+    public AbstractJdbcType<?> getComponentType(int index)
+    {
+        return types == null ? JdbcBytes.instance : types[Math.min(index, types.length - 1)];
+    }
+
+    public boolean isCaseSensitive()
+    {
+        return true;
+    }
+
+    public int getScale(CompositeValue obj)
+    {
+        return -1;
+    }
+
+    public int getPrecision(CompositeValue obj)
+    {
+        return -1;
+    }
+
+    public boolean isCurrency()
+    {
+        return false;
+    }
+
+    public boolean isSigned()
+    {
+        return false;
+    }
+
+    public String toString(CompositeValue obj)
+    {
+        return obj.toString();
+    }
+
+    public boolean needsQuotes()
+    {
+        return true;
+    }
+
+    public String getString(ByteBuffer bytes)
+    {
+        return compose(bytes).toString();
+    }
+
+    public Class<CompositeValue> getType()
+    {
+        return CompositeValue.class;
+    }
+
+    public int getJdbcType()
+    {
+        return Types.STRUCT;
+    }
+
+    public CompositeValue compose(ByteBuffer bytes)
+    {
+        List<AbstractJdbcType<?>> componentTypes = new ArrayList<AbstractJdbcType<?>>(types == null ? 4 : types.length);
+        List<Object> values = new ArrayList<Object>(types == null ? 4 : types.length);
+        int pos = bytes.position();
+        int end = bytes.limit();
+        while (pos < end) {
+            AbstractJdbcType<?> type;
+            if (aliases == null) {
+                type = getComponentType(values.size());
+            } else {
+                int header = bytes.getShort(pos) & 0xFFFF;
+                pos += 2;
+                if ((header & ALIAS_FLAG) != 0) {
+                    type = aliases.get((char) (header & 0xFF));
+                } else {
+                    type = TypesMap.getTypeForComparator(readTypeName(bytes, pos, header));
+                    pos += header;
+                }
+                if (type == null) type = JdbcBytes.instance;
+            }
+            int length = bytes.getShort(pos) & 0xFFFF;
+            pos += 2;
+            values.add(length == 0 ? null : type.compose(CassandraUtils.slice(bytes, pos, length)));
+            componentTypes.add(type);
+            // value and end-of-component byte
+            pos += length + 1;
+        }
+        return new CompositeValue(name, componentTypes.toArray(new AbstractJdbcType<?>[componentTypes.size()]), values.toArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    public ByteBuffer decompose(CompositeValue value)
+    {
+        ByteBuffer[] components = new ByteBuffer[value.size()];
+        for (int i = 0; i < components.length; i++) {
+            Object component = value.get(i);
+            components[i] = component == null ? null : ((AbstractJdbcType<Object>) value.getType(i)).decompose(component);
+        }
+        if (aliases == null) {
+            return build(components);
+        }
+        ByteBuffer[] headers = new ByteBuffer[components.length];
+        for (int i = 0; i < components.length; i++) {
+            headers[i] = makeHeader(value.getType(i));
+        }
+        return build(headers, components);
+    }
+
+    /**
+     * Builds a static composite from encoded components (null for empty ones)
+     */
+    public static ByteBuffer build(ByteBuffer... components)
+    {
+        return build(null, components);
+    }
+
+    private static ByteBuffer build(ByteBuffer[] headers, ByteBuffer[] components)
+    {
+        int size = 0;
+        for (int i = 0; i < components.length; i++) {
+            size += (headers == null ? 0 : headers[i].remaining()) + 3 + (components[i] == null ? 0 : components[i].remaining());
+        }
+        ByteBuffer result = ByteBuffer.allocate(size);
+        for (int i = 0; i < components.length; i++) {
+            if (headers != null) result.put(headers[i].duplicate());
+            ByteBuffer component = components[i];
+            result.putShort((short) (component == null ? 0 : component.remaining()));
+            if (component != null) result.put(component.duplicate());
+            result.put((byte) 0);
+        }
+        result.flip();
+        return result;
+    }
+
+    private static String readTypeName(ByteBuffer bytes, int offset, int length)
+    {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (bytes.get(offset + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private ByteBuffer makeHeader(AbstractJdbcType<?> type)
+    {
+        for (Map.Entry<Character, AbstractJdbcType<?>> alias : aliases.entrySet()) {
+            if (alias.getValue() == type) {
+                return ByteBuffer.allocate(2).putShort(0, (short) (ALIAS_FLAG | alias.getKey()));
+            }
+        }
+        byte[] typeName = TypesMap.getComparatorName(type).getBytes();
+        ByteBuffer header = ByteBuffer.allocate(2 + typeName.length);
+        header.putShort((short) typeName.length).put(typeName).flip();
+        return header;
+    }
+
+    /**
+     * Splits the string form (components separated by ':', '\' escapes) into components
+     */
+    public static List<String> split(String str)
+    {
+        List<String> components = new ArrayList<String>();
+        StringBuilder component = new StringBuilder();
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\\' && i + 1 < str.length()) {
+                component.append(str.charAt(++i));
+            } else if (c == ':') {
+                components.add(component.toString());
+                component.setLength(0);
+            } else {
+                component.append(c);
+            }
+        }
+        components.add(component.toString());
+        return components;
+    }
+
+    static void escape(StringBuilder str, String component)
+    {
+        for (int i = 0; i < component.length(); i++) {
+            char c = component.charAt(i);
+            if (c == ':' || c == '\\') str.append('\\');
+            str.append(c);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
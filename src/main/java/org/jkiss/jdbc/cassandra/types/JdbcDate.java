@@ -82,7 +82,7 @@ public class JdbcDate extends AbstractJdbcType<Date> {
 
     public String toString(Date obj)
     {
-        return FORMATTER.get().format(obj);
+        return Iso8601.format(obj.getTime());
     }
 
     public boolean needsQuotes()
@@ -100,7 +100,7 @@ public class JdbcDate extends AbstractJdbcType<Date> {
         }
 
         // uses ISO-8601 formatted string
-        return FORMATTER.get().format(new Date(bytes.getLong(bytes.position())));
+        return Iso8601.format(bytes.getLong(bytes.position()));
     }
 
     public Class<Date> getType()
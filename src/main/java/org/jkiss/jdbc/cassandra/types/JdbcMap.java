@@ -0,0 +1,117 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MapType, decoded as java.util.Map (in stored order)
+ */
+public class JdbcMap extends AbstractJdbcCollection<Map<Object, Object>> {
+    private final AbstractJdbcType<?> keyType;
+    private final AbstractJdbcType<?> valueType;
+
+    JdbcMap(AbstractJdbcType<?> keyType, AbstractJdbcType<?> valueType)
+    {
+        this.keyType = keyType;
+        this.valueType = valueType;
+    }
+
+    public AbstractJdbcType<?> getKeyType()
+    {
+        return keyType;
+    }
+
+    public AbstractJdbcType<?> getValueType()
+    {
+        return valueType;
+    }
+
+    int getElementsPerItem()
+    {
+        return 2;
+    }
+
+    AbstractJdbcType<?> getElementType(int index)
+    {
+        return index == 0 ? keyType : valueType;
+    }
+
+    @SuppressWarnings("unchecked")
+    void addElement(Object target, int index, Object element)
+    {
+        ((List<Object>) target).add(element);
+    }
+
+    private List<Object> readEntries(ByteBuffer bytes, boolean asString)
+    {
+        List<Object> entries = new ArrayList<Object>();
+        readElements(bytes, entries, asString);
+        return entries;
+    }
+
+    public String getString(ByteBuffer bytes)
+    {
+        List<Object> entries = readEntries(bytes, true);
+        StringBuilder str = new StringBuilder().append('{');
+        for (int i = 0; i < entries.size(); i += 2) {
+            if (i > 0) str.append(", ");
+            str.append(entries.get(i)).append(": ").append(entries.get(i + 1));
+        }
+        return str.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<Map<Object, Object>> getType()
+    {
+        return (Class) Map.class;
+    }
+
+    public Map<Object, Object> compose(ByteBuffer bytes)
+    {
+        List<Object> entries = readEntries(bytes, false);
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        for (int i = 0; i < entries.size(); i += 2) {
+            map.put(entries.get(i), entries.get(i + 1));
+        }
+        return map;
+    }
+
+    public ByteBuffer decompose(Map<Object, Object> value)
+    {
+        List<ByteBuffer> elements = new ArrayList<ByteBuffer>(value.size() * 2);
+        for (Map.Entry<Object, Object> entry : value.entrySet()) {
+            elements.add(encode(keyType, entry.getKey()));
+            elements.add(encode(valueType, entry.getValue()));
+        }
+        return build(elements, value.size());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MapType(" + TypesMap.getComparatorName(keyType) + "," + TypesMap.getComparatorName(valueType) + ")";
+    }
+}
@@ -0,0 +1,91 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SetType, decoded as java.util.Set (in stored order)
+ */
+public class JdbcSet extends AbstractJdbcCollection<Set<Object>> {
+    private final AbstractJdbcType<?> elementType;
+
+    JdbcSet(AbstractJdbcType<?> elementType)
+    {
+        this.elementType = elementType;
+    }
+
+    public AbstractJdbcType<?> getElementType()
+    {
+        return elementType;
+    }
+
+    AbstractJdbcType<?> getElementType(int index)
+    {
+        return elementType;
+    }
+
+    @SuppressWarnings("unchecked")
+    void addElement(Object target, int index, Object element)
+    {
+        ((Set<Object>) target).add(element);
+    }
+
+    public String getString(ByteBuffer bytes)
+    {
+        Set<Object> elements = new LinkedHashSet<Object>();
+        readElements(bytes, elements, true);
+        String list = elements.toString();
+        return '{' + list.substring(1, list.length() - 1) + '}';
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<Set<Object>> getType()
+    {
+        return (Class) Set.class;
+    }
+
+    public Set<Object> compose(ByteBuffer bytes)
+    {
+        Set<Object> elements = new LinkedHashSet<Object>();
+        readElements(bytes, elements, false);
+        return elements;
+    }
+
+    public ByteBuffer decompose(Set<Object> value)
+    {
+        List<ByteBuffer> elements = new ArrayList<ByteBuffer>(value.size());
+        for (Object element : value) {
+            elements.add(encode(elementType, element));
+        }
+        return build(elements, elements.size());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SetType(" + TypesMap.getComparatorName(elementType) + ")";
+    }
+}
@@ -0,0 +1,152 @@
+package org.jkiss.jdbc.cassandra.types;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses parameterized comparators like <code>CompositeType(UTF8Type,ReversedType(LongType))</code>
+ * or <code>DynamicCompositeType(a=&gt;AsciiType,l=&gt;LongType)</code> into composed types.
+ */
+class TypeParser {
+    private static final String MARSHAL_PACKAGE = "org.apache.cassandra.db.marshal.";
+
+    private final String str;
+    private int pos;
+
+    TypeParser(String str)
+    {
+        this.str = str;
+    }
+
+    /**
+     * Returns parsed type or null if the comparator is malformed or unknown
+     */
+    AbstractJdbcType<?> parse()
+    {
+        try {
+            AbstractJdbcType<?> type = parseType();
+            skipBlank();
+            return pos == str.length() ? type : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private AbstractJdbcType<?> parseType()
+    {
+        int start = pos;
+        String name = readName();
+        skipBlank();
+        if (pos == str.length() || str.charAt(pos) != '(') {
+            return TypesMap.getTypeForComparator(name);
+        }
+        pos++;
+        List<String> keys = new ArrayList<String>();
+        List<AbstractJdbcType<?>> params = new ArrayList<AbstractJdbcType<?>>();
+        skipBlank();
+        while (pos < str.length() && str.charAt(pos) != ')') {
+            int paramStart = pos;
+            String key = readName();
+            skipBlank();
+            if (str.startsWith("=>", pos)) {
+                pos += 2;
+            } else if (pos < str.length() && str.charAt(pos) == ':') {
+                pos++;
+            } else {
+                // no key, just a type
+                key = null;
+                pos = paramStart;
+            }
+            skipBlank();
+            keys.add(key);
+            params.add(parseType());
+            skipBlank();
+            if (pos < str.length() && str.charAt(pos) == ',') {
+                pos++;
+                skipBlank();
+            }
+        }
+        if (pos == str.length()) throw new IllegalArgumentException("Unbalanced parentheses in " + str);
+        pos++;
+        return create(name, str.substring(start, pos), keys, params);
+    }
+
+    private AbstractJdbcType<?> create(String name, String fullName, List<String> keys, List<AbstractJdbcType<?>> params)
+    {
+        if (name.startsWith(MARSHAL_PACKAGE)) {
+            name = name.substring(MARSHAL_PACKAGE.length());
+        }
+        if (name.equals("ReversedType")) {
+            // order only, the format is the same
+            return params.size() == 1 ? params.get(0) : null;
+        } else if (name.equals("CompositeType")) {
+            AbstractJdbcType<?>[] types = new AbstractJdbcType<?>[params.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = orBytes(params.get(i));
+            }
+            return types.length == 0 ? null : new JdbcComposite(fullName, types);
+        } else if (name.equals("DynamicCompositeType")) {
+            Map<Character, AbstractJdbcType<?>> aliases = new HashMap<Character, AbstractJdbcType<?>>();
+            for (int i = 0; i < params.size(); i++) {
+                if (keys.get(i) != null && keys.get(i).length() == 1) {
+                    aliases.put(keys.get(i).charAt(0), orBytes(params.get(i)));
+                }
+            }
+            return new JdbcComposite(fullName, aliases);
+        } else if (name.equals("ListType")) {
+            return params.size() == 1 ? new JdbcList(orBytes(params.get(0))) : null;
+        } else if (name.equals("SetType")) {
+            return params.size() == 1 ? new JdbcSet(orBytes(params.get(0))) : null;
+        } else if (name.equals("MapType")) {
+            return params.size() == 2 ? new JdbcMap(orBytes(params.get(0)), orBytes(params.get(1))) : null;
+        } else if (name.equals("ColumnToCollectionType")) {
+            // CQL3 collection column names inside composites - keep them raw
+            return JdbcBytes.instance;
+        }
+        return null;
+    }
+
+    private static AbstractJdbcType<?> orBytes(AbstractJdbcType<?> type)
+    {
+        return type == null ? JdbcBytes.instance : type;
+    }
+
+    private String readName()
+    {
+        int start = pos;
+        while (pos < str.length()) {
+            char c = str.charAt(pos);
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '_' && c != '$') break;
+            pos++;
+        }
+        if (pos == start) throw new IllegalArgumentException("Type name expected at " + pos + " in " + str);
+        return str.substring(start, pos);
+    }
+
+    private void skipBlank()
+    {
+        while (pos < str.length() && Character.isWhitespace(str.charAt(pos))) pos++;
+    }
+}
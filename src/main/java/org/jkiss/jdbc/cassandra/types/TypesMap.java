@@ -23,9 +23,13 @@ package org.jkiss.jdbc.cassandra.types;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class TypesMap {
     private final static Map<String, AbstractJdbcType<?>> map = new HashMap<String, AbstractJdbcType<?>>();
+    // parameterized comparators (composites, collections), parsed once
+    private final static ConcurrentMap<String, AbstractJdbcType<?>> parsed = new ConcurrentHashMap<String, AbstractJdbcType<?>>();
 
     static {
         map.put("org.apache.cassandra.db.marshal.AsciiType", JdbcAscii.instance);
@@ -47,9 +51,30 @@ public class TypesMap {
 
     public static AbstractJdbcType<?> getTypeForComparator(String comparator)
     {
+        if (comparator == null) return null;
+        if (comparator.indexOf('(') >= 0) {
+            AbstractJdbcType<?> type = parsed.get(comparator);
+            if (type == null) {
+                type = new TypeParser(comparator).parse();
+                if (type != null) parsed.put(comparator, type);
+            }
+            return type;
+        }
         // If not fully qualified, assume it's the short name for a built-in.
-        if ((comparator != null) && (!comparator.contains(".")))
+        if (!comparator.contains("."))
             return map.get("org.apache.cassandra.db.marshal." + comparator);
         return map.get(comparator);
     }
+
+    /**
+     * Comparator class name (with parameters) of the type
+     */
+    public static String getComparatorName(AbstractJdbcType<?> type)
+    {
+        for (Map.Entry<String, AbstractJdbcType<?>> entry : map.entrySet()) {
+            if (entry.getValue() == type) return entry.getKey();
+        }
+        // composed types print themselves as their comparator
+        return type.toString();
+    }
 }
@@ -29,10 +29,11 @@ import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The goods are here: www.ietf.org/rfc/rfc4122.txt.
@@ -45,8 +46,12 @@ public class UUIDGen {
     // placement of this singleton is important.  It needs to be instantiated *AFTER* the other statics.
     private static final UUIDGen instance = new UUIDGen();
 
-    private long lastNanos;
-    private final Map<InetAddress, Long> nodeCache = new HashMap<InetAddress, Long>();
+    // last 100ns tick handed out; advanced with CAS so generators never block each other
+    private final AtomicLong lastNanos = new AtomicLong();
+    private final ConcurrentMap<InetAddress, Long> nodeCache = new ConcurrentHashMap<InetAddress, Long>();
+    // clock seq and node of the local host, resolved on first use
+    private volatile long localClockSeqAndNode;
+    private volatile boolean localResolved;
 
     private static final ThreadLocal<MessageDigest> localMD5Digest = new ThreadLocal<MessageDigest>() {
         @Override
@@ -152,17 +157,49 @@ public class UUIDGen {
         return createTimeUUIDBytes(instance.createTimeUnsafe(timeMillis));
     }
 
-    private static byte[] createTimeUUIDBytes(long msb)
+    /**
+     * Returns a type 1 UUID (a time-based UUID) of the local host, based on the current system time.
+     */
+    public static UUID getTimeUUID()
     {
-        long lsb = instance.getClockSeqAndNode(CassandraUtils.getLocalAddress());
-        byte[] uuidBytes = new byte[16];
+        return new UUID(instance.createTimeSafe(), instance.localClockSeqAndNode());
+    }
 
-        for (int i = 0; i < 8; i++)
-            uuidBytes[i] = (byte) (msb >>> 8 * (7 - i));
+    /**
+     * Writes a new type 1 UUID of the local host at the buffer's position (16 bytes, big-endian)
+     * and advances the position.
+     */
+    public static ByteBuffer writeTimeUUID(ByteBuffer buffer)
+    {
+        return buffer.putLong(instance.createTimeSafe()).putLong(instance.localClockSeqAndNode());
+    }
 
-        for (int i = 8; i < 16; i++)
-            uuidBytes[i] = (byte) (lsb >>> 8 * (7 - i));
+    /**
+     * Fills the first <code>count</code> elements of <code>msb</code> with the most significant
+     * bits of consecutive, unique type 1 UUIDs. The whole range of timestamps is reserved at once,
+     * so the cost of synchronization with other threads is paid once per call.
+     * The least significant bits of all of them are {@link #getLocalClockSeqAndNode()}.
+     */
+    public static void fill(long[] msb, int count)
+    {
+        if (count <= 0) return;
+        long first = instance.reserveTime(count);
+        for (int i = 0; i < count; i++)
+            msb[i] = instance.createTime(first + i);
+    }
 
+    /**
+     * Least significant bits (clock sequence and node) of time UUIDs generated by this host.
+     */
+    public static long getLocalClockSeqAndNode()
+    {
+        return instance.localClockSeqAndNode();
+    }
+
+    private static byte[] createTimeUUIDBytes(long msb)
+    {
+        byte[] uuidBytes = new byte[16];
+        ByteBuffer.wrap(uuidBytes).putLong(msb).putLong(instance.localClockSeqAndNode());
         return uuidBytes;
     }
 
@@ -180,7 +217,16 @@ public class UUIDGen {
         return (uuid.timestamp() / 10000) - START_EPOCH;
     }
 
-    // todo: could cache value if we assume node doesn't change.
+    private long localClockSeqAndNode()
+    {
+        if (!localResolved) {
+            // races are harmless - every thread computes the same value
+            localClockSeqAndNode = getClockSeqAndNode(CassandraUtils.getLocalAddress());
+            localResolved = true;
+        }
+        return localClockSeqAndNode;
+    }
+
     private long getClockSeqAndNode(InetAddress addr)
     {
         long lsb = 0;
@@ -193,15 +239,25 @@ public class UUIDGen {
 
     // needs to return two different values for the same when.
     // we can generate at most 10k UUIDs per ms.
-    private synchronized long createTimeSafe()
+    private long createTimeSafe()
     {
-        long nanosSince = (System.currentTimeMillis() - START_EPOCH) * 10000;
-        if (nanosSince > lastNanos)
-            lastNanos = nanosSince;
-        else
-            nanosSince = ++lastNanos;
+        return createTime(reserveTime(1));
+    }
 
-        return createTime(nanosSince);
+    /**
+     * Reserves <code>count</code> consecutive ticks and returns the first one.
+     * Ticks are never handed out twice: if the clock hasn't moved past the last reserved tick,
+     * the range starts right after it.
+     */
+    private long reserveTime(int count)
+    {
+        long nanosSince = (System.currentTimeMillis() - START_EPOCH) * 10000;
+        for (;;) {
+            long last = lastNanos.get();
+            long first = nanosSince > last ? nanosSince : last + 1;
+            if (lastNanos.compareAndSet(last, first + count - 1))
+                return first;
+        }
     }
 
     private long createTimeUnsafe(long when)
@@ -223,8 +279,9 @@ public class UUIDGen {
     // Lazily create node hashes, and cache them for later
     private long makeNode(InetAddress addr)
     {
-        if (nodeCache.containsKey(addr))
-            return nodeCache.get(addr);
+        Long cached = nodeCache.get(addr);
+        if (cached != null)
+            return cached;
 
         // ideally, we'd use the MAC address, but java doesn't expose that.
         byte[] hash = hash(addr.toString());
@@ -25,24 +25,47 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Types;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.cassandra.cql.TestClass;
 import org.jkiss.jdbc.cassandra.CassandraUtils;
 import org.jkiss.jdbc.cassandra.HandleObjects;
+import org.jkiss.jdbc.cassandra.ValueEncoder;
 import org.jkiss.jdbc.cassandra.types.JdbcBoolean;
+import org.jkiss.jdbc.cassandra.types.Iso8601;
 import org.jkiss.jdbc.cassandra.types.JdbcDate;
+import org.jkiss.jdbc.cassandra.types.JdbcDecimal;
+import org.jkiss.jdbc.cassandra.types.JdbcDouble;
+import org.jkiss.jdbc.cassandra.types.JdbcFloat;
+import org.jkiss.jdbc.cassandra.types.JdbcInteger;
+import org.jkiss.jdbc.cassandra.types.UUIDGen;
+import org.jkiss.jdbc.cassandra.types.JdbcLong;
+import org.jkiss.jdbc.cassandra.types.JdbcUTF8;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 public class HandleObjectsUnitTest
 {
+    private static class Point
+    {
+        final String name;
+
+        Point(String name)
+        {
+            this.name = name;
+        }
+    }
 
     /**
      * @throws java.lang.Exception
@@ -162,6 +185,142 @@ public class HandleObjectsUnitTest
         assertEquals(date.getTime(), JdbcDate.instance.compose(bb).getTime());             
     }
 
+    @Test
+    public void test6DateString() throws Exception
+    {
+        String[] samples = {
+            "2012-03-04 05:06", "2012-03-04 05:06:07", "2012-03-04 05:06+0100", "2012-03-04 05:06:07-0230",
+            "2012-03-04T05:06", "2012-03-04T05:06+0000", "2012-03-04T05:06:07", "2012-03-04T05:06:07+1200",
+            "2012-03-04", "2012-03-04-0800", "2012-3-4 5:6:7", "2000-02-29 23:59:59", "1999-12-31T00:00:00+0000"
+        };
+        for (String sample : samples)
+        {
+            long expected = HandleObjects.parseDate(sample, JdbcDate.iso8601Patterns).getTime();
+            assertEquals(sample, expected, Iso8601.parse(sample));
+            ByteBuffer bb = HandleObjects.makeBytes(sample, Types.TIMESTAMP, 0);
+            assertEquals(sample, expected, JdbcLong.instance.compose(bb).longValue());
+        }
+        // extensions over the SimpleDateFormat patterns
+        assertEquals(Iso8601.parse("2012-03-04T05:06:07+0000") + 890, Iso8601.parse("2012-03-04T05:06:07.89Z"));
+        assertEquals(Iso8601.parse("2012-03-04T05:06:07-0130"), Iso8601.parse("2012-03-04T05:06:07-01:30"));
+
+        // left to the lenient formats
+        String[] slow = {"2012-13-01", "2012-02-30", "2012-03-04 24:00", "1500-01-01", "2012-03-04 05:06GMT+01:00", "2012-03-04x", "garbage"};
+        for (String sample : slow)
+            assertEquals(sample, Iso8601.NOT_PARSED, Iso8601.parse(sample));
+        assertEquals(HandleObjects.parseDate("2012-02-30", JdbcDate.iso8601Patterns).getTime(),
+                     JdbcLong.instance.compose(HandleObjects.makeBytes("2012-02-30", Types.TIMESTAMP, 0)).longValue());
+
+        ByteBuffer bb = HandleObjects.makeBytes("1330837567000", Types.TIMESTAMP, 0);
+        assertEquals(1330837567000L, JdbcLong.instance.compose(bb).longValue());
+    }
+
+    @Test
+    public void test7DateFormat() throws Exception
+    {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssZ");
+        Random random = new Random(42);
+        long[] samples = new long[1000];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (long) (random.nextDouble() * 4000000000000L) - 1000000000000L;
+        samples[0] = 0;
+        samples[1] = -1;
+        samples[2] = -12219292800000L;
+        samples[3] = 253402300799999L;
+        for (long time : samples)
+        {
+            String expected = format.format(new java.util.Date(time));
+            assertEquals(expected, Iso8601.format(time));
+            assertEquals(expected, JdbcDate.instance.toString(new java.util.Date(time)));
+        }
+    }
+
+    @Test
+    public void test8Numeric() throws Exception
+    {
+        assertEquals(1.5, JdbcDouble.instance.compose(HandleObjects.makeBytes(1.5f, Types.DOUBLE, 0)), 0);
+        assertEquals(2.25f, JdbcFloat.instance.compose(HandleObjects.makeBytes("2.25", Types.REAL, 0)), 0);
+        assertEquals(new BigDecimal("0.1"), JdbcDecimal.instance.compose(HandleObjects.makeBytes(0.1f, Types.DECIMAL, 0)));
+        assertEquals(new BigDecimal("42"), JdbcDecimal.instance.compose(HandleObjects.makeBytes(42L, Types.DECIMAL, 0)));
+
+        BigInteger big = BigInteger.ONE.shiftLeft(70);
+        assertEquals(big, JdbcInteger.instance.compose(HandleObjects.makeBytes(big.toString(), Types.NUMERIC, 0)));
+        assertEquals(BigInteger.valueOf(-129), JdbcInteger.instance.compose(HandleObjects.makeBytes((short) -129, Types.SMALLINT, 0)));
+        assertEquals(BigInteger.ONE, JdbcInteger.instance.compose(HandleObjects.makeBytes(big, Types.BIT, 0)));
+        assertEquals(BigInteger.valueOf(7), JdbcInteger.instance.compose(HandleObjects.makeBytes(new AtomicLong(7), Types.TINYINT, 0)));
+        assertEquals(1, HandleObjects.makeBytes(big, Types.BOOLEAN, 0).get(0));
+
+        boolean passed = false;
+        try
+        {
+            HandleObjects.makeBytes("12x", Types.INTEGER, 0);
+        }
+        catch (SQLException e)
+        {
+            passed = true;
+        }
+        assertTrue(passed);
+    }
+
+    @Test
+    public void test9Encoders() throws Exception
+    {
+        // untyped values use the natural type of their class
+        assertEquals(12345, CassandraUtils.toInt(HandleObjects.makeBytes(12345)));
+        assertEquals(12345L, CassandraUtils.toLong(HandleObjects.makeBytes(12345L)));
+        assertEquals("text", CassandraUtils.string(HandleObjects.makeBytes("text")));
+        UUID uuid = UUID.randomUUID();
+        assertEquals(uuid, UUIDGen.getUUID(HandleObjects.makeBytes(uuid)));
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        assertEquals(buffer, HandleObjects.makeBytes(buffer, Types.VARBINARY, 0));
+
+        // Time is not a TIMESTAMP source, even though it extends java.util.Date
+        boolean passed = false;
+        try
+        {
+            HandleObjects.makeBytes(new Time(0), Types.TIMESTAMP, 0);
+        }
+        catch (SQLException e)
+        {
+            passed = true;
+        }
+        assertTrue(passed);
+
+        HandleObjects.registerEncoder(Point.class, new ValueEncoder<Point>()
+        {
+            public ByteBuffer encode(Point value)
+            {
+                return CassandraUtils.bytes(value.name);
+            }
+        });
+        Point value = new Point("encoded");
+        assertEquals("encoded", CassandraUtils.string(HandleObjects.makeBytes(value, Types.JAVA_OBJECT, 0)));
+        assertEquals("encoded", CassandraUtils.string(HandleObjects.makeBytes(value)));
+    }
+
+    @Test
+    public void test9UntypedObjects() throws Exception
+    {
+        // setObject() without type binds the string form: an Integer bound to a UTF8 column reads back as "42"
+        assertEquals("42", JdbcUTF8.instance.compose(HandleObjects.makeUntypedBytes(42)));
+        assertEquals("12345678901", JdbcUTF8.instance.compose(HandleObjects.makeUntypedBytes(12345678901L)));
+        assertEquals("text", JdbcUTF8.instance.compose(HandleObjects.makeUntypedBytes("text")));
+        UUID uuid = UUID.randomUUID();
+        assertEquals(uuid.toString(), JdbcUTF8.instance.compose(HandleObjects.makeUntypedBytes(uuid)));
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        assertEquals(buffer, HandleObjects.makeUntypedBytes(buffer));
+
+        // registered encoders still apply
+        HandleObjects.registerEncoder(Point.class, new ValueEncoder<Point>()
+        {
+            public ByteBuffer encode(Point value)
+            {
+                return CassandraUtils.bytes("point:" + value.name);
+            }
+        });
+        assertEquals("point:p", CassandraUtils.string(HandleObjects.makeUntypedBytes(new Point("p"))));
+    }
+
      @Test
     public void test99JavaObject() throws SQLException
     {
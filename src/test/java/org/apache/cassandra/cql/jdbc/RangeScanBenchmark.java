@@ -0,0 +1,130 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.apache.cassandra.cql.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.apache.cassandra.cql.ConnectionDetails;
+import org.jkiss.jdbc.cassandra.CassandraStatement;
+
+/**
+ * Key range scans executed by CQL vs directly by get_range_slices (directRangeScan).
+ * Needs a running server (host/port system properties as in the integration tests).
+ * Run manually: java -cp ... org.apache.cassandra.cql.jdbc.RangeScanBenchmark [rows] [limit] [iterations]
+ */
+public class RangeScanBenchmark
+{
+    private static final String HOST = System.getProperty("host", ConnectionDetails.getHost());
+    private static final int PORT = Integer.parseInt(System.getProperty("port", ConnectionDetails.getPort() + ""));
+    private static final String KEYSPACE = "BenchKS";
+
+    public static void main(String[] args) throws Exception
+    {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Class.forName("org.jkiss.jdbc.cassandra.CassandraDriver");
+        Connection con = DriverManager.getConnection(String.format("jdbc:jkiss:cassandra://%s:%d/%s", HOST, PORT, "system"));
+        try
+        {
+            prepare(con, rows);
+            String[] queries = {
+                "SELECT * FROM RangeBench LIMIT " + limit,
+                "SELECT KEY, v1, v3 FROM RangeBench WHERE KEY >= 'k00000100' LIMIT " + limit,
+            };
+            for (String query : queries)
+            {
+                // warm up and check that both paths return the same rows
+                long cqlSum = run(con, query, false);
+                long directSum = run(con, query, true);
+                if (cqlSum != directSum)
+                    System.out.println("Results differ: " + query);
+                System.out.println(query);
+                System.out.println("path\tms/query\trows/sec");
+                for (boolean direct : new boolean[] { false, true })
+                {
+                    long start = System.nanoTime();
+                    long count = 0;
+                    for (int i = 0; i < iterations; i++)
+                        count += run(con, query, direct) >>> 32;
+                    long elapsed = System.nanoTime() - start;
+                    System.out.println((direct ? "direct" : "cql") + "\t" + (elapsed / 1000000 / iterations)
+                        + "\t" + (count * 1000000000L / elapsed));
+                }
+            }
+        }
+        finally
+        {
+            con.close();
+        }
+    }
+
+    private static void prepare(Connection con, int rows) throws Exception
+    {
+        Statement stmt = con.createStatement();
+        try { stmt.execute("DROP KEYSPACE " + KEYSPACE); }
+        catch (Exception e) { /* Exception on DROP is OK */ }
+        stmt.execute("CREATE KEYSPACE " + KEYSPACE + " WITH strategy_class = SimpleStrategy AND strategy_options:replication_factor = 1");
+        stmt.execute("USE " + KEYSPACE);
+        stmt.execute("CREATE COLUMNFAMILY RangeBench (KEY text PRIMARY KEY, v1 bigint, v2 text, v3 bigint) WITH comparator = ascii");
+        PreparedStatement insert = con.prepareStatement("UPDATE RangeBench SET v1 = ?, v2 = ?, v3 = ? WHERE KEY = ?");
+        for (int i = 0; i < rows; i++)
+        {
+            insert.setLong(1, i);
+            insert.setString(2, "value " + i);
+            insert.setLong(3, -i);
+            insert.setString(4, String.format("k%08d", i));
+            insert.executeUpdate();
+        }
+        insert.close();
+    }
+
+    /**
+     * @return number of rows in the high half, checksum of values in the low half
+     */
+    private static long run(Connection con, String query, boolean direct) throws Exception
+    {
+        Statement stmt = con.createStatement();
+        stmt.unwrap(CassandraStatement.class).setDirectRangeScan(direct);
+        ResultSet rs = stmt.executeQuery(query);
+        long count = 0;
+        long sum = 0;
+        int columns = rs.getMetaData().getColumnCount();
+        while (rs.next())
+        {
+            count++;
+            for (int i = 1; i <= columns; i++)
+            {
+                String value = rs.getString(i);
+                sum += value == null ? 0 : value.hashCode();
+            }
+        }
+        rs.close();
+        stmt.close();
+        return (count << 32) + (sum & 0xffffffffL);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.apache.cassandra.cql.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jkiss.jdbc.cassandra.CassandraUtils;
+import org.jkiss.jdbc.cassandra.types.AbstractJdbcCollection;
+import org.jkiss.jdbc.cassandra.types.AbstractJdbcType;
+import org.jkiss.jdbc.cassandra.types.CompositeValue;
+import org.jkiss.jdbc.cassandra.types.JdbcComposite;
+import org.jkiss.jdbc.cassandra.types.JdbcList;
+import org.jkiss.jdbc.cassandra.types.JdbcLong;
+import org.jkiss.jdbc.cassandra.types.JdbcMap;
+import org.jkiss.jdbc.cassandra.types.JdbcSet;
+import org.jkiss.jdbc.cassandra.types.JdbcUTF8;
+import org.jkiss.jdbc.cassandra.types.TypesMap;
+import org.junit.Test;
+
+public class TypesMapUnitTest
+{
+    private static final String MARSHAL = "org.apache.cassandra.db.marshal.";
+
+    @Test
+    public void testSimpleTypes() throws Exception
+    {
+        assertSame(JdbcUTF8.instance, TypesMap.getTypeForComparator("UTF8Type"));
+        assertSame(JdbcLong.instance, TypesMap.getTypeForComparator(MARSHAL + "LongType"));
+        assertSame(JdbcLong.instance, TypesMap.getTypeForComparator(MARSHAL + "ReversedType(" + MARSHAL + "LongType)"));
+        assertNull(TypesMap.getTypeForComparator("NoSuchType"));
+        assertNull(TypesMap.getTypeForComparator("CompositeType(UTF8Type"));
+        assertNull(TypesMap.getTypeForComparator("NoSuchType(UTF8Type)"));
+    }
+
+    @Test
+    public void testComposite() throws Exception
+    {
+        String comparator = MARSHAL + "CompositeType(" + MARSHAL + "UTF8Type," + MARSHAL + "ReversedType(" + MARSHAL + "LongType))";
+        AbstractJdbcType<?> type = TypesMap.getTypeForComparator(comparator);
+        assertTrue(type instanceof JdbcComposite);
+        assertSame(type, TypesMap.getTypeForComparator(comparator));
+        JdbcComposite composite = (JdbcComposite) type;
+        assertSame(JdbcUTF8.instance, composite.getComponentType(0));
+        assertSame(JdbcLong.instance, composite.getComponentType(1));
+
+        ByteBuffer bytes = JdbcComposite.build(CassandraUtils.bytes("sensor:1"), CassandraUtils.bytes(1234L));
+        CompositeValue value = composite.compose(bytes);
+        assertEquals(2, value.size());
+        assertEquals("sensor:1", value.get(0));
+        assertEquals(1234L, value.get(1));
+        assertArrayEquals(new Object[]{"sensor:1", 1234L}, value.getAttributes());
+        assertEquals("sensor\\:1:1234", composite.getString(bytes));
+        assertEquals(Arrays.asList("sensor:1", "1234"), JdbcComposite.split("sensor\\:1:1234"));
+        assertEquals(bytes, composite.decompose(value));
+
+        // prefix of the components (slice start)
+        value = composite.compose(JdbcComposite.build(CassandraUtils.bytes("sensor")));
+        assertEquals(1, value.size());
+    }
+
+    @Test
+    public void testDynamicComposite() throws Exception
+    {
+        JdbcComposite type = (JdbcComposite) TypesMap.getTypeForComparator("DynamicCompositeType(a=>AsciiType, l=>LongType)");
+        assertTrue(type.isDynamic());
+
+        // aliased long followed by a component with the full comparator name
+        byte[] name = (MARSHAL + "UTF8Type").getBytes();
+        ByteBuffer bytes = ByteBuffer.allocate(2 + 2 + 8 + 1 + 2 + name.length + 2 + 3 + 1);
+        bytes.putShort((short) (0x8000 | 'l')).putShort((short) 8).putLong(42L).put((byte) 0);
+        bytes.putShort((short) name.length).put(name).putShort((short) 3).put("abc".getBytes()).put((byte) 0);
+        bytes.flip();
+
+        CompositeValue value = type.compose(bytes);
+        assertEquals(42L, value.get(0));
+        assertEquals("abc", value.get(1));
+        assertEquals(bytes, type.decompose(value));
+    }
+
+    @Test
+    public void testCollections() throws Exception
+    {
+        JdbcList list = (JdbcList) TypesMap.getTypeForComparator("ListType(LongType)");
+        ByteBuffer bytes = list.decompose(Arrays.<Object>asList(1L, 2L, 3L));
+        assertEquals(Arrays.<Object>asList(1L, 2L, 3L), list.compose(bytes));
+        assertEquals("[1, 2, 3]", list.getString(bytes));
+        assertEquals("ListType(" + MARSHAL + "LongType)", list.toString());
+
+        JdbcSet set = (JdbcSet) TypesMap.getTypeForComparator(MARSHAL + "SetType(" + MARSHAL + "UTF8Type)");
+        Set<Object> tags = new LinkedHashSet<Object>(Arrays.<Object>asList("a", "b"));
+        bytes = set.decompose(tags);
+        assertEquals(tags, set.compose(bytes));
+        assertEquals("{a, b}", set.getString(bytes));
+
+        JdbcMap map = (JdbcMap) TypesMap.getTypeForComparator("MapType(UTF8Type,LongType)");
+        Map<Object, Object> values = new LinkedHashMap<Object, Object>();
+        values.put("x", 1L);
+        values.put("y", 2L);
+        bytes = map.decompose(values);
+        assertEquals(values, map.compose(bytes));
+        assertEquals("{x: 1, y: 2}", map.getString(bytes));
+
+        List<ByteBuffer> elements = Arrays.asList(CassandraUtils.bytes(7L));
+        assertEquals(Arrays.<Object>asList(7L), list.compose(AbstractJdbcCollection.build(elements, 1)));
+    }
+}
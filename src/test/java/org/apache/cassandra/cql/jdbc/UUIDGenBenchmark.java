@@ -0,0 +1,122 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.apache.cassandra.cql.jdbc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import org.jkiss.jdbc.cassandra.types.UUIDGen;
+
+/**
+ * Throughput of the TimeUUID generator with 1..N threads.
+ * Run manually: java -cp ... org.apache.cassandra.cql.jdbc.UUIDGenBenchmark [seconds] [maxThreads]
+ */
+public class UUIDGenBenchmark
+{
+    private enum Mode { UUID, BYTES, BUFFER, FILL }
+
+    private static final int FILL_SIZE = 256;
+
+    public static void main(String[] args) throws Exception
+    {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // warm up
+        for (Mode mode : Mode.values())
+            run(mode, 1, 1);
+
+        System.out.println("mode\tthreads\tuuids/sec");
+        for (Mode mode : Mode.values())
+        {
+            for (int threads = 1; threads <= maxThreads; threads *= 2)
+            {
+                long count = run(mode, threads, seconds);
+                System.out.println(mode + "\t" + threads + "\t" + (count / seconds));
+            }
+        }
+    }
+
+    private static long run(final Mode mode, int threads, int seconds) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final long[] counts = new long[threads];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            final int slot = t;
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    long count = 0;
+                    long sink = 0;
+                    long[] msb = new long[FILL_SIZE];
+                    ByteBuffer buffer = ByteBuffer.allocate(16 * FILL_SIZE);
+                    try
+                    {
+                        start.await();
+                        while (System.nanoTime() < deadline)
+                        {
+                            switch (mode)
+                            {
+                                case UUID:
+                                    for (int i = 0; i < FILL_SIZE; i++)
+                                        sink += UUIDGen.getTimeUUID().getMostSignificantBits();
+                                    break;
+                                case BYTES:
+                                    for (int i = 0; i < FILL_SIZE; i++)
+                                        sink += UUIDGen.getTimeUUIDBytes()[7];
+                                    break;
+                                case BUFFER:
+                                    buffer.clear();
+                                    for (int i = 0; i < FILL_SIZE; i++)
+                                        UUIDGen.writeTimeUUID(buffer);
+                                    sink += buffer.get(7);
+                                    break;
+                                case FILL:
+                                    UUIDGen.fill(msb, FILL_SIZE);
+                                    sink += msb[FILL_SIZE - 1];
+                                    break;
+                            }
+                            count += FILL_SIZE;
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    counts[slot] = sink == 42 ? count + 1 : count;
+                    done.countDown();
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        return total;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.apache.cassandra.cql.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jkiss.jdbc.cassandra.types.UUIDGen;
+import org.junit.Test;
+
+public class UUIDGenUnitTest
+{
+    @Test
+    public void testTimeUUID() throws Exception
+    {
+        UUID prev = UUIDGen.getTimeUUID();
+        for (int i = 0; i < 100000; i++)
+        {
+            UUID next = UUIDGen.getTimeUUID();
+            assertEquals(1, next.version());
+            assertEquals(UUIDGen.getLocalClockSeqAndNode(), next.getLeastSignificantBits());
+            assertTrue(next.timestamp() > prev.timestamp());
+            prev = next;
+        }
+        UUID fromBytes = UUIDGen.getUUID(ByteBuffer.wrap(UUIDGen.getTimeUUIDBytes()));
+        assertTrue(fromBytes.timestamp() > prev.timestamp());
+        assertEquals(prev.getLeastSignificantBits(), fromBytes.getLeastSignificantBits());
+    }
+
+    @Test
+    public void testFill() throws Exception
+    {
+        long[] msb = new long[1000];
+        UUIDGen.fill(msb, 500);
+        assertEquals(0L, msb[500]);
+        UUID prev = new UUID(msb[0], UUIDGen.getLocalClockSeqAndNode());
+        for (int i = 1; i < 500; i++)
+        {
+            UUID next = new UUID(msb[i], UUIDGen.getLocalClockSeqAndNode());
+            assertEquals(1, next.version());
+            assertEquals(prev.timestamp() + 1, next.timestamp());
+            prev = next;
+        }
+        assertTrue(UUIDGen.getTimeUUID().timestamp() > prev.timestamp());
+    }
+
+    @Test
+    public void testWriteTimeUUID() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        UUIDGen.writeTimeUUID(UUIDGen.writeTimeUUID(buffer));
+        assertEquals(32, buffer.position());
+        UUID first = UUIDGen.getUUID((ByteBuffer) buffer.duplicate().position(0));
+        UUID second = UUIDGen.getUUID((ByteBuffer) buffer.duplicate().position(16));
+        assertEquals(1, first.version());
+        assertTrue(second.timestamp() > first.timestamp());
+    }
+
+    @Test
+    public void testConcurrentUniqueness() throws Exception
+    {
+        final int perThread = 50000;
+        final List<long[]> results = new ArrayList<long[]>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++)
+        {
+            final long[] msb = new long[perThread];
+            results.add(msb);
+            final boolean bulk = t % 2 == 0;
+            threads.add(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    if (bulk)
+                    {
+                        for (int i = 0; i < perThread; i += 100)
+                            UUIDGen.fill(new long[100], 100);
+                        UUIDGen.fill(msb, perThread);
+                    }
+                    else
+                    {
+                        for (int i = 0; i < perThread; i++)
+                            msb[i] = UUIDGen.getTimeUUID().getMostSignificantBits();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        Set<Long> seen = new HashSet<Long>();
+        for (long[] msb : results)
+            for (long value : msb)
+                assertTrue(seen.add(value));
+    }
+}
@@ -21,11 +21,17 @@
 
 package org.apache.cassandra.cql.jdbc;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Properties;
 
+import org.apache.cassandra.thrift.ConsistencyLevel;
 import org.jkiss.jdbc.cassandra.CassandraConstants;
 import org.jkiss.jdbc.cassandra.CassandraUtils;
 import org.junit.BeforeClass;
@@ -76,6 +82,82 @@ public class UtilsUnitTest
         assertNull(props.getProperty(CassandraConstants.PROP_DATABASE_NAME));
         assertNull(props.getProperty(CassandraConstants.PROP_CQL_VERSION));
     }
+
+    @Test
+    public void testVarint() throws Exception
+    {
+        long[] values = {0, 1, -1, 127, 128, -128, -129, 255, 256, Short.MAX_VALUE, Short.MIN_VALUE,
+                         Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values)
+        {
+            byte[] expected = BigInteger.valueOf(value).toByteArray();
+            assertEquals(expected.length, CassandraUtils.varintSize(value));
+            assertArrayEquals(expected, CassandraUtils.getArray(CassandraUtils.varint(value)));
+
+            ByteBuffer buffer = ByteBuffer.allocate(expected.length + 3);
+            buffer.position(2);
+            assertEquals(expected.length, CassandraUtils.writeVarint(buffer, value));
+            assertEquals(2, buffer.position());
+            buffer.limit(2 + expected.length);
+            assertArrayEquals(expected, CassandraUtils.getArray(buffer));
+        }
+    }
+
+    @Test
+    public void testDetermineModifiedSource() throws Exception
+    {
+        assertEquals("Users", CassandraUtils.determineModifiedSource("INSERT INTO Users (KEY, name) VALUES ('k', 'n')"));
+        assertEquals("ks.Users", CassandraUtils.determineModifiedSource("UPDATE ks.Users SET name = 'n' WHERE KEY = 'k'"));
+        assertEquals("Users", CassandraUtils.determineModifiedSource("DELETE FROM Users WHERE KEY = 'k'"));
+        assertEquals("Users", CassandraUtils.determineModifiedSource("delete name, age from Users where KEY = 'k'"));
+        assertEquals("Users", CassandraUtils.determineModifiedSource("TRUNCATE Users"));
+        assertNull(CassandraUtils.determineModifiedSource("SELECT * FROM Users"));
+        assertNull(CassandraUtils.determineModifiedSource("BEGIN BATCH INSERT INTO Users (KEY) VALUES ('k') APPLY BATCH"));
+    }
+
+    @Test
+    public void testAddConsistency() throws Exception
+    {
+        assertEquals("SELECT * FROM Users USING CONSISTENCY ONE WHERE KEY = 'k'",
+            CassandraUtils.addConsistency("SELECT * FROM Users WHERE KEY = 'k'", ConsistencyLevel.ONE));
+        assertEquals("INSERT INTO Users (KEY, name) VALUES ('k', 'n') USING CONSISTENCY QUORUM AND TTL 10",
+            CassandraUtils.addConsistency("INSERT INTO Users (KEY, name) VALUES ('k', 'n') USING TTL 10", ConsistencyLevel.QUORUM));
+        assertEquals("UPDATE Users USING CONSISTENCY QUORUM SET name = 'n' WHERE KEY = 'k'",
+            CassandraUtils.addConsistency("UPDATE Users SET name = 'n' WHERE KEY = 'k'", ConsistencyLevel.QUORUM));
+        assertEquals("DELETE FROM Users USING CONSISTENCY ALL WHERE KEY = 'k'",
+            CassandraUtils.addConsistency("DELETE FROM Users WHERE KEY = 'k'", ConsistencyLevel.ALL));
+        assertEquals("SELECT * FROM Users USING CONSISTENCY ALL",
+            CassandraUtils.addConsistency("SELECT * FROM Users USING CONSISTENCY ALL", ConsistencyLevel.ONE));
+        assertEquals("TRUNCATE Users", CassandraUtils.addConsistency("TRUNCATE Users", ConsistencyLevel.ONE));
+    }
+
+    @Test
+    public void testIsReadQuery() throws Exception
+    {
+        assertTrue(CassandraUtils.isReadQuery("SELECT * FROM Users"));
+        assertTrue(CassandraUtils.isReadQuery(" select name FROM Users WHERE KEY = 'k'"));
+        assertFalse(CassandraUtils.isReadQuery("UPDATE Users SET name = 'SELECT ' WHERE KEY = 'k'"));
+    }
+
+    @Test
+    public void testMatchesPattern() throws Exception
+    {
+        assertTrue(CassandraUtils.matchesPattern("Users", "users"));
+        assertTrue(CassandraUtils.matchesPattern("user_events", "user%"));
+        assertTrue(CassandraUtils.matchesPattern("user_events", "user\\_events"));
+        assertFalse(CassandraUtils.matchesPattern("userXevents", "user\\_events"));
+        assertTrue(CassandraUtils.matchesPattern("a.b", "a.b"));
+        assertFalse(CassandraUtils.matchesPattern("axb", "a.b"));
+        assertTrue(CassandraUtils.matchesPattern("axb", "a_b"));
+    }
+
+    @Test
+    public void testIsSchemaQuery() throws Exception
+    {
+        assertTrue(CassandraUtils.isSchemaQuery("CREATE COLUMNFAMILY Users (KEY text PRIMARY KEY)"));
+        assertTrue(CassandraUtils.isSchemaQuery(" drop keyspace ks"));
+        assertFalse(CassandraUtils.isSchemaQuery("SELECT * FROM drop_log"));
+    }
   
     /*
      * doesn't compile anymore because createSubName() doesn't exist
@@ -0,0 +1,332 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.jkiss.jdbc.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.apache.cassandra.thrift.TimedOutException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.junit.Test;
+
+public class CassandraRowPublisherUnitTest
+{
+    private static final Executor DIRECT = new Executor()
+    {
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    /**
+     * Pages of numbered rows. Calls complete when the test says so.
+     */
+    static class StubPages implements CassandraRowPublisher.PageSource
+    {
+        private final int[] pageSizes;
+        private int nextKey;
+        int sent;
+        int closed;
+        AsyncMethodCallback<Object> pending;
+
+        StubPages(int... pageSizes)
+        {
+            this.pageSizes = pageSizes;
+        }
+
+        public void sendNext(AsyncMethodCallback<Object> callback)
+        {
+            assertNull("One call at a time", pending);
+            assertEquals("No calls after close", 0, closed);
+            pending = callback;
+            sent++;
+        }
+
+        public boolean accept(Object call, Queue<CassandraRow> buffer)
+        {
+            int page = (Integer) call;
+            for (int i = 0; i < pageSizes[page]; i++)
+            {
+                buffer.add(new CassandraRow(CassandraUtils.bytes(String.valueOf(nextKey++)), Collections.<TypedColumn>emptyList()));
+            }
+            return page == pageSizes.length - 1;
+        }
+
+        public void close()
+        {
+            closed++;
+        }
+
+        void complete()
+        {
+            AsyncMethodCallback<Object> callback = pending;
+            pending = null;
+            callback.onComplete(sent - 1);
+        }
+
+        void fail(Exception error)
+        {
+            AsyncMethodCallback<Object> callback = pending;
+            pending = null;
+            callback.onError(error);
+        }
+    }
+
+    static class RecordingSubscriber implements Subscriber<CassandraRow>
+    {
+        final List<String> rows = new ArrayList<String>();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        int completed;
+        Subscription subscription;
+        int cancelAfter = -1;
+        boolean failOnComplete;
+
+        public void onSubscribe(Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        public void onNext(CassandraRow row)
+        {
+            try
+            {
+                rows.add(CassandraUtils.string(row.getKey()));
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+            if (rows.size() == cancelAfter)
+            {
+                subscription.cancel();
+            }
+        }
+
+        public void onError(Throwable error)
+        {
+            errors.add(error);
+        }
+
+        public void onComplete()
+        {
+            completed++;
+            if (failOnComplete)
+            {
+                throw new IllegalStateException("Subscriber failure");
+            }
+        }
+
+        int terminalSignals()
+        {
+            return completed + errors.size();
+        }
+    }
+
+    private static Subscription subscribe(RecordingSubscriber subscriber, StubPages pages)
+    {
+        CassandraRowPublisher.RowSubscription subscription = new CassandraRowPublisher.RowSubscription(subscriber, pages, DIRECT);
+        subscriber.onSubscribe(subscription);
+        return subscription;
+    }
+
+    @Test
+    public void testDemand() throws Exception
+    {
+        StubPages pages = new StubPages(5, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        assertEquals("Nothing is sent without demand", 0, pages.sent);
+
+        subscription.request(2);
+        assertEquals(1, pages.sent);
+        pages.complete();
+        assertEquals(2, subscriber.rows.size());
+
+        subscription.request(3);
+        assertEquals(5, subscriber.rows.size());
+        assertEquals("Next page waits for demand", 1, pages.sent);
+
+        subscription.request(2);
+        assertEquals(2, pages.sent);
+        pages.complete();
+        assertEquals(7, subscriber.rows.size());
+        assertEquals(1, subscriber.completed);
+        assertTrue(subscriber.errors.isEmpty());
+        assertTrue(pages.closed > 0);
+        for (int i = 0; i < 7; i++)
+        {
+            assertEquals(String.valueOf(i), subscriber.rows.get(i));
+        }
+    }
+
+    @Test
+    public void testCompleteWaitsForDemand() throws Exception
+    {
+        StubPages pages = new StubPages(3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(2);
+        pages.complete();
+        assertEquals(2, subscriber.rows.size());
+        assertEquals("Row of the last page is not delivered yet", 0, subscriber.completed);
+        subscription.request(1);
+        assertEquals(3, subscriber.rows.size());
+        assertEquals(1, subscriber.completed);
+    }
+
+    @Test
+    public void testUnboundedDemand() throws Exception
+    {
+        StubPages pages = new StubPages(4, 4, 1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(Long.MAX_VALUE);
+        subscription.request(Long.MAX_VALUE);
+        pages.complete();
+        pages.complete();
+        pages.complete();
+        assertEquals(9, subscriber.rows.size());
+        assertEquals(1, subscriber.completed);
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        StubPages pages = new StubPages(5, 5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(2);
+        pages.complete();
+        subscription.cancel();
+        subscription.request(10);
+        assertEquals(2, subscriber.rows.size());
+        assertEquals(1, pages.sent);
+        assertTrue(pages.closed > 0);
+        assertEquals(0, subscriber.terminalSignals());
+    }
+
+    @Test
+    public void testCancelDuringCall() throws Exception
+    {
+        StubPages pages = new StubPages(5, 5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(10);
+        subscription.cancel();
+        assertEquals("Client is closed when the call completes", 0, pages.closed);
+        pages.complete();
+        assertTrue(pages.closed > 0);
+        assertTrue(subscriber.rows.isEmpty());
+        assertEquals(0, subscriber.terminalSignals());
+    }
+
+    @Test
+    public void testCancelInOnNext() throws Exception
+    {
+        StubPages pages = new StubPages(5, 5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.cancelAfter = 3;
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(Long.MAX_VALUE);
+        pages.complete();
+        assertEquals(3, subscriber.rows.size());
+        assertEquals(1, pages.sent);
+        assertEquals(0, subscriber.terminalSignals());
+    }
+
+    @Test
+    public void testOnCompleteFailure() throws Exception
+    {
+        StubPages pages = new StubPages(1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.failOnComplete = true;
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(5);
+        pages.complete();
+        subscription.request(5);
+        assertEquals(1, subscriber.completed);
+        assertTrue("onError must not follow onComplete", subscriber.errors.isEmpty());
+    }
+
+    @Test
+    public void testCallError() throws Exception
+    {
+        StubPages pages = new StubPages(2, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(10);
+        pages.complete();
+        pages.fail(new TimedOutException());
+        subscription.request(10);
+        assertEquals(2, subscriber.rows.size());
+        assertEquals(1, subscriber.errors.size());
+        assertEquals(0, subscriber.completed);
+        assertTrue(subscriber.errors.get(0) instanceof SQLTransientConnectionException);
+        assertTrue(pages.closed > 0);
+    }
+
+    @Test
+    public void testBadRequest() throws Exception
+    {
+        StubPages pages = new StubPages(2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(0);
+        subscription.request(-1);
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.errors.get(0) instanceof IllegalArgumentException);
+        assertEquals(0, pages.sent);
+    }
+
+    @Test
+    public void testSubscriberFailure() throws Exception
+    {
+        StubPages pages = new StubPages(3);
+        RecordingSubscriber subscriber = new RecordingSubscriber()
+        {
+            @Override
+            public void onNext(CassandraRow row)
+            {
+                throw new IllegalStateException("Subscriber failure");
+            }
+        };
+        Subscription subscription = subscribe(subscriber, pages);
+        subscription.request(3);
+        pages.complete();
+        assertEquals(1, subscriber.errors.size());
+        assertEquals(0, subscriber.completed);
+        assertNotNull(subscriber.errors.get(0).getMessage());
+        assertFalse(subscriber.errors.get(0) instanceof SQLException);
+    }
+}
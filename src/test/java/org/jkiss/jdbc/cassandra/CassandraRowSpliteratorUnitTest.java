@@ -0,0 +1,284 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.jkiss.jdbc.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.CqlMetadata;
+import org.apache.cassandra.thrift.CqlRow;
+import org.junit.Test;
+
+public class CassandraRowSpliteratorUnitTest
+{
+    private static final CqlMetadata METADATA = new CqlMetadata(
+        new HashMap<ByteBuffer, String>(), new HashMap<ByteBuffer, String>(), "UTF8Type", "UTF8Type");
+
+    /**
+     * Ranges of numbered keys: a split covers keys from its start token (inclusive) to its end token (exclusive)
+     */
+    static class StubRanges implements CassandraRowSpliterator.RangeSource
+    {
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+        final AtomicInteger divided = new AtomicInteger();
+
+        public RowSource open(CassandraSplit split)
+        {
+            opened.incrementAndGet();
+            final int end = Integer.parseInt(split.getEndToken());
+            final int[] next = {Integer.parseInt(split.getStartToken())};
+            return new RowSource()
+            {
+                public boolean hasNext()
+                {
+                    return next[0] < end;
+                }
+
+                public CqlRow next()
+                {
+                    return new CqlRow(CassandraUtils.bytes(String.valueOf(next[0]++)), Collections.<Column>emptyList());
+                }
+
+                public void close()
+                {
+                    closed.incrementAndGet();
+                }
+            };
+        }
+
+        public List<CassandraSplit> divide(CassandraSplit split, int keysPerSplit)
+        {
+            divided.incrementAndGet();
+            List<CassandraSplit> parts = new ArrayList<CassandraSplit>();
+            int end = Integer.parseInt(split.getEndToken());
+            for (int start = Integer.parseInt(split.getStartToken()); start < end; start += keysPerSplit)
+            {
+                parts.add(makeSplit(start, Math.min(start + keysPerSplit, end)));
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Counts every key it receives
+     */
+    static class KeyCounter implements CassandraRowSpliterator.RowAction
+    {
+        final ConcurrentHashMap<String, AtomicInteger> keys = new ConcurrentHashMap<String, AtomicInteger>();
+
+        public void accept(CassandraRow row) throws SQLException
+        {
+            String key = CassandraUtils.string(row.getKey().array());
+            AtomicInteger count = keys.putIfAbsent(key, new AtomicInteger(1));
+            if (count != null)
+            {
+                count.incrementAndGet();
+            }
+        }
+
+        void assertAllOnce(int keyCount)
+        {
+            assertEquals(keyCount, keys.size());
+            for (int i = 0; i < keyCount; i++)
+            {
+                AtomicInteger count = keys.get(String.valueOf(i));
+                assertNotNull("Missing key " + i, count);
+                assertEquals("Key " + i, 1, count.get());
+            }
+        }
+    }
+
+    private static CassandraSplit makeSplit(int start, int end)
+    {
+        return new CassandraSplit("ks", "cf", String.valueOf(start), String.valueOf(end), Collections.<String>emptyList(), end - start);
+    }
+
+    private static CassandraRowSpliterator createRingScan(StubRanges ranges, int keyCount, int keysPerSplit)
+    {
+        List<CassandraSplit> ring = new ArrayList<CassandraSplit>();
+        ring.add(makeSplit(0, keyCount));
+        return new CassandraRowSpliterator(ranges, METADATA, ring, false, keysPerSplit);
+    }
+
+    @Test
+    public void testSequential() throws Exception
+    {
+        StubRanges ranges = new StubRanges();
+        CassandraRowSpliterator spliterator = createRingScan(ranges, 100, 10);
+        final List<String> keys = new ArrayList<String>();
+        spliterator.forEachRemaining(new CassandraRowSpliterator.RowAction()
+        {
+            public void accept(CassandraRow row) throws SQLException
+            {
+                keys.add(CassandraUtils.string(row.getKey().array()));
+            }
+        });
+        assertEquals(100, keys.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(String.valueOf(i), keys.get(i));
+        }
+        assertEquals("Sequential read doesn't divide the ring", 0, ranges.divided.get());
+        assertEquals(ranges.opened.get(), ranges.closed.get());
+        assertSame(METADATA, spliterator.getMetadata());
+    }
+
+    @Test
+    public void testSplitDividesRingRange() throws Exception
+    {
+        StubRanges ranges = new StubRanges();
+        CassandraRowSpliterator spliterator = createRingScan(ranges, 100, 10);
+        assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+
+        CassandraRowSpliterator prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertEquals(1, ranges.divided.get());
+        assertEquals(50, prefix.estimateSize());
+        assertEquals(50, spliterator.estimateSize());
+
+        prefix.trySplit();
+        assertEquals("Divided ranges are not divided again", 1, ranges.divided.get());
+    }
+
+    @Test
+    public void testSplitCompleteness() throws Exception
+    {
+        StubRanges ranges = new StubRanges();
+        LinkedList<CassandraRowSpliterator> pending = new LinkedList<CassandraRowSpliterator>();
+        CassandraRowSpliterator root = createRingScan(ranges, 1000, 7);
+        // The ring range must be divided before reading starts
+        pending.add(root.trySplit());
+        pending.add(root);
+        KeyCounter counter = new KeyCounter();
+        int leaves = 0;
+        while (!pending.isEmpty())
+        {
+            CassandraRowSpliterator spliterator = pending.removeFirst();
+            // Start reading, then split off ranges which are not started yet
+            spliterator.tryAdvance(counter);
+            CassandraRowSpliterator prefix = spliterator.trySplit();
+            if (prefix != null)
+            {
+                pending.add(prefix);
+                pending.add(spliterator);
+            }
+            else
+            {
+                spliterator.forEachRemaining(counter);
+                leaves++;
+            }
+        }
+        counter.assertAllOnce(1000);
+        assertTrue(leaves > 1);
+        assertEquals(ranges.opened.get(), ranges.closed.get());
+    }
+
+    @Test
+    public void testSplitLastRange() throws Exception
+    {
+        StubRanges ranges = new StubRanges();
+        List<CassandraSplit> splits = new ArrayList<CassandraSplit>();
+        splits.add(makeSplit(0, 10));
+        CassandraRowSpliterator spliterator = new CassandraRowSpliterator(ranges, METADATA, splits, true, 5);
+        assertNull("A single divided range can't be split", spliterator.trySplit());
+        KeyCounter counter = new KeyCounter();
+        spliterator.forEachRemaining(counter);
+        counter.assertAllOnce(10);
+    }
+
+    @Test
+    public void testForEachParallel() throws Exception
+    {
+        StubRanges ranges = new StubRanges();
+        KeyCounter counter = new KeyCounter();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            createRingScan(ranges, 5000, 100).forEachParallel(counter, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        counter.assertAllOnce(5000);
+        assertEquals(ranges.opened.get(), ranges.closed.get());
+    }
+
+    @Test
+    public void testForEachParallelError() throws Exception
+    {
+        final SQLException error = new SQLDataException("Bad row");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            createRingScan(new StubRanges(), 5000, 100).forEachParallel(new CassandraRowSpliterator.RowAction()
+            {
+                public void accept(CassandraRow row) throws SQLException
+                {
+                    if ("1234".equals(CassandraUtils.string(row.getKey().array())))
+                    {
+                        throw error;
+                    }
+                }
+            }, pool);
+            fail("Action error is not rethrown");
+        }
+        catch (SQLException e)
+        {
+            assertSame(error, e);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception
+    {
+        StubRanges ranges = new StubRanges();
+        CassandraRowSpliterator spliterator = createRingScan(ranges, 100, 10);
+        KeyCounter counter = new KeyCounter();
+        assertTrue(spliterator.tryAdvance(counter));
+        spliterator.close();
+        assertEquals(1, ranges.closed.get());
+        assertEquals(false, spliterator.tryAdvance(counter));
+    }
+}
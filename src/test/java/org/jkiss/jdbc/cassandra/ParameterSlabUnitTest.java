@@ -0,0 +1,86 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.jkiss.jdbc.cassandra;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ParameterSlabUnitTest
+{
+    @Test
+    public void testPrimitives() throws Exception
+    {
+        ParameterSlab slab = new ParameterSlab();
+        assertEquals(ByteBuffer.wrap(new byte[]{1}), slab.putBoolean(true));
+        assertEquals(ByteBuffer.allocate(4).putInt(0, 42), slab.putInt(42));
+        assertEquals(ByteBuffer.allocate(8).putLong(0, -7L), slab.putLong(-7L));
+        assertEquals(ByteBuffer.allocate(4).putFloat(0, 1.5f), slab.putFloat(1.5f));
+        assertEquals(ByteBuffer.allocate(8).putDouble(0, 2.25), slab.putDouble(2.25));
+        for (long value : new long[]{0, -1, 128, Short.MIN_VALUE, Long.MAX_VALUE})
+        {
+            assertArrayEquals(BigInteger.valueOf(value).toByteArray(), CassandraUtils.getArray(slab.putVarint(value)));
+        }
+    }
+
+    @Test
+    public void testRebindKeepsEarlierValue() throws Exception
+    {
+        ParameterSlab slab = new ParameterSlab();
+        ByteBuffer first = slab.putInt(1);
+        ByteBuffer second = slab.putInt(2);
+        assertEquals(1, first.getInt(0));
+        assertEquals(2, second.getInt(0));
+        assertEquals(4, first.remaining());
+    }
+
+    @Test
+    public void testGrowth() throws Exception
+    {
+        ParameterSlab slab = new ParameterSlab();
+        List<ByteBuffer> values = new ArrayList<ByteBuffer>();
+        int count = ParameterSlab.CHUNK_SIZE; // several chunks of 8 byte values
+        for (int i = 0; i < count; i++)
+        {
+            values.add(i % 2 == 0 ? slab.putLong(i) : slab.putVarint(i));
+        }
+        for (int i = 0; i < count; i++)
+        {
+            ByteBuffer value = values.get(i);
+            if (i % 2 == 0)
+            {
+                assertEquals(8, value.remaining());
+                assertEquals(i, value.getLong(0));
+            }
+            else
+            {
+                assertArrayEquals(BigInteger.valueOf(i).toByteArray(), CassandraUtils.getArray(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.jkiss.jdbc.cassandra;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.CqlRow;
+import org.junit.Test;
+
+public class RowStoreUnitTest
+{
+    private static CqlRow makeRow(int index, int valueSize)
+    {
+        byte[] value = new byte[valueSize];
+        Arrays.fill(value, (byte) index);
+        Column column = new Column(CassandraUtils.bytes("c" + index));
+        column.setValue(value);
+        column.setTimestamp(index);
+        List<Column> columns = new ArrayList<Column>();
+        columns.add(column);
+        return new CqlRow(CassandraUtils.bytes("k" + index), columns);
+    }
+
+    private static void checkRow(RowStore store, int index, int valueSize) throws Exception
+    {
+        CqlRow row = store.get(index);
+        assertEquals(CassandraUtils.bytes("k" + index), row.bufferForKey());
+        Column column = row.getColumns().get(0);
+        assertEquals(CassandraUtils.bytes("c" + index), column.bufferForName());
+        byte[] value = new byte[valueSize];
+        Arrays.fill(value, (byte) index);
+        assertArrayEquals(value, CassandraUtils.getArray(column.bufferForValue()));
+        assertEquals(index, column.getTimestamp());
+        assertFalse(column.isSetTtl());
+    }
+
+    private static void checkStore(RowStore.Storage storage, long budget, int rowCount, int valueSize, boolean spilled) throws Exception
+    {
+        RowStore store = new RowStore(storage, budget);
+        try
+        {
+            for (int i = 0; i < rowCount; i++)
+            {
+                store.add(makeRow(i, valueSize));
+            }
+            assertEquals(rowCount, store.getRowCount());
+            assertEquals(spilled, store.isSpilled());
+            // Backwards, so reads jump between segments and mapped regions
+            for (int i = rowCount - 1; i >= 0; i--)
+            {
+                checkRow(store, i, valueSize);
+            }
+        }
+        finally
+        {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testColumnAttributes() throws Exception
+    {
+        RowStore store = new RowStore(RowStore.Storage.HEAP, RowStore.DEFAULT_HEAP_BUDGET);
+        Column column = new Column(CassandraUtils.bytes("name"));
+        column.setTtl(60);
+        List<Column> columns = new ArrayList<Column>();
+        columns.add(column);
+        store.add(new CqlRow(CassandraUtils.bytes("key"), columns));
+        store.add(new CqlRow(CassandraUtils.bytes("empty"), new ArrayList<Column>()));
+
+        Column stored = store.get(0).getColumns().get(0);
+        assertNull(stored.bufferForValue());
+        assertFalse(stored.isSetTimestamp());
+        assertEquals(60, stored.getTtl());
+        assertTrue(store.get(1).getColumns().isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testHeap() throws Exception
+    {
+        checkStore(RowStore.Storage.HEAP, RowStore.DEFAULT_HEAP_BUDGET, 1000, 20, false);
+    }
+
+    @Test
+    public void testHeapSpill() throws Exception
+    {
+        // Rows cross from the heap array to the file in the middle of the result
+        checkStore(RowStore.Storage.HEAP, 5000, 1000, 20, true);
+    }
+
+    @Test
+    public void testHeapBudgetOverArraySize() throws Exception
+    {
+        checkStore(RowStore.Storage.HEAP, Long.MAX_VALUE, 100, 20, false);
+    }
+
+    @Test
+    public void testOffHeap() throws Exception
+    {
+        // Rows are larger than a third of a page so many of them cross page boundaries
+        checkStore(RowStore.Storage.OFFHEAP, RowStore.DEFAULT_HEAP_BUDGET, 10, 400 * 1024, false);
+    }
+
+    @Test
+    public void testOffHeapSpill() throws Exception
+    {
+        checkStore(RowStore.Storage.OFFHEAP, 1024 * 1024, 10, 400 * 1024, true);
+    }
+
+    @Test
+    public void testMmap() throws Exception
+    {
+        checkStore(RowStore.Storage.MMAP, RowStore.DEFAULT_HEAP_BUDGET, 1000, 20, true);
+    }
+
+    @Test
+    public void testOutOfRange() throws Exception
+    {
+        RowStore store = new RowStore(RowStore.Storage.HEAP, RowStore.DEFAULT_HEAP_BUDGET);
+        store.add(makeRow(0, 1));
+        try
+        {
+            store.get(1);
+            fail("Read past the last row");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // expected
+        }
+        store.close();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+
+package org.jkiss.jdbc.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.CqlMetadata;
+import org.apache.cassandra.thrift.CqlRow;
+import org.junit.Test;
+
+public class ScrollableResultSetUnitTest
+{
+    /**
+     * Source of generated rows which counts fetched rows
+     */
+    static class CountingRowSource implements RowSource
+    {
+        private final int rowCount;
+        private final int valueSize;
+        int fetched;
+        boolean closed;
+
+        CountingRowSource(int rowCount, int valueSize)
+        {
+            this.rowCount = rowCount;
+            this.valueSize = valueSize;
+        }
+
+        public boolean hasNext()
+        {
+            return fetched < rowCount;
+        }
+
+        public CqlRow next()
+        {
+            int index = fetched++;
+            Column column = new Column(CassandraUtils.bytes("value"));
+            column.setValue(CassandraUtils.bytes(makeValue(index, valueSize)));
+            List<Column> columns = new ArrayList<Column>();
+            columns.add(column);
+            return new CqlRow(CassandraUtils.bytes("k" + index), columns);
+        }
+
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+    private static String makeValue(int index, int size)
+    {
+        StringBuilder value = new StringBuilder("v").append(index);
+        while (value.length() < size)
+        {
+            value.append('.');
+        }
+        return value.toString();
+    }
+
+    private static CassandraResultSet createResultSet(RowSource rows, RowStore rowStore) throws SQLException
+    {
+        CassandraStatement statement = new CassandraStatement(
+            null, "SELECT * FROM cf", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        CqlMetadata schema = new CqlMetadata(
+            new HashMap<ByteBuffer, String>(), new HashMap<ByteBuffer, String>(), "UTF8Type", "UTF8Type");
+        return new CassandraResultSet(statement, rows, rowStore, schema, null, null);
+    }
+
+    private static CassandraResultSet createResultSet(int rowCount) throws SQLException
+    {
+        return createResultSet(new CountingRowSource(rowCount, 10), new RowStore(RowStore.Storage.HEAP, RowStore.DEFAULT_HEAP_BUDGET));
+    }
+
+    private static void assertRow(ResultSet rs, int row) throws SQLException
+    {
+        assertEquals(row, rs.getRow());
+        assertEquals("v" + (row - 1), rs.getString(1).replace(".", ""));
+    }
+
+    @Test
+    public void testAbsolute() throws Exception
+    {
+        CassandraResultSet rs = createResultSet(10);
+        assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, rs.getType());
+        assertTrue(rs.absolute(3));
+        assertRow(rs, 3);
+        assertTrue(rs.absolute(-1));
+        assertRow(rs, 10);
+        assertTrue(rs.absolute(-10));
+        assertRow(rs, 1);
+        assertFalse(rs.absolute(-11));
+        assertTrue(rs.isBeforeFirst());
+        assertFalse(rs.absolute(11));
+        assertTrue(rs.isAfterLast());
+        assertTrue(rs.first());
+        assertRow(rs, 1);
+        assertTrue(rs.last());
+        assertRow(rs, 10);
+        rs.close();
+    }
+
+    @Test
+    public void testRelativeAndPrevious() throws Exception
+    {
+        CassandraResultSet rs = createResultSet(5);
+        assertTrue(rs.next());
+        assertTrue(rs.relative(2));
+        assertRow(rs, 3);
+        assertTrue(rs.previous());
+        assertRow(rs, 2);
+        assertFalse(rs.relative(-5));
+        assertTrue(rs.isBeforeFirst());
+        assertFalse(rs.previous());
+        rs.afterLast();
+        assertTrue(rs.previous());
+        assertRow(rs, 5);
+        assertFalse(rs.relative(Integer.MAX_VALUE));
+        assertTrue(rs.isAfterLast());
+        rs.close();
+    }
+
+    @Test
+    public void testNotOnRow() throws Exception
+    {
+        CassandraResultSet rs = createResultSet(2);
+        try
+        {
+            rs.getString(1);
+            fail("Read before the first row");
+        }
+        catch (SQLException e)
+        {
+            // expected
+        }
+        rs.afterLast();
+        try
+        {
+            rs.getString(1);
+            fail("Read after the last row");
+        }
+        catch (SQLException e)
+        {
+            // expected
+        }
+        rs.close();
+    }
+
+    @Test
+    public void testRowsFetchedOnDemand() throws Exception
+    {
+        CountingRowSource rows = new CountingRowSource(100, 10);
+        CassandraResultSet rs = createResultSet(rows, new RowStore(RowStore.Storage.HEAP, RowStore.DEFAULT_HEAP_BUDGET));
+        assertTrue(rs.absolute(5));
+        assertEquals(5, rows.fetched);
+        assertTrue(rs.absolute(2));
+        assertEquals(5, rows.fetched);
+        assertTrue(rs.last());
+        assertEquals(100, rows.fetched);
+        assertTrue(rows.closed);
+        rs.close();
+    }
+
+    @Test
+    public void testSpilledRows() throws Exception
+    {
+        // The heap budget holds a few rows only, the rest go to the file
+        for (RowStore.Storage storage : RowStore.Storage.values())
+        {
+            CassandraResultSet rs = createResultSet(new CountingRowSource(200, 100), new RowStore(storage, 1000));
+            assertTrue(rs.absolute(150));
+            assertRow(rs, 150);
+            assertTrue(rs.absolute(3));
+            assertRow(rs, 3);
+            while (rs.previous())
+            {
+                // back to the first row
+            }
+            int count = 0;
+            while (rs.next())
+            {
+                assertRow(rs, ++count);
+            }
+            assertEquals(200, count);
+            rs.close();
+        }
+    }
+}